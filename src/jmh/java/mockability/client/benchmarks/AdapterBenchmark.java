@@ -0,0 +1,71 @@
+package mockability.client.benchmarks;
+
+import mockability.client.adapters.LibraryAdapter;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each LibraryAdapter in both directions: building requests and responses from their parts, as report()
+ * and the tests do, and taking them apart again, as prepare() does.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 3)
+@Measurement (iterations = 5)
+@Fork (1)
+public class AdapterBenchmark {
+
+    @Param ({"httpClient", "httpServlet", "simple"})
+    public String adapterName;
+
+    @Param ({"0", "1024", "1048576", "52428800"})
+    public int bodySize;
+
+    @Param ({"0", "10", "50"})
+    public int headerCount;
+
+    private LibraryAdapter<Object, Object> adapter;
+    private List<HeaderPair> headers;
+    private byte[] body;
+    private Object request;
+    private Object response;
+
+    @Setup
+    public void setup () throws Exception {
+        adapter = BenchmarkFixtures.adapter (adapterName);
+        headers = BenchmarkFixtures.headers (headerCount);
+        body = BenchmarkFixtures.body (bodySize);
+        request = adapter.convert ("POST", "/benchmark?size=" + bodySize, headers, body);
+        response = adapter.convert (200, headers, body);
+    }
+
+    @Benchmark
+    public Object convertRequest () throws Exception {
+        return adapter.convert ("POST", "/benchmark?size=" + bodySize, headers, body);
+    }
+
+    @Benchmark
+    public Object convertResponse () throws Exception {
+        return adapter.convert (200, headers, body);
+    }
+
+    @Benchmark
+    public void dismantleRequest (Blackhole blackhole) throws Exception {
+        blackhole.consume (adapter.getRequestMethod (request));
+        blackhole.consume (adapter.getRequestUri (request));
+        blackhole.consume (adapter.getRequestHeaders (request));
+        blackhole.consume (adapter.getRequestBody (request));
+    }
+
+    @Benchmark
+    public void dismantleResponse (Blackhole blackhole) throws Exception {
+        blackhole.consume (adapter.getResponseStatus (response));
+        blackhole.consume (adapter.getResponseHeaders (response));
+        blackhole.consume (adapter.getResponseBody (response));
+    }
+}
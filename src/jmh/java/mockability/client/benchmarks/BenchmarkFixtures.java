@@ -0,0 +1,107 @@
+package mockability.client.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import mockability.client.adapters.HttpClientAdapter;
+import mockability.client.adapters.HttpServletAdapter;
+import mockability.client.adapters.LibraryAdapter;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter;
+import mockability.client.codec.JsonCodec;
+import mockability.client.codec.MockabilityCodec;
+import mockability.client.codec.SmileCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the inputs the benchmarks share, so that every benchmark measures the same shapes of data.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures () {}
+
+    static MockabilityCodec codec (String name) {
+        switch (name) {
+            case "json": return new JsonCodec ();
+            case "smile": return new SmileCodec ();
+            default: throw new IllegalArgumentException ("Unknown codec " + name);
+        }
+    }
+
+    @SuppressWarnings ("unchecked")
+    static LibraryAdapter<Object, Object> adapter (String name) {
+        switch (name) {
+            case "httpClient": return (LibraryAdapter)new HttpClientAdapter ();
+            case "httpServlet": return (LibraryAdapter)new HttpServletAdapter ();
+            case "simple": return (LibraryAdapter)new SimpleAdapter ();
+            default: throw new IllegalArgumentException ("Unknown adapter " + name);
+        }
+    }
+
+    static List<HeaderPair> headers (int count) {
+        List<HeaderPair> headers = new ArrayList<> ();
+        for (int i = 0; i < count; i++) {
+            headers.add (new HeaderPair ("X-Benchmark-" + i, "value number " + i));
+        }
+        return headers;
+    }
+
+    // Random bytes, so that compression and Base64 can't take any shortcuts.
+    static byte[] body (int size) {
+        byte[] body = new byte[size];
+        new Random (size).nextBytes (body);
+        return body;
+    }
+
+    /**
+     * Encodes a report of identical requests the way a Mockability server would send it in the named format.
+     */
+    static byte[] report (String codecName, int requestCount, List<HeaderPair> headers, byte[] body) throws IOException {
+        JsonFactory factory = "smile".equals (codecName) ? new SmileFactory () : new JsonFactory ();
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+        try (JsonGenerator generator = factory.createGenerator (ostr)) {
+            generator.writeStartArray ();
+            for (int i = 0; i < requestCount; i++) {
+                generator.writeStartObject ();
+                generator.writeStringField ("method", "POST");
+                generator.writeStringField ("uri", "/benchmark/" + i + "?size=" + body.length);
+                generator.writeArrayFieldStart ("headers");
+                for (HeaderPair header : headers) {
+                    generator.writeStartObject ();
+                    generator.writeStringField ("name", header.name ());
+                    generator.writeStringField ("value", header.value ());
+                    generator.writeEndObject ();
+                }
+                generator.writeEndArray ();
+                generator.writeFieldName ("body");
+                generator.writeBinary (body);
+                generator.writeEndObject ();
+            }
+            generator.writeEndArray ();
+        }
+        return ostr.toByteArray ();
+    }
+
+    /**
+     * Throws away everything written to it, but remembers how much there was.
+     */
+    static class CountingOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write (int b) {
+            count++;
+        }
+
+        @Override
+        public void write (byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
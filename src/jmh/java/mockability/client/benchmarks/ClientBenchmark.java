@@ -0,0 +1,93 @@
+package mockability.client.benchmarks;
+
+import mockability.client.MockabilityOptions;
+import mockability.client.ReportedRequest;
+import mockability.client.SimpleMockabilityClient;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.standin.MockabilityStandIn;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures prepare() and report() end to end, through the connection pool and the loopback network, against an
+ * in-process MockabilityStandIn.  Each prepare is followed by a clear, so that the stand-in's memory doesn't grow
+ * without bound over millions of invocations; the report always finds exactly one recorded request.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 3)
+@Measurement (iterations = 5)
+@Fork (1)
+public class ClientBenchmark {
+
+    @Param ({"json", "smile"})
+    public String codecName;
+
+    @Param ({"0", "1024", "1048576", "52428800"})
+    public int bodySize;
+
+    @Param ({"0", "10", "50"})
+    public int headerCount;
+
+    private MockabilityStandIn standIn;
+    private MockabilityOptions options;
+    private SimpleMockabilityClient client;
+    private SimpleResponse response;
+
+    @Setup
+    public void setup () throws Exception {
+        List<HeaderPair> headers = BenchmarkFixtures.headers (headerCount);
+        byte[] body = BenchmarkFixtures.body (bodySize);
+        standIn = new MockabilityStandIn ().start ();
+        options = MockabilityOptions.builder ().codec (BenchmarkFixtures.codec (codecName)).build ();
+        client = new SimpleMockabilityClient (standIn.getBaseUrl (), options);
+        client.prewarm (1);
+        response = new SimpleResponse (200, headers, body);
+        client.prepare ("POST", "/reported", response);
+        try (CloseableHttpClient sender = HttpClients.createDefault ()) {
+            HttpPost request = new HttpPost (standIn.getBaseUrl () + "/reported");
+            for (HeaderPair header : headers) {
+                request.addHeader (header.name (), header.value ());
+            }
+            request.setEntity (new ByteArrayEntity (body));
+            EntityUtils.consume (sender.execute (request).getEntity ());
+        }
+    }
+
+    @TearDown
+    public void teardown () throws Exception {
+        options.close ();
+        standIn.close ();
+    }
+
+    @Benchmark
+    public String prepareAndClear () {
+        client.prepare ("POST", "/prepared", response);
+        return client.clear ("POST", "/prepared");
+    }
+
+    @Benchmark
+    public List<SimpleRequest> report () {
+        return client.report ("POST", "/reported");
+    }
+
+    // The typical assertion: one header of each reported request, and never the body.
+    @Benchmark
+    public String reportViewHeaderOnly () {
+        String last = null;
+        for (ReportedRequest<SimpleRequest> request : client.reportView ("POST", "/reported")) {
+            last = request.getHeader ("X-Benchmark-0");
+        }
+        return last;
+    }
+}
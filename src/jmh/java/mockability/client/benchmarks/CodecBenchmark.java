@@ -0,0 +1,67 @@
+package mockability.client.benchmarks;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.codec.MockabilityCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the codecs on their own: writing a prepared response, and reading a report, with no network involved.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 3)
+@Measurement (iterations = 5)
+@Fork (1)
+public class CodecBenchmark {
+
+    @Param ({"json", "smile"})
+    public String codecName;
+
+    @Param ({"0", "1024", "1048576", "52428800"})
+    public int bodySize;
+
+    @Param ({"0", "10", "50"})
+    public int headerCount;
+
+    private MockabilityCodec codec;
+    private List<HeaderPair> headers;
+    private byte[] body;
+    private byte[] report;
+
+    @Setup
+    public void setup () throws IOException {
+        codec = BenchmarkFixtures.codec (codecName);
+        headers = BenchmarkFixtures.headers (headerCount);
+        body = BenchmarkFixtures.body (bodySize);
+        report = BenchmarkFixtures.report (codecName, 1, headers, body);
+    }
+
+    @Benchmark
+    public long writeResponse () throws IOException {
+        BenchmarkFixtures.CountingOutputStream ostr = new BenchmarkFixtures.CountingOutputStream ();
+        try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (ostr)) {
+            writer.writeResponse (200, headers, body);
+        }
+        return ostr.count;
+    }
+
+    @Benchmark
+    public void readReport (Blackhole blackhole) throws IOException {
+        try (MockabilityCodec.RequestReader reader = codec.newRequestReader (new ByteArrayInputStream (report))) {
+            while (reader.nextRequest ()) {
+                reader.readRequest ();
+                blackhole.consume (reader.getMethod ());
+                blackhole.consume (reader.getUri ());
+                blackhole.consume (reader.getHeaders ());
+                blackhole.consume (reader.getBody ());
+            }
+        }
+    }
+}
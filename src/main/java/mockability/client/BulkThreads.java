@@ -0,0 +1,23 @@
+package mockability.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Supplies the threads MockabilityBulk runs its operations on.  This is the version Java 8 through 20 load: a pool
+ * of platform threads no larger than the concurrency cap.  The one in src/main/java21, packaged under
+ * META-INF/versions/21 in the jar, starts a virtual thread per operation instead.
+ */
+class BulkThreads {
+
+    private static final AtomicInteger COUNT = new AtomicInteger ();
+
+    static ExecutorService newExecutor (int maxConcurrency) {
+        return Executors.newFixedThreadPool (maxConcurrency, runnable -> {
+            Thread thread = new Thread (runnable, "Mockability bulk " + COUNT.incrementAndGet ());
+            thread.setDaemon (true);
+            return thread;
+        });
+    }
+}
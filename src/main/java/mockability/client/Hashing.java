@@ -0,0 +1,24 @@
+package mockability.client;
+
+/**
+ * The 64-bit hash ShardedMockabilityClient places keys on its ring with and ReportIndex indexes bodies by.
+ */
+class Hashing {
+
+    private Hashing () {}
+
+    // 64-bit FNV-1a, finished with the MurmurHash3 mixer so that similar inputs come out far apart.
+    static long hash (byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= (b & 0xFF);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
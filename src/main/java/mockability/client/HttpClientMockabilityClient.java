@@ -11,4 +11,8 @@ public class HttpClientMockabilityClient extends MockabilityClient<HttpRequestBa
     public HttpClientMockabilityClient (String baseUrl) {
         super (new HttpClientAdapter (), baseUrl);
     }
+
+    public HttpClientMockabilityClient (String baseUrl, MockabilityOptions options) {
+        super (new HttpClientAdapter (), baseUrl, options);
+    }
 }
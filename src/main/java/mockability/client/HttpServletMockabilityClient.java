@@ -11,4 +11,8 @@ public class HttpServletMockabilityClient extends MockabilityClient<MockHttpServ
     public HttpServletMockabilityClient (String baseUrl) {
         super (new HttpServletAdapter (), baseUrl);
     }
+
+    public HttpServletMockabilityClient (String baseUrl, MockabilityOptions options) {
+        super (new HttpServletAdapter (), baseUrl, options);
+    }
 }
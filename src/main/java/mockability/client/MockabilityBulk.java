@@ -0,0 +1,187 @@
+package mockability.client;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs many clear, prepare, or report operations for different method/URI pairs at once, instead of one after
+ * another: for example, to clear hundreds of keys in teardown.  Each call blocks until every operation has finished.
+ * On Java 21 and later, each operation runs on a virtual thread of its own; on older JVMs, on a pool of platform
+ * threads.  Either way, no more than the concurrency cap run at the same time.  Operations for one key run on one
+ * thread, in order.  If any operation fails, the others still run, and a MockabilityBulkException reports every
+ * failure together.
+ * @param <Q> Class that will represent an HTTP request for the client. Q for "reQuest."
+ * @param <S> Class that will represent an HTTP response for the client. S for "reSponse."
+ */
+public class MockabilityBulk<Q, S> {
+
+    /**
+     * Concurrency cap used when none is given; matches the default maximum connections per route.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 20;
+
+    private final MockabilityClient<Q, S> client;
+    private final int maxConcurrency;
+
+    /**
+     * @param client Client to perform the operations; MockabilityClients are thread-safe.
+     */
+    public MockabilityBulk (MockabilityClient<Q, S> client) {
+        this (client, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * @param client Client to perform the operations; MockabilityClients are thread-safe.
+     * @param maxConcurrency Most operations to run at the same time.  There's little point in making it larger
+     *                       than the maximum connections per route in the client's MockabilityOptions.
+     */
+    public MockabilityBulk (MockabilityClient<Q, S> client, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException ("Concurrency cap must be at least 1, not " + maxConcurrency);
+        }
+        this.client = client;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Clears every key at once.  See MockabilityClient.clear(method, uri).
+     * @param keys Method/URI pairs to clear; each is cleared once, however often it appears.
+     * @return The text/plain body of the server's response for each key, in the order of the keys.
+     */
+    public Map<Key, String> clear (Collection<Key> keys) {
+        return run (keys, key -> client.clear (key.getMethod (), key.getUri ()));
+    }
+
+    /**
+     * Prepares one response for each key at once.  See MockabilityClient.prepare(method, uri, response).
+     * @param preparations Response to prepare for each method/URI pair
+     * @return The text/plain body of the server's response for each key, in the order of the map.
+     */
+    public Map<Key, String> prepare (Map<Key, S> preparations) {
+        return run (preparations.keySet (), key -> client.prepare (key.getMethod (), key.getUri (), preparations.get (key)));
+    }
+
+    /**
+     * Prepares a series of responses for each key at once; the responses for any one key still go in a single
+     * request, in order.  See MockabilityClient.prepareAll(method, uri, responses).
+     * @param preparations Responses to prepare for each method/URI pair
+     * @return The text/plain body of the server's response for each key, in the order of the map.
+     */
+    public Map<Key, String> prepareAll (Map<Key, ? extends Iterable<S>> preparations) {
+        return run (preparations.keySet (),
+            key -> client.prepareAll (key.getMethod (), key.getUri (), preparations.get (key)));
+    }
+
+    /**
+     * Reports every key at once.  See MockabilityClient.report(method, uri).
+     * @param keys Method/URI pairs to report; each is reported once, however often it appears.
+     * @return The requests reported for each key, in the order of the keys.
+     */
+    public Map<Key, List<Q>> report (Collection<Key> keys) {
+        return run (keys, key -> client.report (key.getMethod (), key.getUri ()));
+    }
+
+    private interface Operation<T> {
+        T perform (Key key);
+    }
+
+    private <T> Map<Key, T> run (Collection<Key> keys, Operation<T> operation) {
+        Semaphore permits = new Semaphore (maxConcurrency);
+        ExecutorService executor = BulkThreads.newExecutor (maxConcurrency);
+        Map<Key, Future<T>> futures = new LinkedHashMap<> ();
+        try {
+            for (Key key : new LinkedHashSet<> (keys)) {
+                futures.put (key, executor.submit (() -> {
+                    permits.acquire ();
+                    try {
+                        return operation.perform (key);
+                    }
+                    finally {
+                        permits.release ();
+                    }
+                }));
+            }
+            Map<Key, T> results = new LinkedHashMap<> ();
+            Map<Key, Throwable> failures = new LinkedHashMap<> ();
+            for (Map.Entry<Key, Future<T>> entry : futures.entrySet ()) {
+                try {
+                    results.put (entry.getKey (), entry.getValue ().get ());
+                }
+                catch (ExecutionException e) {
+                    failures.put (entry.getKey (), e.getCause ());
+                }
+            }
+            if (!failures.isEmpty ()) {
+                throw new MockabilityBulkException (results, failures);
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new IllegalStateException (e);
+        }
+        finally {
+            executor.shutdownNow ();
+        }
+    }
+
+    /**
+     * Immutable method/URI pair identifying one kind of request the Mockability server knows about.
+     */
+    public static final class Key {
+        private final String method;
+        private final String uri;
+
+        private Key (String method, String uri) {
+            this.method = method;
+            this.uri = uri;
+        }
+
+        /**
+         * @param method HTTP method: for example, "GET" or "POST".
+         * @param uri URI: for example, "/library/book/12345?user=sam".
+         * @return A Key for the pair.
+         */
+        public static Key of (String method, String uri) {
+            return new Key (method, uri);
+        }
+
+        /**
+         * @return HTTP method
+         */
+        public String getMethod () {
+            return method;
+        }
+
+        /**
+         * @return URI
+         */
+        public String getUri () {
+            return uri;
+        }
+
+        @Override
+        public boolean equals (Object o) {
+            if (!(o instanceof Key)) {return false;}
+            Key that = (Key)o;
+            return method.equals (that.method) && uri.equals (that.uri);
+        }
+
+        @Override
+        public int hashCode () {
+            return 31 * method.hashCode () + uri.hashCode ();
+        }
+
+        @Override
+        public String toString () {
+            return method + " '" + uri + "'";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package mockability.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown by MockabilityBulk when one or more of its operations fail.  Every failure is available, by key, from
+ * getFailures() and as a suppressed exception; the results of the operations that succeeded are available from
+ * getResults().  The maps aren't serialized, since the results needn't be Serializable: a deserialized exception
+ * keeps its message and suppressed exceptions, but its maps are empty.
+ */
+public class MockabilityBulkException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Map<MockabilityBulk.Key, ?> results;
+    private final transient Map<MockabilityBulk.Key, Throwable> failures;
+
+    MockabilityBulkException (Map<MockabilityBulk.Key, ?> results, Map<MockabilityBulk.Key, Throwable> failures) {
+        super (describe (results, failures));
+        this.results = Collections.unmodifiableMap (results);
+        this.failures = Collections.unmodifiableMap (failures);
+        for (Throwable failure : failures.values ()) {
+            addSuppressed (failure);
+        }
+    }
+
+    /**
+     * @return What each failed operation threw, by key, in the order the keys were given.
+     */
+    public Map<MockabilityBulk.Key, Throwable> getFailures () {
+        return (failures == null) ? Collections.<MockabilityBulk.Key, Throwable>emptyMap () : failures;
+    }
+
+    /**
+     * @return What each successful operation returned, by key, in the order the keys were given.
+     */
+    public Map<MockabilityBulk.Key, ?> getResults () {
+        return (results == null) ? Collections.emptyMap () : results;
+    }
+
+    private static String describe (Map<MockabilityBulk.Key, ?> results, Map<MockabilityBulk.Key, Throwable> failures) {
+        Map.Entry<MockabilityBulk.Key, Throwable> first = failures.entrySet ().iterator ().next ();
+        return failures.size () + " of " + (results.size () + failures.size ()) + " operations failed; first, "
+            + first.getKey () + ": " + first.getValue ().getMessage ();
+    }
+}
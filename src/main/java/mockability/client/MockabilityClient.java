@@ -1,59 +1,149 @@
 package mockability.client;
 
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.IntNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
+import mockability.client.adapters.Headers;
 import mockability.client.adapters.LibraryAdapter;
-import org.apache.commons.codec.binary.Base64;
+import mockability.client.adapters.StreamingLibraryAdapter;
+import mockability.client.codec.JsonCodec;
+import mockability.client.codec.MockabilityCodec;
 import org.apache.http.*;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.reactivestreams.Publisher;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Simplifies interaction with the Mockability server.
+ * <p>
+ * A MockabilityClient is thread-safe.  Everything it holds is final and fixed at construction, so once constructed
+ * it can be handed to other threads by any means, and one client can serve any number of parallel tests.  Each
+ * operation works on its own HTTP exchange, codec reader or writer, and OperationTimer; the only things shared
+ * between operations are the connection pools, metrics, and prepared-response cache in MockabilityOptions, which are
+ * thread-safe themselves, and a flag recording that the server refused the preferred codec, which only ever goes
+ * from false to true.  The LibraryAdapter and MockabilityCodec must be thread-safe too; all the ones supplied are.
+ * Operations from different threads on the same method and URI reach the server in the order in which they are
+ * sent: a report started after a prepare has returned sees that prepare's effects.
  * @param <Q> Class that will represent an HTTP request for this client. Q for "reQuest."
  * @param <S> Class that will represent an HTTP response for this client. S for "reSponse."
  */
 public class MockabilityClient<Q, S> {
 
-    private static final Base64 CODEC = new Base64();
-    HttpClient client = HttpClientBuilder.create ().build ();
-    private LibraryAdapter<Q, S> adapter;
-    private HttpHost host;
+    private static final MockabilityCodec JSON_CODEC = new JsonCodec ();
+    static final long FIRST_POLL_DELAY_MILLIS = 10;
+    static final long MAX_POLL_DELAY_MILLIS = 1000;
+    static final String OFFSET_HEADER = "X-Mockability-Offset";
+    private static final String GZIP = "gzip";
+    private final HttpClient client;
+    private final HttpAsyncClient asyncClient;
+    private final LibraryAdapter<Q, S> adapter;
+    private final HttpHost host;
+    private final MockabilityOptions options;
+    private final MockabilityCodec codec;
+    private final MockabilityMetrics metrics;
+    private volatile boolean codecRefused = false;
 
     /**
-     * Create a new MockabilityClient.
+     * Create a new MockabilityClient that shares the default connection pool with every other client created
+     * without explicit MockabilityOptions.
      * @param adapter Instance of class that implements the LibraryAdapter interface, adapting MockabilityClient to
      *                some standard representation of HTTP requests and responses.
      * @param baseUrl Base URL of the Mockability server to connect to: for example, "http://localhost:9000".
      */
     public MockabilityClient (LibraryAdapter<Q, S> adapter, String baseUrl) {
+        this (adapter, baseUrl, MockabilityOptions.defaults ());
+    }
+
+    /**
+     * Create a new MockabilityClient that uses the connection pool belonging to the supplied MockabilityOptions.
+     * @param adapter Instance of class that implements the LibraryAdapter interface, adapting MockabilityClient to
+     *                some standard representation of HTTP requests and responses.
+     * @param baseUrl Base URL of the Mockability server to connect to: for example, "http://localhost:9000".
+     * @param options Settings, including the connection pool, that may be shared with other clients.
+     */
+    public MockabilityClient (LibraryAdapter<Q, S> adapter, String baseUrl, MockabilityOptions options) {
+        this (adapter, baseUrl, options, options.getHttpClient (), null);
+    }
+
+    /**
+     * For tests, which supply HTTP clients of their own.  A null asyncClient means the one from the options, which
+     * isn't started until an asynchronous operation needs it.
+     */
+    MockabilityClient (LibraryAdapter<Q, S> adapter, String baseUrl, MockabilityOptions options, HttpClient client,
+            HttpAsyncClient asyncClient) {
+        this.adapter = adapter;
+        this.options = options;
+        this.client = client;
+        this.asyncClient = asyncClient;
+        codec = options.getCodec ();
+        metrics = options.getMetrics ();
+        host = hostOf (baseUrl);
+    }
+
+    HttpClient getHttpClient () {
+        return client;
+    }
+
+    private static HttpHost hostOf (String baseUrl) {
         try {
-            this.adapter = adapter;
             URI baseUri = new URI(baseUrl);
-            host = new HttpHost(baseUri.getHost(), baseUri.getPort());
+            return new HttpHost(baseUri.getHost(), baseUri.getPort(), baseUri.getScheme ());
         }
         catch (Exception e) {
             throw new IllegalStateException (e);
         }
     }
 
+    /**
+     * Opens connections to the Mockability server ahead of time, so that the first calls to clear(), prepare(),
+     * and report() don't have to wait for them.  The connections go into the shared pool, so other clients
+     * pointed at the same server will use them too.
+     * @param connections Number of connections to open; limited by the maximum connections per route.
+     */
+    public void prewarm (int connections) {
+        options.prewarm (host, connections);
+    }
+
     /**
      * Direct the Mockability server to forget everything it knows about requests and responses from your IP to
      * the supplied URI with the supplied method.
@@ -63,8 +153,9 @@ public class MockabilityClient<Q, S> {
      *          otherwise, the text/plain body of the 200 response from the Mockability server.
      */
     public String clear (String method, String uri) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.CLEAR, method, uri, false);
         HttpDelete request = new HttpDelete("/mockability/" + method + ensureInitialSlash (uri));
-        return textOrThrow (request);
+        return measured (timer, () -> textOrThrow (timer, request));
     }
 
     /**
@@ -73,8 +164,9 @@ public class MockabilityClient<Q, S> {
      *          otherwise, the text/plain body of the 200 response from the Mockability server.
      */
     public String clear () {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.CLEAR, null, null, false);
         HttpDelete request = new HttpDelete("/mockability");
-        return textOrThrow (request);
+        return measured (timer, () -> textOrThrow (timer, request));
     }
 
     /**
@@ -82,7 +174,9 @@ public class MockabilityClient<Q, S> {
      *  supplied method, and to respond with the provided response when it arrives. If you call this method more
      *  than once before you start sending the prepared-for requests, the Mockability server will remember your
      *  preparations and send the responses you provide in the order in which you provided them.  These preparations
-     *  can be eliminated either by calling the clear() method or by restarting the server.
+     *  can be eliminated either by calling the clear() method or by restarting the server.  The response is
+     *  serialized straight into the outgoing request as it is sent; no intermediate JSON tree or Base64 string is
+     *  built.
      * @param method HTTP method to prepare for
      * @param uri URI to prepare for
      * @param response Response to send when the prepared-for request arrives
@@ -90,18 +184,117 @@ public class MockabilityClient<Q, S> {
      *          otherwise, the text/plain body of the 200 response from the Mockability server.
      */
     public String prepare (String method, String uri, S response) {
-        try {
-            HttpPost request = new HttpPost("/mockability/" + method + ensureInitialSlash (uri));
-            request.addHeader (new BasicHeader ("Content-Type", "application/json"));
-            request.setEntity (new StringEntity(responseToJson (response)));
-            return textOrThrow (request);
+        PreparedResponseCache cache = options.getPreparedResponseCache ();
+        if (cache == null) {
+            return prepareAll (method, uri, Collections.singletonList (response));
         }
-        catch (IllegalStateException e) {
-            throw e;
+        return prepare (method, uri, cache.intern (contentsOf (response)));
+    }
+
+    /**
+     * Like prepare(method, uri, response), except that the response has already been serialized, so it's sent
+     * without going through the LibraryAdapter or the codec again.
+     * @param method HTTP method to prepare for
+     * @param uri URI to prepare for
+     * @param response Response to send when the prepared-for request arrives
+     * @return If unsuccessful, an IllegalStateException with a message that explains the problem;
+     *          otherwise, the text/plain body of the 200 response from the Mockability server.
+     */
+    public String prepare (String method, String uri, PreparedResponse response) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.PREPARE, method, uri, false);
+        String path = "/mockability/" + method + ensureInitialSlash (uri);
+        MockabilityCodec outgoing = outgoingCodec ();
+        return measured (timer, () -> {
+            String result = execute (timer, preparedPreparation (path, response, outgoing, timer),
+                r -> textOrRefusal (timer, r, outgoing));
+            if (result == null) {
+                codecRefused = true;
+                result = textOrThrow (timer, preparedPreparation (path, response, JSON_CODEC, timer));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Converts a response through the LibraryAdapter and serializes it, once, for sending as often as you like with
+     * prepare(method, uri, preparedResponse).  The result can be shared with other threads and other clients.
+     * @param response Response to serialize
+     * @return The response, serialized in the format this client prefers.
+     */
+    public PreparedResponse toPreparedResponse (S response) {
+        PreparedResponse result = contentsOf (response);
+        try {
+            result.payload (outgoingCodec ());
         }
-        catch (Exception e) {
+        catch (IOException e) {
             throw new IllegalStateException (e);
         }
+        return result;
+    }
+
+    /**
+     * Direct the Mockability server to prepare for a series of requests from your IP address to the supplied URI
+     * with the supplied method, and to respond to them with the provided responses, in order.  This has the same
+     * effect as calling prepare() once for each response, but all the responses travel to the server in a single
+     * POST.  The responses are serialized as they are sent, using chunked transfer encoding, so the complete
+     * payload is never held in memory at once.
+     * @param method HTTP method to prepare for
+     * @param uri URI to prepare for
+     * @param responses Responses to send, in order, when the prepared-for requests arrive.  If the server refuses
+     *                  the preferred codec, the responses are sent again in JSON, which only a Collection is sure to
+     *                  allow; any other Iterable gets an IllegalStateException instead, and later calls use JSON.
+     * @return If unsuccessful, an IllegalStateException with a message that explains the problem;
+     *          otherwise, the text/plain body of the 200 response from the Mockability server.
+     */
+    public String prepareAll (String method, String uri, Iterable<S> responses) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.PREPARE, method, uri, false);
+        String path = "/mockability/" + method + ensureInitialSlash (uri);
+        MockabilityCodec outgoing = outgoingCodec ();
+        return measured (timer, () -> {
+            String result = execute (timer, preparation (path, responses, outgoing, timer),
+                response -> textOrRefusal (timer, response, outgoing));
+            if (result == null) {
+                codecRefused = true;
+                // An Iterable that isn't a Collection may have nothing left to give, and preparing nothing would
+                // look just like success.
+                if (!(responses instanceof Collection)) {
+                    throw new IllegalStateException ("Server refused " + outgoing.getContentType () + " for " + method +
+                        " '" + uri + "', and the responses can't be sent again in JSON because they aren't a " +
+                        "Collection; nothing was prepared.  Later calls will use JSON.");
+                }
+                result = textOrThrow (timer, preparation (path, responses, JSON_CODEC, timer));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Like prepare(), except that the body of the response is the contents of a file, which is memory-mapped and
+     * written straight into the outgoing request rather than read into memory first.  Use this for large fixtures,
+     * such as images or archives, that there's no other reason to load; heap use doesn't grow with the file.
+     * @param method HTTP method to prepare for
+     * @param uri URI to prepare for
+     * @param status Status code of the response to send when the prepared-for request arrives
+     * @param headers Headers of the response to send
+     * @param file File holding the body of the response to send; no larger than 2GB
+     * @return If unsuccessful, an IllegalStateException with a message that explains the problem;
+     *          otherwise, the text/plain body of the 200 response from the Mockability server.
+     */
+    public String prepareFromFile (String method, String uri, int status, List<LibraryAdapter.HeaderPair> headers,
+            Path file) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.PREPARE, method, uri, false);
+        String path = "/mockability/" + method + ensureInitialSlash (uri);
+        MockabilityCodec outgoing = outgoingCodec ();
+        return measured (timer, () -> {
+            MappedByteBuffer body = map (file);
+            String result = execute (timer, filePreparation (path, status, headers, body, outgoing, timer),
+                response -> textOrRefusal (timer, response, outgoing));
+            if (result == null) {
+                codecRefused = true;
+                result = textOrThrow (timer, filePreparation (path, status, headers, body, JSON_CODEC, timer));
+            }
+            return result;
+        });
     }
 
     /**
@@ -113,29 +306,362 @@ public class MockabilityClient<Q, S> {
      * @return List of HTTP request objects corresponding to the requests seen by the server.
      */
     public List<Q> report (String method, String uri) {
-        try {
-            HttpGet request = new HttpGet("/mockability/" + method + ensureInitialSlash (uri));
-            HttpResponse reportResponse = client.execute (host, request);
-            if (reportResponse.getStatusLine ().getStatusCode () != 200) {
-                throw new IllegalStateException (new String (extractBody (reportResponse)));
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.REPORT, method, uri, false);
+        HttpGet request = reportRequest (method, uri);
+        return measured (timer, () -> execute (timer, request, response -> requestsFrom (timer, response)));
+    }
+
+    /**
+     * Like report(), except that the reported requests aren't converted through the LibraryAdapter, and their bodies
+     * aren't decoded, until you ask for them.  If you're only going to look at methods, URIs, and headers, this is
+     * much cheaper for a large report.
+     * @param method HTTP method to report
+     * @param uri URI to report
+     * @return A list of ReportedRequests corresponding to the requests seen by the server.
+     */
+    public ReportView<Q> reportView (String method, String uri) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.REPORT, method, uri, false);
+        HttpGet request = reportRequest (method, uri);
+        return measured (timer, () -> execute (timer, request, response -> viewFrom (timer, response)));
+    }
+
+    /**
+     * Like reportView(), except that the requests are indexed as they're reported, so that assertions can look them
+     * up by method, URI, path, query parameter, header value, or body instead of scanning the whole report.
+     * @param method HTTP method to report
+     * @param uri URI to report
+     * @param indexedHeaders Names of the headers whose values should be indexed, in any case
+     * @return An index over the requests seen by the server.
+     */
+    public ReportIndex<Q> reportIndex (String method, String uri, String... indexedHeaders) {
+        return new ReportIndex<> (reportView (method, uri), indexedHeaders);
+    }
+
+    /**
+     * Like report(), except that only the requests that arrived after the supplied cursor are returned, along with
+     * a cursor to use next time.  Requests before the cursor aren't decoded or converted.  A Mockability server that
+     * understands the X-Mockability-Offset header doesn't even send them; with one that doesn't, they're skipped
+     * over as the report is read.
+     * @param method HTTP method to report
+     * @param uri URI to report
+     * @param cursor ReportCursor.START the first time; after that, the cursor from the previous ReportPage.
+     * @return The requests after the cursor, and the cursor after them.
+     */
+    public ReportPage<Q> reportSince (String method, String uri, ReportCursor cursor) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.REPORT, method, uri, false);
+        HttpGet request = reportRequest (method, uri);
+        if (cursor.getOffset () > 0) {
+            request.addHeader (new BasicHeader (OFFSET_HEADER, Integer.toString (cursor.getOffset ())));
+        }
+        return measured (timer, () -> execute (timer, request, response -> pageFrom (timer, response, cursor)));
+    }
+
+    /**
+     * Waits until the Mockability server has received at least the specified number of requests from your IP address
+     * to the supplied URI with the supplied method, then reports them all.  Use this instead of calling report() in
+     * a loop when the requests are made asynchronously by the system under test.  The server is polled at
+     * increasing intervals, from 10ms up to a second, each randomly shortened by up to half so that many waiting
+     * clients don't poll in step.  Until enough requests have arrived, each poll only counts them; none is decoded
+     * or converted.
+     * @param method HTTP method to wait for
+     * @param uri URI to wait for
+     * @param count Number of requests to wait for
+     * @param timeout How long to wait before giving up
+     * @param unit Unit of timeout
+     * @return List of HTTP request objects corresponding to all the requests seen by the server; at least count
+     *          of them.
+     * @throws IllegalStateException If the requests haven't all arrived by the end of the timeout, or if the
+     *          Mockability server reports a problem.
+     */
+    public List<Q> waitForRequests (String method, String uri, int count, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime () + unit.toNanos (timeout);
+        long delayMillis = FIRST_POLL_DELAY_MILLIS;
+        int seen;
+        while (true) {
+            OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.REPORT, method, uri, false);
+            HttpGet request = reportRequest (method, uri);
+            PolledReport poll = measured (timer, () -> execute (timer, request, response -> pollReport (timer, response, count)));
+            if (poll.requests != null) {
+                return poll.requests;
+            }
+            seen = poll.count;
+            long remainingNanos = deadline - System.nanoTime ();
+            if (remainingNanos <= 0) {
+                break;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis (remainingNanos + 999999);
+            long sleepMillis = (delayMillis / 2) + ThreadLocalRandom.current ().nextLong ((delayMillis / 2) + 1);
+            try {
+                Thread.sleep (Math.min (sleepMillis, remainingMillis));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread ().interrupt ();
+                throw new IllegalStateException (e);
             }
-            return inputStreamToRequests(reportResponse.getEntity().getContent());
+            delayMillis = Math.min (delayMillis * 2, MAX_POLL_DELAY_MILLIS);
+        }
+        throw new IllegalStateException ("Waited " + unit.toMillis (timeout) + "ms for " + count + " request(s) to " +
+            method + " '" + uri + "', but only " + seen + " arrived");
+    }
+
+    /**
+     * Like report(), except that the reported requests are parsed and converted one at a time, as the returned
+     * Stream is consumed, instead of all being held in memory at once.  The connection to the Mockability server
+     * stays open until the Stream has been consumed completely or closed; use try-with-resources.
+     * @param method HTTP method to report
+     * @param uri URI to report
+     * @return Stream of HTTP request objects corresponding to the requests seen by the server.
+     */
+    public Stream<Q> reportStream (String method, String uri) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.REPORT, method, uri, false);
+        HttpGet request = reportRequest (method, uri);
+        HttpResponse response = null;
+        try {
+            timer.beginNetwork ();
+            response = client.execute (host, request);
+            timer.endNetwork ();
+            timer.status = response.getStatusLine ().getStatusCode ();
+            ReportIterator iterator = openReport (timer, response);
+            Spliterator<Q> spliterator = Spliterators.spliteratorUnknownSize (iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream (spliterator, false).onClose (() -> {
+                iterator.close ();
+                timer.finish (metrics, iterator.failure);
+            });
         }
         catch (IllegalStateException e) {
+            release (response);
+            timer.finish (metrics, e);
             throw e;
         }
         catch (Exception e) {
-            throw new IllegalStateException (e);
+            release (response);
+            IllegalStateException failure = new IllegalStateException (e);
+            timer.finish (metrics, failure);
+            throw failure;
+        }
+    }
+
+    /**
+     * Asynchronous version of clear(method, uri): the request is sent using non-blocking I/O, and the calling thread
+     * does not wait for the response.
+     * @param method HTTP method to clear: for example, "GET" or "POST".
+     * @param uri URI to clear: for example, "/library/book/12345?user=sam"
+     * @return A future that completes with the text/plain body of the 200 response from the Mockability server,
+     *          or completes exceptionally with an IllegalStateException that explains the problem.
+     */
+    public CompletableFuture<String> clearAsync (String method, String uri) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.CLEAR, method, uri, true);
+        HttpDelete request = new HttpDelete("/mockability/" + method + ensureInitialSlash (uri));
+        return measuredAsync (timer, executeAsync (timer, request, response -> textFrom (timer, response)));
+    }
+
+    /**
+     * Asynchronous version of clear().
+     * @return A future that completes with the text/plain body of the 200 response from the Mockability server,
+     *          or completes exceptionally with an IllegalStateException that explains the problem.
+     */
+    public CompletableFuture<String> clearAsync () {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.CLEAR, null, null, true);
+        HttpDelete request = new HttpDelete("/mockability");
+        return measuredAsync (timer, executeAsync (timer, request, response -> textFrom (timer, response)));
+    }
+
+    /**
+     * Asynchronous version of prepare(method, uri, response).  The response is serialized on the calling thread;
+     * the request is sent using non-blocking I/O.
+     * @param method HTTP method to prepare for
+     * @param uri URI to prepare for
+     * @param response Response to send when the prepared-for request arrives
+     * @return A future that completes with the text/plain body of the 200 response from the Mockability server,
+     *          or completes exceptionally with an IllegalStateException that explains the problem.
+     */
+    public CompletableFuture<String> prepareAsync (String method, String uri, S response) {
+        PreparedResponseCache cache = options.getPreparedResponseCache ();
+        if (cache != null) {
+            PreparedResponse prepared;
+            try {
+                prepared = cache.intern (contentsOf (response));
+            }
+            catch (IllegalStateException e) {
+                CompletableFuture<String> failure = new CompletableFuture<> ();
+                failure.completeExceptionally (e);
+                return failure;
+            }
+            return prepareAsync (method, uri, prepared);
+        }
+        String path = "/mockability/" + method + ensureInitialSlash (uri);
+        return prepareAsync (method, uri, (codec, timer) -> bufferedPreparation (path, response, codec, timer));
+    }
+
+    /**
+     * Asynchronous version of prepare(method, uri, preparedResponse).
+     * @param method HTTP method to prepare for
+     * @param uri URI to prepare for
+     * @param response Response to send when the prepared-for request arrives
+     * @return A future that completes with the text/plain body of the 200 response from the Mockability server,
+     *          or completes exceptionally with an IllegalStateException that explains the problem.
+     */
+    public CompletableFuture<String> prepareAsync (String method, String uri, PreparedResponse response) {
+        String path = "/mockability/" + method + ensureInitialSlash (uri);
+        return prepareAsync (method, uri, (codec, timer) -> preparedPreparation (path, response, codec, timer));
+    }
+
+    private CompletableFuture<String> prepareAsync (String method, String uri, Preparation preparation) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.PREPARE, method, uri, true);
+        MockabilityCodec outgoing = outgoingCodec ();
+        HttpPost request;
+        try {
+            request = preparation.make (outgoing, timer);
+        }
+        catch (Exception e) {
+            CompletableFuture<String> failure = new CompletableFuture<> ();
+            failure.completeExceptionally (new IllegalStateException (e));
+            return measuredAsync (timer, failure);
         }
+        return measuredAsync (timer, executeAsync (timer, request, r -> textOrRefusal (timer, r, outgoing)).thenCompose (result -> {
+            if (result != null) {
+                return CompletableFuture.completedFuture (result);
+            }
+            codecRefused = true;
+            try {
+                return executeAsync (timer, preparation.make (JSON_CODEC, timer), r -> textFrom (timer, r));
+            }
+            catch (Exception e) {
+                CompletableFuture<String> failure = new CompletableFuture<> ();
+                failure.completeExceptionally (new IllegalStateException (e));
+                return failure;
+            }
+        }));
+    }
+
+    /**
+     * Asynchronous version of report(method, uri).  The reported requests are converted through the LibraryAdapter
+     * on one of the I/O threads once the whole report has arrived.
+     * @param method HTTP method to report
+     * @param uri URI to report
+     * @return A future that completes with the list of HTTP request objects corresponding to the requests seen by
+     *          the server, or completes exceptionally with an IllegalStateException that explains the problem.
+     */
+    public CompletableFuture<List<Q>> reportAsync (String method, String uri) {
+        OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.REPORT, method, uri, true);
+        HttpGet request = reportRequest (method, uri);
+        return measuredAsync (timer, executeAsync (timer, request, response -> requestsFrom (timer, response)));
+    }
+
+    /**
+     * Reactive Streams version of report(method, uri).  Each subscriber gets a report of its own, fetched using
+     * non-blocking I/O when it subscribes.  The report is read from the network, parsed, and converted through the
+     * LibraryAdapter one request at a time, only as the subscriber requests them: however big the report, no more of
+     * it than a small window of the encoded body is held for a slow subscriber, and the server waits while the window
+     * is full.  The connection stays leased until the report ends or the subscription is cancelled, and cancelling
+     * before the end shuts the connection down rather than reading the rest.  Reading waits for the network, so it
+     * happens on whichever thread calls request(), or on a ForkJoinPool.commonPool() thread for demand that came
+     * before the report began to arrive; don't call request() on one of the HTTP client's own I/O threads.
+     * A failure to fetch or parse the report reaches the subscriber through onError as an IllegalStateException.
+     * @param method HTTP method to report
+     * @param uri URI to report
+     * @return Publisher of HTTP request objects corresponding to the requests seen by the server.
+     */
+    public Publisher<Q> reportPublisher (String method, String uri) {
+        return reportPublisher (method, uri, ForkJoinPool.commonPool ());
+    }
+
+    // An I/O thread must never wait for the network, so a report that arrives there is handed to the executor.
+    Publisher<Q> reportPublisher (String method, String uri, Executor executor) {
+        return new ReportPublisher<> (() -> {
+            OperationTimer timer = new OperationTimer (MockabilityOperation.Kind.REPORT, method, uri, true);
+            CompletableFuture<ReportPublisher.Source<Q>> future = new CompletableFuture<> ();
+            timer.beginNetwork ();
+            asyncClient ().execute (HttpAsyncMethods.create (host, reportRequest (method, uri)),
+                new StreamingResponseConsumer (response -> {
+                    timer.endNetwork ();
+                    timer.status = response.getStatusLine ().getStatusCode ();
+                    executor.execute (() -> {
+                        try {
+                            future.complete (sourceOf (timer, response));
+                        }
+                        catch (IllegalStateException e) {
+                            future.completeExceptionally (e);
+                        }
+                        catch (Exception e) {
+                            future.completeExceptionally (new IllegalStateException (e));
+                        }
+                    });
+                }),
+                new FutureCallback<HttpResponse> () {
+                    @Override
+                    public void completed (HttpResponse response) {}
+
+                    @Override
+                    public void failed (Exception e) {
+                        future.completeExceptionally (new IllegalStateException (e));
+                    }
+
+                    @Override
+                    public void cancelled () {
+                        future.cancel (false);
+                    }
+                });
+            future.whenComplete ((source, failure) -> {
+                if (failure != null) {
+                    timer.finish (metrics, ((failure instanceof CompletionException) && (failure.getCause () != null))
+                        ? failure.getCause () : failure);
+                }
+            });
+            return future;
+        });
     }
 
-    private String textOrThrow (HttpRequest request) {
+    private ReportPublisher.Source<Q> sourceOf (OperationTimer timer, HttpResponse response) throws Exception {
+        ReportIterator iterator;
         try {
-            HttpResponse response = client.execute(host, request);
-            if (response.getStatusLine ().getStatusCode() != 200) {
-                throw new IllegalStateException (new String (extractBody (response)));
+            iterator = openReport (timer, response);
+        }
+        catch (Exception e) {
+            ((Closeable)response).close ();
+            throw e;
+        }
+        return new ReportPublisher.Source<Q> () {
+            @Override public boolean hasNext () {return iterator.hasNext ();}
+            @Override public Q next () {return iterator.next ();}
+            @Override public void close () {
+                iterator.close ();
+                timer.finish (metrics, iterator.failure);
             }
-            return new String (extractBody (response));
+        };
+    }
+
+    private <T> T measured (OperationTimer timer, Supplier<T> operation) {
+        try {
+            T result = operation.get ();
+            timer.finish (metrics, null);
+            return result;
+        }
+        catch (RuntimeException e) {
+            timer.finish (metrics, e);
+            throw e;
+        }
+    }
+
+    // The metrics hear about the operation before anybody waiting on the future does.
+    private <T> CompletableFuture<T> measuredAsync (OperationTimer timer, CompletableFuture<T> future) {
+        return future.whenComplete ((result, failure) -> timer.finish (metrics,
+            ((failure instanceof CompletionException) && (failure.getCause () != null)) ? failure.getCause () : failure));
+    }
+
+    private String textOrThrow (OperationTimer timer, HttpRequest request) {
+        return execute (timer, request, response -> textFrom (timer, response));
+    }
+
+    private <T> T execute (OperationTimer timer, HttpRequest request, ResponseReader<T> reader) {
+        HttpResponse response = null;
+        try {
+            timer.beginNetwork ();
+            response = client.execute(host, request);
+            timer.endNetwork ();
+            timer.status = response.getStatusLine ().getStatusCode ();
+            return reader.read (response);
         }
         catch (IllegalStateException e) {
             throw e;
@@ -143,6 +669,222 @@ public class MockabilityClient<Q, S> {
         catch (Exception e) {
             throw new IllegalStateException (e);
         }
+        finally {
+            release (response);
+        }
+    }
+
+    private <T> CompletableFuture<T> executeAsync (OperationTimer timer, HttpRequest request, ResponseReader<T> reader) {
+        CompletableFuture<T> future = new CompletableFuture<> ();
+        timer.beginNetwork ();
+        asyncClient ().execute (host, request, new FutureCallback<HttpResponse> () {
+            @Override
+            public void completed (HttpResponse response) {
+                timer.endNetwork ();
+                timer.status = response.getStatusLine ().getStatusCode ();
+                try {
+                    future.complete (reader.read (response));
+                }
+                catch (IllegalStateException e) {
+                    future.completeExceptionally (e);
+                }
+                catch (Exception e) {
+                    future.completeExceptionally (new IllegalStateException (e));
+                }
+                finally {
+                    release (response);
+                }
+            }
+
+            @Override
+            public void failed (Exception e) {
+                future.completeExceptionally (new IllegalStateException (e));
+            }
+
+            @Override
+            public void cancelled () {
+                future.cancel (false);
+            }
+        });
+        return future;
+    }
+
+    // The non-blocking pool and its I/O threads aren't started until somebody actually wants them.
+    private HttpAsyncClient asyncClient () {
+        return (asyncClient != null) ? asyncClient : options.getHttpAsyncClient ();
+    }
+
+    private String textFrom (OperationTimer timer, HttpResponse response) {
+        timer.beginNetwork ();
+        byte[] body = extractBody (response);
+        timer.endNetwork ();
+        timer.bytesReceived += body.length;
+        if (response.getStatusLine ().getStatusCode() != 200) {
+            throw new IllegalStateException (new String (body));
+        }
+        return new String (body);
+    }
+
+    private List<Q> requestsFrom (OperationTimer timer, HttpResponse response) throws Exception {
+        List<Q> requests = new ArrayList<Q> ();
+        try {
+            for (ReportIterator iter = openReport (timer, response); iter.hasNext ();) {
+                requests.add (iter.next ());
+            }
+        }
+        catch (Throwable e) {
+            discard (adapter, requests, e);
+            throw e;
+        }
+        return requests;
+    }
+
+    // Requests converted for a report that then fails never reach the caller, so the adapter gets to free them.
+    static <Q> void discard (LibraryAdapter<Q, ?> adapter, List<Q> requests, Throwable failure) {
+        for (Q request : requests) {
+            try {
+                adapter.discardRequest (request);
+            }
+            catch (RuntimeException e) {
+                failure.addSuppressed (e);
+            }
+        }
+    }
+
+    // Buffers the report and counts its elements; decodes and converts them only if there are enough of them.
+    private PolledReport pollReport (OperationTimer timer, HttpResponse response, int wanted) throws Exception {
+        if (response.getStatusLine ().getStatusCode () != 200) {
+            throw new IllegalStateException (new String (extractBody (response)));
+        }
+        timer.beginNetwork ();
+        byte[] body = extractBody (response);
+        timer.endNetwork ();
+        timer.bytesReceived += body.length;
+        MockabilityCodec incoming = incomingCodec (response);
+        int count = 0;
+        timer.beginDeserialize ();
+        try (MockabilityCodec.RequestReader reader = incoming.newRequestReader (new ByteArrayInputStream (body))) {
+            while (reader.nextRequest ()) {
+                reader.skipRequest ();
+                count++;
+            }
+        }
+        finally {
+            timer.endDeserialize ();
+        }
+        if (count < wanted) {
+            return new PolledReport (count, null);
+        }
+        List<Q> requests = new ArrayList<> ();
+        timer.beginDeserialize ();
+        try (MockabilityCodec.RequestReader reader = incoming.newRequestReader (new ByteArrayInputStream (body))) {
+            while (reader.nextRequest ()) {
+                requests.add (convert (timer, reader));
+            }
+        }
+        catch (Throwable e) {
+            discard (adapter, requests, e);
+            throw e;
+        }
+        finally {
+            timer.endDeserialize ();
+        }
+        timer.elements = requests.size ();
+        return new PolledReport (count, requests);
+    }
+
+    private ReportPage<Q> pageFrom (OperationTimer timer, HttpResponse response, ReportCursor cursor) throws Exception {
+        if (response.getStatusLine ().getStatusCode () != 200) {
+            throw new IllegalStateException (new String (extractBody (response)));
+        }
+        Header applied = response.getFirstHeader (OFFSET_HEADER);
+        boolean skippedByServer = (applied != null) && applied.getValue ().trim ().equals (Integer.toString (cursor.getOffset ()));
+        int toSkip = skippedByServer ? 0 : cursor.getOffset ();
+        int seen = skippedByServer ? cursor.getOffset () : 0;
+        List<Q> requests = new ArrayList<> ();
+        timer.beginDeserialize ();
+        try (MockabilityCodec.RequestReader reader =
+                 incomingCodec (response).newRequestReader (timer.meter (entityOf (response).getContent ()))) {
+            while (reader.nextRequest ()) {
+                if (seen++ < toSkip) {
+                    reader.skipRequest ();
+                }
+                else {
+                    requests.add (convert (timer, reader));
+                }
+            }
+        }
+        catch (Throwable e) {
+            discard (adapter, requests, e);
+            throw e;
+        }
+        finally {
+            timer.endDeserialize ();
+        }
+        timer.elements = requests.size ();
+        return new ReportPage<> (requests, new ReportCursor (Math.max (seen, cursor.getOffset ())));
+    }
+
+    private ReportView<Q> viewFrom (OperationTimer timer, HttpResponse response) throws Exception {
+        if (response.getStatusLine ().getStatusCode () != 200) {
+            throw new IllegalStateException (new String (extractBody (response)));
+        }
+        List<ReportedRequest<Q>> requests = new ArrayList<> ();
+        timer.beginDeserialize ();
+        try (MockabilityCodec.RequestReader reader =
+                 incomingCodec (response).newRequestReader (timer.meter (entityOf (response).getContent ()))) {
+            while (reader.nextRequest ()) {
+                reader.readRequestLeavingBodyEncoded ();
+                requests.add (new ReportedRequest<> (adapter, reader.getMethod (), reader.getUri (),
+                    reader.getHeaders (), reader.getEncodedBody ()));
+            }
+        }
+        finally {
+            timer.endDeserialize ();
+        }
+        timer.elements = requests.size ();
+        return new ReportView<> (requests);
+    }
+
+    private Q convert (OperationTimer timer, MockabilityCodec.RequestReader reader) throws Exception {
+        reader.readRequest ();
+        long start = System.nanoTime ();
+        Q request = convert (adapter, reader.getMethod (), reader.getUri (), reader.getHeaders (), reader.getBody ());
+        timer.conversionNanos += System.nanoTime () - start;
+        return request;
+    }
+
+    // A streaming adapter is handed a buffer over the decoded body, which it may keep instead of copying.
+    static <Q> Q convert (LibraryAdapter<Q, ?> adapter, String method, String uri,
+            List<LibraryAdapter.HeaderPair> headers, byte[] body) throws Exception {
+        if (adapter instanceof StreamingLibraryAdapter) {
+            return ((StreamingLibraryAdapter<Q, ?>)adapter).convert (method, uri, headers, ByteBuffer.wrap (body));
+        }
+        return adapter.convert (method, uri, headers, body);
+    }
+
+    private ReportIterator openReport (OperationTimer timer, HttpResponse response) throws Exception {
+        if (response.getStatusLine ().getStatusCode () != 200) {
+            throw new IllegalStateException (new String (extractBody (response)));
+        }
+        return new ReportIterator (response, timer);
+    }
+
+    // Reads whatever is left of the response entity, so that the connection goes back to the pool for reuse.
+    private void release (HttpResponse response) {
+        if (response != null) {
+            EntityUtils.consumeQuietly (response.getEntity ());
+        }
+    }
+
+    // A gzip-encoded body is decompressed as it's read, never all at once.
+    private HttpEntity entityOf (HttpResponse response) {
+        HttpEntity entity = response.getEntity ();
+        Header encoding = response.getFirstHeader ("Content-Encoding");
+        if ((entity != null) && (encoding != null) && GZIP.equalsIgnoreCase (encoding.getValue ().trim ())) {
+            return new GzipDecompressingEntity (entity);
+        }
+        return entity;
     }
 
     private List<LibraryAdapter.HeaderPair> extractHeaders (HttpResponse response) {
@@ -154,24 +896,19 @@ public class MockabilityClient<Q, S> {
     }
 
     private List<LibraryAdapter.HeaderPair> translateHeaders (Header[] headers) {
-        List<LibraryAdapter.HeaderPair> pairs = new ArrayList<LibraryAdapter.HeaderPair>();
+        Headers.Builder builder = Headers.builder ();
         for (Header header : headers) {
-            pairs.add (new LibraryAdapter.HeaderPair(header.getName (), header.getValue ()));
+            builder.add (header.getName (), header.getValue ());
         }
-        return pairs;
+        return builder.build ();
     }
 
     private byte[] extractBody (HttpResponse response) {
         try {
-            InputStream istr = response.getEntity().getContent();
-            ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
-            byte[] buf = new byte[1024];
-            while (true) {
-                int len = istr.read (buf);
-                if (len < 0) {break;}
-                ostr.write (buf, 0, len);
+            if (response.getEntity () == null) {
+                return new byte[] {};
             }
-            return ostr.toByteArray ();
+            return EntityUtils.toByteArray (entityOf (response));
         }
         catch (Exception e) {
             throw new IllegalStateException (e);
@@ -187,66 +924,420 @@ public class MockabilityClient<Q, S> {
         }
     }
 
-    private String responseToJson (S response) throws Exception {
-        int status = adapter.getResponseStatus(response);
-        List<LibraryAdapter.HeaderPair> headers = adapter.getResponseHeaders (response);
-        String body = CODEC.encodeToString(adapter.getResponseBody(response));
+    private MockabilityCodec outgoingCodec () {
+        return codecRefused ? JSON_CODEC : codec;
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
-        ArrayNode root = mapper.createArrayNode ();
-        ObjectNode responseNode = mapper.createObjectNode ();
-        responseNode.set ("status", new IntNode(status));
-        responseNode.set ("headers", makeHeaders (headers, mapper));
-        responseNode.set ("body", new TextNode (body));
-        root.add (responseNode);
-        return root.toString ();
+    private MockabilityCodec incomingCodec (HttpResponse response) {
+        Header contentType = response.getFirstHeader ("Content-Type");
+        if ((contentType != null) && contentType.getValue ().startsWith (codec.getContentType ())) {
+            return codec;
+        }
+        return JSON_CODEC;
     }
 
-    private ArrayNode makeHeaders (List<LibraryAdapter.HeaderPair> headers, ObjectMapper mapper) {
-        ArrayNode jsonHeaders = mapper.createArrayNode();
-        for (LibraryAdapter.HeaderPair header : headers) {
-            ObjectNode jsonHeader = mapper.createObjectNode ();
-            jsonHeader.set ("name", new TextNode (header.name ()));
-            jsonHeader.set ("value", new TextNode (header.value ()));
-            jsonHeaders.add (jsonHeader);
+    private HttpGet reportRequest (String method, String uri) {
+        HttpGet request = new HttpGet("/mockability/" + method + ensureInitialSlash (uri));
+        if (codec == JSON_CODEC || JSON_CODEC.getContentType ().equals (codec.getContentType ())) {
+            request.addHeader (new BasicHeader ("Accept", JSON_CODEC.getContentType ()));
+        }
+        else {
+            request.addHeader (new BasicHeader ("Accept", codec.getContentType () + ", " + JSON_CODEC.getContentType () + ";q=0.5"));
+        }
+        if (options.getGzipThreshold () > 0) {
+            request.addHeader (new BasicHeader ("Accept-Encoding", GZIP));
         }
-        return jsonHeaders;
+        return request;
     }
 
-    private List<Q> inputStreamToRequests (InputStream istr) throws Exception {
-        ObjectMapper mapper = new ObjectMapper ();
-        JsonParser parser = mapper.getFactory ().createParser (istr);
-        parser.setCodec (mapper);
-        ArrayNode root = parser.readValueAsTree();
-        List<Q> requests = new ArrayList<Q> ();
-        for (Iterator<JsonNode> iter = root.elements (); iter.hasNext ();) {
-            ObjectNode request = (ObjectNode)iter.next ();
-            requests.add (objectNodeToRequest (request));
+    // With compression on, there's no telling whether the body will be worth compressing until it has been written,
+    // so it goes into memory until it's finished or has grown past the threshold.  Only in the second case is it
+    // compressed, and then the rest of it is written as it's sent.
+    private HttpPost preparation (String path, Iterable<S> responses, MockabilityCodec codec, OperationTimer timer) {
+        int threshold = options.getGzipThreshold ();
+        if (threshold <= 0) {
+            return preparation (path, codec, -1, responses instanceof Collection,
+                ostr -> writeResponses (ostr, responses, codec, timer));
         }
-        return requests;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream ();
+        ResponseSerializer serializer = new ResponseSerializer (responses, codec, timer, buffer);
+        try {
+            if (serializer.write (threshold)) {
+                HttpPost request = new HttpPost(path);
+                request.setEntity (payloadEntity (buffer.toByteArray (), codec));
+                return request;
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException (e);
+        }
+        return preparation (path, codec, Long.MAX_VALUE, false, ostr -> {
+            buffer.writeTo (ostr);
+            serializer.redirect (ostr);
+            serializer.write (Long.MAX_VALUE);
+        });
+    }
+
+    private HttpPost filePreparation (String path, int status, List<LibraryAdapter.HeaderPair> headers,
+            ByteBuffer body, MockabilityCodec codec, OperationTimer timer) {
+        return preparation (path, codec, body.remaining (), true, ostr -> {
+            timer.beginSerialize ();
+            try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (timer.meter (ostr))) {
+                writer.writeResponse (status, headers, body);
+            }
+            finally {
+                timer.endSerialize ();
+                timer.elements = 1;
+            }
+        });
     }
 
-    private Q objectNodeToRequest (ObjectNode root) throws Exception {
-        String method = root.get ("method").asText ();
-        String uri = root.get ("uri").asText ();
-        List<LibraryAdapter.HeaderPair> headers = makeHeaderPairs ((ArrayNode) root.get ("headers"));
-        JsonNode bodyNode = root.get ("body");
-        byte[] body;
-        if (bodyNode != null) {
-            body = CODEC.decode (root.get ("body").asText ());
+    // size is how big the body is known to be, at least, or -1 if nothing is known.  repeatable says whether the
+    // producer writes the same body every time, so that the HTTP client may send it again on a fresh connection.
+    private HttpPost preparation (String path, MockabilityCodec codec, long size, boolean repeatable,
+            ContentProducer producer) {
+        HttpPost request = new HttpPost(path);
+        request.addHeader (new BasicHeader ("Content-Type", codec.getContentType ()));
+        EntityTemplate entity = new ProducedEntity (producer, repeatable);
+        entity.setChunked (true);
+        request.setEntity (worthCompressing (size) ? new GzipCompressingEntity (entity) : entity);
+        return request;
+    }
+
+    private boolean worthCompressing (long size) {
+        int threshold = options.getGzipThreshold ();
+        return (threshold > 0) && (size > threshold);
+    }
+
+    // The async client needs an entity it can send without blocking, so a body that's worth compressing is
+    // compressed here, in full, rather than as it's sent.
+    private HttpEntity payloadEntity (byte[] payload, MockabilityCodec codec) throws IOException {
+        ContentType contentType = ContentType.create (codec.getContentType ());
+        if (!worthCompressing (payload.length)) {
+            return new NByteArrayEntity (payload, contentType);
         }
-        else {
-            body = new byte[] {};
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream (payload.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream (compressed, 8192)) {
+            gzip.write (payload);
         }
-        return adapter.convert (method, uri, headers, body);
+        NByteArrayEntity entity = new NByteArrayEntity (compressed.toByteArray (), contentType);
+        entity.setContentEncoding (GZIP);
+        return entity;
     }
 
-    private List<LibraryAdapter.HeaderPair> makeHeaderPairs (ArrayNode root) {
-        List<LibraryAdapter.HeaderPair> pairs = new ArrayList<LibraryAdapter.HeaderPair> ();
-        for (Iterator<JsonNode> iter = root.elements (); iter.hasNext ();) {
-            ObjectNode header = (ObjectNode)iter.next ();
-            pairs.add (new LibraryAdapter.HeaderPair(header.get ("name").asText (), header.get ("value").asText ()));
+    // The mapping stays valid after the channel is closed, and is unmapped when the buffer is collected.
+    private MappedByteBuffer map (Path file) {
+        try (FileChannel channel = FileChannel.open (file, StandardOpenOption.READ)) {
+            if (channel.size () > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException (file + " is too large to prepare: " + channel.size () + " bytes");
+            }
+            return channel.map (FileChannel.MapMode.READ_ONLY, 0, channel.size ());
+        }
+        catch (IOException e) {
+            throw new IllegalStateException (e);
         }
-        return pairs;
     }
+
+    private HttpPost preparedPreparation (String path, PreparedResponse response, MockabilityCodec codec,
+            OperationTimer timer) {
+        byte[] payload;
+        timer.beginSerialize ();
+        try {
+            payload = response.payload (codec);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException (e);
+        }
+        finally {
+            timer.endSerialize ();
+        }
+        timer.bytesSent += payload.length;
+        timer.elements = 1;
+        HttpPost request = new HttpPost(path);
+        try {
+            request.setEntity (payloadEntity (payload, codec));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException (e);
+        }
+        return request;
+    }
+
+    // The body is kept, so it's copied unless the adapter promises nobody else has it.
+    private PreparedResponse contentsOf (S response) {
+        try {
+            int status = adapter.getResponseStatus (response);
+            List<LibraryAdapter.HeaderPair> headers = adapter.getResponseHeaders (response);
+            byte[] body = adapter.getResponseBody (response);
+            boolean fresh = (adapter instanceof StreamingLibraryAdapter) &&
+                ((StreamingLibraryAdapter<Q, S>)adapter).returnsFreshResponseBodies ();
+            return fresh ? PreparedResponse.adopting (status, headers, body) : PreparedResponse.of (status, headers, body);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    private HttpPost bufferedPreparation (String path, S response, MockabilityCodec codec, OperationTimer timer)
+            throws IOException {
+        HttpPost request = new HttpPost(path);
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+        writeResponses (ostr, Collections.singletonList (response), codec, timer);
+        request.setEntity (payloadEntity (ostr.toByteArray (), codec));
+        return request;
+    }
+
+    // A server that doesn't understand the preferred codec says so with a 415; null tells the caller to use JSON.
+    private String textOrRefusal (OperationTimer timer, HttpResponse response, MockabilityCodec outgoing) {
+        if ((outgoing != JSON_CODEC) && (response.getStatusLine ().getStatusCode () == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE)) {
+            return null;
+        }
+        return textFrom (timer, response);
+    }
+
+    private void writeResponses (OutputStream ostr, Iterable<S> responses, MockabilityCodec codec, OperationTimer timer)
+            throws IOException {
+        new ResponseSerializer (responses, codec, timer, ostr).write (Long.MAX_VALUE);
+    }
+
+    // The body goes from the response straight into the codec, so it's never held as a separate array.
+    private static <S> MockabilityCodec.BodyWriter bodyWriter (StreamingLibraryAdapter<?, S> adapter, S response) {
+        return ostr -> {
+            try {
+                adapter.writeResponseBody (response, ostr);
+            }
+            catch (IOException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new IOException (e);
+            }
+        };
+    }
+
+    // Writes responses as a list, and can stop between two of them so that the caller can send the rest elsewhere.
+    private class ResponseSerializer {
+        private final Iterator<S> responses;
+        private final MockabilityCodec codec;
+        private final OperationTimer timer;
+        private OutputStream target;
+        private MockabilityCodec.ResponseWriter writer;
+        private long written;
+        private int count;
+
+        ResponseSerializer (Iterable<S> responses, MockabilityCodec codec, OperationTimer timer, OutputStream ostr) {
+            this.responses = responses.iterator ();
+            this.codec = codec;
+            this.timer = timer;
+            this.target = ostr;
+        }
+
+        void redirect (OutputStream ostr) {
+            target = ostr;
+        }
+
+        // Writes responses until the list is finished, returning true, or until more than limit bytes have been
+        // written, returning false.  The codec may hold some bytes back until the list is finished.
+        boolean write (long limit) throws IOException {
+            timer.beginSerialize ();
+            try {
+                if (writer == null) {
+                    writer = codec.newResponseWriter (timer.meter (counted ()));
+                }
+                while (written <= limit) {
+                    if (!responses.hasNext ()) {
+                        writer.close ();
+                        return true;
+                    }
+                    writeResponse (responses.next ());
+                    count++;
+                }
+                return false;
+            }
+            catch (IOException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new IOException (e);
+            }
+            finally {
+                timer.endSerialize ();
+                timer.elements = count;
+            }
+        }
+
+        private void writeResponse (S response) throws Exception {
+            long start = System.nanoTime ();
+            int status = adapter.getResponseStatus (response);
+            List<LibraryAdapter.HeaderPair> headers = adapter.getResponseHeaders (response);
+            if (adapter instanceof StreamingLibraryAdapter) {
+                timer.conversionNanos += System.nanoTime () - start;
+                writer.writeResponse (status, headers, bodyWriter ((StreamingLibraryAdapter<Q, S>)adapter, response));
+            }
+            else {
+                byte[] body = adapter.getResponseBody (response);
+                timer.conversionNanos += System.nanoTime () - start;
+                writer.writeResponse (status, headers, body);
+            }
+        }
+
+        private OutputStream counted () {
+            return new OutputStream () {
+                @Override
+                public void write (int b) throws IOException {
+                    target.write (b);
+                    written++;
+                }
+
+                @Override
+                public void write (byte[] b, int off, int len) throws IOException {
+                    target.write (b, off, len);
+                    written += len;
+                }
+
+                @Override
+                public void flush () throws IOException {
+                    target.flush ();
+                }
+            };
+        }
+    }
+
+    // EntityTemplate says it's repeatable whatever its producer does.  This one tells the truth, so that the HTTP
+    // client gives up on a failed request it can't resend, and refuses to be written twice rather than write a
+    // different body the second time.
+    private static class ProducedEntity extends EntityTemplate {
+        private final boolean repeatable;
+        private boolean written;
+
+        ProducedEntity (ContentProducer producer, boolean repeatable) {
+            super (producer);
+            this.repeatable = repeatable;
+        }
+
+        @Override
+        public boolean isRepeatable () {
+            return repeatable;
+        }
+
+        @Override
+        public void writeTo (OutputStream ostr) throws IOException {
+            if (written && !repeatable) {
+                throw new IOException ("Prepared responses were already sent once and can't be sent again");
+            }
+            written = true;
+            super.writeTo (ostr);
+        }
+    }
+
+    private interface Preparation {
+        HttpPost make (MockabilityCodec codec, OperationTimer timer) throws Exception;
+    }
+
+    private interface ResponseReader<T> {
+        T read (HttpResponse response) throws Exception;
+    }
+
+    private class PolledReport {
+        private final int count;
+        private final List<Q> requests;
+
+        PolledReport (int count, List<Q> requests) {
+            this.count = count;
+            this.requests = requests;
+        }
+    }
+
+    /**
+     * Pulls reported requests out of a report one at a time, converting each through the adapter as it is reached.
+     * The HTTP response is released as soon as the end of the report is seen or the iterator is closed.
+     */
+    private class ReportIterator implements Iterator<Q>, Closeable {
+        private final HttpResponse response;
+        private final OperationTimer timer;
+        private final MockabilityCodec.RequestReader reader;
+        private boolean ready = false;
+        private boolean finished = false;
+        private boolean released = false;
+        private IllegalStateException failure = null;
+
+        ReportIterator (HttpResponse response, OperationTimer timer) throws IOException {
+            this.response = response;
+            this.timer = timer;
+            timer.beginDeserialize ();
+            try {
+                reader = incomingCodec (response).newRequestReader (timer.meter (entityOf (response).getContent ()));
+            }
+            finally {
+                timer.endDeserialize ();
+            }
+        }
+
+        @Override
+        public boolean hasNext () {
+            if (ready) {return true;}
+            if (finished) {return false;}
+            timer.beginDeserialize ();
+            try {
+                if (reader.nextRequest ()) {
+                    ready = true;
+                    return true;
+                }
+                finished = true;
+                return false;
+            }
+            catch (IllegalStateException e) {
+                throw failed (e);
+            }
+            catch (Exception e) {
+                throw failed (new IllegalStateException (e));
+            }
+            finally {
+                timer.endDeserialize ();
+                if (finished) {close ();}
+            }
+        }
+
+        @Override
+        public Q next () {
+            if (!hasNext ()) {
+                throw new NoSuchElementException ();
+            }
+            ready = false;
+            timer.beginDeserialize ();
+            try {
+                timer.elements++;
+                return convert (timer, reader);
+            }
+            catch (IllegalStateException e) {
+                throw failed (e);
+            }
+            catch (Exception e) {
+                throw failed (new IllegalStateException (e));
+            }
+            finally {
+                timer.endDeserialize ();
+            }
+        }
+
+        private IllegalStateException failed (IllegalStateException e) {
+            failure = e;
+            return e;
+        }
+
+        // Drains what's left of a finished report so the connection can be reused; abandons the connection
+        // rather than reading the rest of an unfinished one.
+        @Override
+        public void close () {
+            if (released) {return;}
+            released = true;
+            if (!finished && (response instanceof Closeable)) {
+                try {((Closeable)response).close ();} catch (IOException e) {/* nothing more to do */}
+            }
+            else {
+                release (response);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,24 @@
+package mockability.client;
+
+/**
+ * A class that implements this interface is told about every clear, prepare, and report a MockabilityClient performs,
+ * once it has finished, with a breakdown of where the time went.  Set one with MockabilityOptions.Builder.metrics();
+ * HistogramMetrics, in mockability.client.metrics, is a ready-made implementation.
+ *
+ * Implementations are called on whatever thread finishes the operation--the caller's thread for the synchronous
+ * operations, an I/O thread for the asynchronous ones--so they must be thread-safe, and they should be quick.
+ */
+public interface MockabilityMetrics {
+
+    /**
+     * Metrics that go nowhere.  The default.
+     */
+    MockabilityMetrics NONE = operation -> {};
+
+    /**
+     * Called once for each operation, successful or not, when it finishes.  For reportStream(), that's when the
+     * Stream is closed.
+     * @param operation Description of the finished operation
+     */
+    void operationCompleted (MockabilityOperation operation);
+}
@@ -0,0 +1,156 @@
+package mockability.client;
+
+/**
+ * What a MockabilityClient reports to its MockabilityMetrics about one finished operation.  Time is split three ways:
+ * serializing is turning responses into the prepare() payload, including the LibraryAdapter calls that extract them;
+ * deserializing is parsing a report and converting its requests through the LibraryAdapter; and the network is
+ * sending the request and waiting for and reading the response.  The three needn't add up to the total: whatever a
+ * caller does between elements of a reportStream(), for example, is in none of them.  Byte counts are of the request
+ * and response bodies only.
+ */
+public class MockabilityOperation {
+
+    /**
+     * The kinds of operation a MockabilityClient performs.
+     */
+    public enum Kind {CLEAR, PREPARE, REPORT}
+
+    private final Kind kind;
+    private final String method;
+    private final String uri;
+    private final boolean async;
+    private final int status;
+    private final long totalNanos;
+    private final long serializeNanos;
+    private final long networkNanos;
+    private final long deserializeNanos;
+    private final long conversionNanos;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final int elements;
+    private final Throwable failure;
+
+    MockabilityOperation (OperationTimer timer, long totalNanos, Throwable failure) {
+        kind = timer.kind;
+        method = timer.method;
+        uri = timer.uri;
+        async = timer.async;
+        status = timer.status;
+        this.totalNanos = totalNanos;
+        serializeNanos = timer.serializeNanos;
+        deserializeNanos = timer.deserializeNanos;
+        conversionNanos = timer.conversionNanos;
+        networkNanos = timer.networkNanos;
+        bytesSent = timer.bytesSent;
+        bytesReceived = timer.bytesReceived;
+        elements = timer.elements;
+        this.failure = failure;
+    }
+
+    /**
+     * @return Kind of operation: clear, prepare, or report.
+     */
+    public Kind getKind () {
+        return kind;
+    }
+
+    /**
+     * @return HTTP method the operation concerned, or null for a clear() of everything.
+     */
+    public String getMethod () {
+        return method;
+    }
+
+    /**
+     * @return URI the operation concerned, or null for a clear() of everything.
+     */
+    public String getUri () {
+        return uri;
+    }
+
+    /**
+     * @return true if the operation was one of the asynchronous ones.
+     */
+    public boolean isAsync () {
+        return async;
+    }
+
+    /**
+     * @return HTTP status of the Mockability server's response, or -1 if there was no response.
+     */
+    public int getStatus () {
+        return status;
+    }
+
+    /**
+     * @return Wall-clock time from the start of the call to the end of the operation.
+     */
+    public long getTotalNanos () {
+        return totalNanos;
+    }
+
+    /**
+     * @return Time spent serializing responses for prepare().
+     */
+    public long getSerializeNanos () {
+        return serializeNanos;
+    }
+
+    /**
+     * @return Time spent sending the request and waiting for and reading the response.
+     */
+    public long getNetworkNanos () {
+        return networkNanos;
+    }
+
+    /**
+     * @return Time spent parsing a report and converting its requests.
+     */
+    public long getDeserializeNanos () {
+        return deserializeNanos;
+    }
+
+    /**
+     * @return Time spent in the LibraryAdapter, extracting responses or converting requests.  This is part of the
+     *          serializing or deserializing time, not in addition to it.
+     */
+    public long getConversionNanos () {
+        return conversionNanos;
+    }
+
+    /**
+     * @return Number of request-body bytes sent to the Mockability server.
+     */
+    public long getBytesSent () {
+        return bytesSent;
+    }
+
+    /**
+     * @return Number of response-body bytes received from the Mockability server.
+     */
+    public long getBytesReceived () {
+        return bytesReceived;
+    }
+
+    /**
+     * @return Number of responses prepared, or number of requests reported.
+     */
+    public int getElements () {
+        return elements;
+    }
+
+    /**
+     * @return The exception the operation failed with, or null if it succeeded.
+     */
+    public Throwable getFailure () {
+        return failure;
+    }
+
+    @Override
+    public String toString () {
+        return kind + " " + (method == null ? "everything" : method + " '" + uri + "'") + (async ? " (async)" : "") +
+            ": status " + status + ", " + totalNanos + "ns total (" + serializeNanos + " serialize, " + networkNanos +
+            " network, " + deserializeNanos + " deserialize, " + conversionNanos + " conversion), " + bytesSent + " bytes sent, " + bytesReceived +
+            " received, " + elements + " elements" + (failure == null ? "" : ", failed: " + failure);
+    }
+}
@@ -0,0 +1,390 @@
+package mockability.client;
+
+import mockability.client.codec.JsonCodec;
+import mockability.client.codec.MockabilityCodec;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings shared by any number of MockabilityClients.  Most importantly, a MockabilityOptions object owns a single
+ * pool of HTTP connections: every client constructed with the same MockabilityOptions borrows its connections from
+ * that pool instead of building a private HttpClient of its own.  Clients constructed without a MockabilityOptions
+ * object share the one returned by defaults().  The non-blocking connection pool used by the asynchronous
+ * operations is created separately, the first time one of them is called.
+ */
+public class MockabilityOptions implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final long keepAliveMillis;
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final int ioThreads;
+    private final MockabilityCodec codec;
+    private final MockabilityMetrics metrics;
+    private final PreparedResponseCache preparedResponseCache;
+    private final int gzipThreshold;
+    private volatile CloseableHttpAsyncClient asyncClient;
+    private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+
+    private MockabilityOptions (Builder builder) {
+        maxTotal = builder.maxTotal;
+        maxPerRoute = builder.maxPerRoute;
+        ioThreads = builder.ioThreads;
+        codec = builder.codec;
+        metrics = builder.metrics;
+        preparedResponseCache = (builder.preparedResponseCacheSize > 0)
+            ? new PreparedResponseCache (builder.preparedResponseCacheSize) : null;
+        gzipThreshold = builder.gzipThreshold;
+        connectionManager = new PoolingHttpClientConnectionManager ();
+        connectionManager.setMaxTotal (builder.maxTotal);
+        connectionManager.setDefaultMaxPerRoute (builder.maxPerRoute);
+        keepAliveMillis = builder.keepAliveMillis;
+        // Clients compress and decompress for themselves, the same way on both pools.
+        HttpClientBuilder clientBuilder = HttpClientBuilder.create ()
+            .disableContentCompression ()
+            .setConnectionManager (connectionManager)
+            .setKeepAliveStrategy (new KeepAliveStrategy (keepAliveMillis));
+        if (builder.idleEvictionMillis > 0) {
+            clientBuilder.evictExpiredConnections ();
+            clientBuilder.evictIdleConnections (builder.idleEvictionMillis, TimeUnit.MILLISECONDS);
+        }
+        httpClient = clientBuilder.build ();
+    }
+
+    /**
+     * @return The MockabilityOptions used by every MockabilityClient that isn't given one explicitly.
+     */
+    public static MockabilityOptions defaults () {
+        return DefaultsHolder.DEFAULTS;
+    }
+
+    /**
+     * @return A Builder for a MockabilityOptions object with its own connection pool.
+     */
+    public static Builder builder () {
+        return new Builder ();
+    }
+
+    /**
+     * Shuts down the connection pool.  Clients using these options will be unusable afterward.
+     */
+    @Override
+    public void close () throws IOException {
+        httpClient.close ();
+        synchronized (this) {
+            if (asyncClient != null) {
+                asyncClient.close ();
+            }
+        }
+    }
+
+    /**
+     * @return The wire format clients using these options prefer to speak to the Mockability server.
+     */
+    public MockabilityCodec getCodec () {
+        return codec;
+    }
+
+    /**
+     * @return The listener that clients using these options tell about each operation they perform.
+     */
+    public MockabilityMetrics getMetrics () {
+        return metrics;
+    }
+
+    /**
+     * @return Leased, available, and pending counts for the blocking connection pool, across all routes.
+     */
+    public PoolStats getPoolStats () {
+        return connectionManager.getTotalStats ();
+    }
+
+    /**
+     * @return Leased, available, and pending counts for the non-blocking connection pool used by the asynchronous
+     *          operations, across all routes; all zero if no asynchronous operation has been performed yet.
+     */
+    public PoolStats getAsyncPoolStats () {
+        PoolingNHttpClientConnectionManager manager = asyncConnectionManager;
+        return (manager == null) ? new PoolStats (0, 0, 0, maxTotal) : manager.getTotalStats ();
+    }
+
+    /**
+     * @return The cache of serialized responses shared by clients using these options, or null if there isn't one.
+     */
+    PreparedResponseCache getPreparedResponseCache () {
+        return preparedResponseCache;
+    }
+
+    /**
+     * @return Size in bytes above which prepare bodies are gzip-compressed, or zero if nothing is compressed.
+     */
+    int getGzipThreshold () {
+        return gzipThreshold;
+    }
+
+    HttpClient getHttpClient () {
+        return httpClient;
+    }
+
+    HttpAsyncClient getHttpAsyncClient () {
+        CloseableHttpAsyncClient result = asyncClient;
+        if (result == null) {
+            synchronized (this) {
+                if (asyncClient == null) {
+                    asyncClient = makeAsyncClient ();
+                }
+                result = asyncClient;
+            }
+        }
+        return result;
+    }
+
+    private CloseableHttpAsyncClient makeAsyncClient () {
+        try {
+            ThreadFactory threadFactory = new DaemonThreadFactory ("Mockability I/O ");
+            IOReactorConfig config = IOReactorConfig.custom ().setIoThreadCount (ioThreads).build ();
+            PoolingNHttpClientConnectionManager manager =
+                new PoolingNHttpClientConnectionManager (new DefaultConnectingIOReactor (config, threadFactory));
+            manager.setMaxTotal (maxTotal);
+            manager.setDefaultMaxPerRoute (maxPerRoute);
+            asyncConnectionManager = manager;
+            CloseableHttpAsyncClient result = HttpAsyncClientBuilder.create ()
+                .setConnectionManager (manager)
+                .setKeepAliveStrategy (new KeepAliveStrategy (keepAliveMillis))
+                .setThreadFactory (threadFactory)
+                .build ();
+            result.start ();
+            return result;
+        }
+        catch (Exception e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    PoolingHttpClientConnectionManager getConnectionManager () {
+        return connectionManager;
+    }
+
+    /**
+     * Opens connections to the specified host until there are at least the requested number of connections idle in
+     * the pool, so that the first few requests don't have to pay for TCP setup.
+     * @param host Host to connect to
+     * @param connections Number of connections wanted; will be limited by the maximum per route.
+     */
+    void prewarm (HttpHost host, int connections) {
+        HttpRoute route = new HttpRoute (withDefaultPort (host));
+        HttpContext context = new BasicHttpContext ();
+        List<HttpClientConnection> leased = new ArrayList<> ();
+        try {
+            int count = Math.min (connections, connectionManager.getMaxPerRoute (route));
+            for (int i = 0; i < count; i++) {
+                ConnectionRequest request = connectionManager.requestConnection (route, null);
+                HttpClientConnection connection = request.get (CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                leased.add (connection);
+                if (!connection.isOpen ()) {
+                    connectionManager.connect (connection, route, CONNECT_TIMEOUT_MILLIS, context);
+                    connectionManager.routeComplete (connection, route, context);
+                }
+            }
+        }
+        catch (Exception e) {
+            throw new IllegalStateException (e);
+        }
+        finally {
+            for (HttpClientConnection connection : leased) {
+                connectionManager.releaseConnection (connection, null, keepAliveMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static HttpHost withDefaultPort (HttpHost host) {
+        if (host.getPort () > 0) {
+            return host;
+        }
+        int port = "https".equalsIgnoreCase (host.getSchemeName ()) ? 443 : 80;
+        return new HttpHost (host.getHostName (), port, host.getSchemeName ());
+    }
+
+    private static class DefaultsHolder {
+        private static final MockabilityOptions DEFAULTS = builder ().build ();
+    }
+
+    // The default options are never closed, so their I/O threads mustn't keep the JVM alive.
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger ();
+
+        DaemonThreadFactory (String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread (Runnable runnable) {
+            Thread thread = new Thread (runnable, prefix + count.incrementAndGet ());
+            thread.setDaemon (true);
+            return thread;
+        }
+    }
+
+    private static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+        private final long defaultMillis;
+
+        KeepAliveStrategy (long defaultMillis) {
+            this.defaultMillis = defaultMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration (HttpResponse response, HttpContext context) {
+            long serverMillis = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration (response, context);
+            return (serverMillis > 0) ? serverMillis : defaultMillis;
+        }
+    }
+
+    /**
+     * Accumulates settings for a new MockabilityOptions object.
+     */
+    public static class Builder {
+        private int maxTotal = 200;
+        private int maxPerRoute = 20;
+        private long keepAliveMillis = 30000;
+        private long idleEvictionMillis = 60000;
+        private int ioThreads = Runtime.getRuntime ().availableProcessors ();
+        private MockabilityCodec codec = new JsonCodec ();
+        private MockabilityMetrics metrics = MockabilityMetrics.NONE;
+        private int preparedResponseCacheSize = 0;
+        private int gzipThreshold = 0;
+
+        private Builder () {}
+
+        /**
+         * @param maxTotal Maximum number of connections in the pool, across all Mockability servers.  Default 200.
+         * @return this
+         */
+        public Builder maxTotal (int maxTotal) {
+            this.maxTotal = maxTotal;
+            return this;
+        }
+
+        /**
+         * @param maxPerRoute Maximum number of connections in the pool to any single Mockability server.  Default 20.
+         * @return this
+         */
+        public Builder maxPerRoute (int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+            return this;
+        }
+
+        /**
+         * @param duration How long to keep an idle connection for reuse when the server doesn't say.  Default
+         *                 30 seconds.
+         * @param unit Unit of duration
+         * @return this
+         */
+        public Builder keepAlive (long duration, TimeUnit unit) {
+            this.keepAliveMillis = unit.toMillis (duration);
+            return this;
+        }
+
+        /**
+         * @param duration Idle time after which a background thread will close a pooled connection, or zero to turn
+         *                 off background eviction.  Default 60 seconds.
+         * @param unit Unit of duration
+         * @return this
+         */
+        public Builder evictIdleAfter (long duration, TimeUnit unit) {
+            this.idleEvictionMillis = unit.toMillis (duration);
+            return this;
+        }
+
+        /**
+         * @param ioThreads Number of threads that will drive the non-blocking I/O behind the asynchronous
+         *                  operations.  Default is the number of available processors.
+         * @return this
+         */
+        public Builder ioThreads (int ioThreads) {
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * @param codec Wire format to prefer when talking to the Mockability server.  Clients fall back to JSON
+         *              for any server that doesn't accept it.  Default JSON.
+         * @return this
+         */
+        public Builder codec (MockabilityCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * @param metrics Listener to tell about every operation performed by clients using these options.  Default
+         *                MockabilityMetrics.NONE.
+         * @return this
+         */
+        public Builder metrics (MockabilityMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param maxEntries Number of distinct responses to remember, serialized, so that preparing an equal
+         *                   response again through prepare(method, uri, response) just resends the bytes.  The
+         *                   least recently used are forgotten first.  Zero turns the cache off.  Default zero.
+         * @return this
+         */
+        public Builder preparedResponseCache (int maxEntries) {
+            this.preparedResponseCacheSize = maxEntries;
+            return this;
+        }
+
+        /**
+         * @param bytes Size above which a prepare body is sent gzip-compressed, with Content-Encoding: gzip; reports
+         *              are also asked for gzip-compressed.  A prepare() or prepareAll() body, whose size isn't known
+         *              until it's written, is held in memory until it's finished or has passed this size; only then
+         *              is it compressed and the rest streamed.  Metrics count bytes before compression.
+         *              Zero turns compression off; leave it off for servers that don't accept compressed
+         *              requests.  Default zero.
+         * @return this
+         */
+        public Builder gzipThreshold (int bytes) {
+            this.gzipThreshold = bytes;
+            return this;
+        }
+
+        /**
+         * @return A new MockabilityOptions object with these settings and a connection pool of its own.
+         */
+        public MockabilityOptions build () {
+            return new MockabilityOptions (this);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package mockability.client;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import mockability.client.adapters.NettyAdapter;
+
+/**
+ * MockabilityClient for code built on Netty.  Requests returned by the report methods hold pooled, reference-counted
+ * bodies, and the caller must release() each of them when finished; see NettyAdapter.
+ */
+public class NettyMockabilityClient extends MockabilityClient<FullHttpRequest, FullHttpResponse> {
+    public NettyMockabilityClient (String baseUrl) {
+        super (new NettyAdapter (), baseUrl);
+    }
+
+    public NettyMockabilityClient (String baseUrl, MockabilityOptions options) {
+        super (new NettyAdapter (), baseUrl, options);
+    }
+
+    public NettyMockabilityClient (String baseUrl, MockabilityOptions options, ByteBufAllocator allocator) {
+        super (new NettyAdapter (allocator), baseUrl, options);
+    }
+}
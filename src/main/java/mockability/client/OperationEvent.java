@@ -0,0 +1,17 @@
+package mockability.client;
+
+/**
+ * Java Flight Recorder event for one Mockability operation.  Flight Recorder's event API needs Java 11, so this is
+ * the version Java 8 loads, and it does nothing; the real one is in src/main/java11 and is packaged under
+ * META-INF/versions/11 in the jar, where Java 11 and later find it instead.
+ */
+class OperationEvent {
+
+    private static final OperationEvent DISABLED = new OperationEvent ();
+
+    static OperationEvent start () {
+        return DISABLED;
+    }
+
+    void finish (MockabilityOperation operation) {}
+}
@@ -0,0 +1,131 @@
+package mockability.client;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Accumulates the measurements for one MockabilityOperation as it proceeds.  Only one thread works on an operation
+ * at a time, and the hand-offs between threads go through the HTTP client or a CompletableFuture, so nothing here
+ * needs to be synchronized.
+ */
+class OperationTimer {
+
+    final MockabilityOperation.Kind kind;
+    final String method;
+    final String uri;
+    final boolean async;
+    private final long startNanos = System.nanoTime ();
+    int status = -1;
+    long serializeNanos;
+    long networkNanos;
+    long deserializeNanos;
+    long conversionNanos;
+    long bytesSent;
+    long bytesReceived;
+    int elements;
+
+    // Time spent blocked writing or reading inside serialization or deserialization belongs to the network.
+    private long writeNanos;
+    private long readNanos;
+    private long networkMark;
+    private long serializeAtNetworkMark;
+    private long codecMark;
+    private long ioAtCodecMark;
+    private final OperationEvent event = OperationEvent.start ();
+
+    OperationTimer (MockabilityOperation.Kind kind, String method, String uri, boolean async) {
+        this.kind = kind;
+        this.method = method;
+        this.uri = uri;
+        this.async = async;
+    }
+
+    void beginNetwork () {
+        networkMark = System.nanoTime ();
+        serializeAtNetworkMark = serializeNanos;
+    }
+
+    void endNetwork () {
+        networkNanos += System.nanoTime () - networkMark - (serializeNanos - serializeAtNetworkMark);
+    }
+
+    void beginSerialize () {
+        codecMark = System.nanoTime ();
+        ioAtCodecMark = writeNanos;
+    }
+
+    void endSerialize () {
+        serializeNanos += System.nanoTime () - codecMark - (writeNanos - ioAtCodecMark);
+    }
+
+    void beginDeserialize () {
+        codecMark = System.nanoTime ();
+        ioAtCodecMark = readNanos;
+    }
+
+    void endDeserialize () {
+        long io = readNanos - ioAtCodecMark;
+        deserializeNanos += System.nanoTime () - codecMark - io;
+        networkNanos += io;
+    }
+
+    void finish (MockabilityMetrics metrics, Throwable failure) {
+        MockabilityOperation operation = new MockabilityOperation (this, System.nanoTime () - startNanos, failure);
+        event.finish (operation);
+        metrics.operationCompleted (operation);
+    }
+
+    OutputStream meter (OutputStream ostr) {
+        return new FilterOutputStream (ostr) {
+            @Override
+            public void write (int b) throws IOException {
+                long start = System.nanoTime ();
+                out.write (b);
+                writeNanos += System.nanoTime () - start;
+                bytesSent++;
+            }
+
+            @Override
+            public void write (byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime ();
+                out.write (b, off, len);
+                writeNanos += System.nanoTime () - start;
+                bytesSent += len;
+            }
+        };
+    }
+
+    InputStream meter (InputStream istr) {
+        return new FilterInputStream (istr) {
+            @Override
+            public int read () throws IOException {
+                long start = System.nanoTime ();
+                int result = in.read ();
+                readNanos += System.nanoTime () - start;
+                if (result >= 0) {bytesReceived++;}
+                return result;
+            }
+
+            @Override
+            public int read (byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime ();
+                int result = in.read (b, off, len);
+                readNanos += System.nanoTime () - start;
+                if (result > 0) {bytesReceived += result;}
+                return result;
+            }
+
+            @Override
+            public long skip (long n) throws IOException {
+                long start = System.nanoTime ();
+                long result = in.skip (n);
+                readNanos += System.nanoTime () - start;
+                bytesReceived += result;
+                return result;
+            }
+        };
+    }
+}
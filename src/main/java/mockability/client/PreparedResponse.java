@@ -0,0 +1,130 @@
+package mockability.client;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.codec.MockabilityCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A canned response that is serialized once and then sent as it is, as often as you like.  Preparing the same
+ * response thousands of times with prepare(method, uri, response) goes back through the LibraryAdapter and the codec
+ * every time; preparing a PreparedResponse just sends bytes it already has.  PreparedResponses are immutable, so one
+ * can be shared by any number of threads and clients.  Two with the same status, headers, and body are equal.
+ */
+public final class PreparedResponse {
+
+    private final int status;
+    private final List<HeaderPair> headers;
+    private final byte[] body;
+    private final int hash;
+    private volatile Payload payload;
+
+    private PreparedResponse (int status, List<HeaderPair> headers, byte[] body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        int result = status;
+        for (HeaderPair header : headers) {
+            result = 31 * result + Objects.hashCode (header.name ());
+            result = 31 * result + Objects.hashCode (header.value ());
+        }
+        hash = 31 * result + Arrays.hashCode (body);
+    }
+
+    /**
+     * @param status Status code, such as 200 or 404.
+     * @param headers Headers, in order.  The list is copied.
+     * @param body Body, not Base64-encoded.  The array is copied.
+     * @return A PreparedResponse with the supplied contents.
+     */
+    public static PreparedResponse of (int status, List<HeaderPair> headers, byte[] body) {
+        return new PreparedResponse (status, Collections.unmodifiableList (new ArrayList<> (headers)), body.clone ());
+    }
+
+    // For arrays fresh from a LibraryAdapter that nobody else will see.
+    static PreparedResponse adopting (int status, List<HeaderPair> headers, byte[] body) {
+        return new PreparedResponse (status, Collections.unmodifiableList (new ArrayList<> (headers)), body);
+    }
+
+    /**
+     * @return Status code of the response
+     */
+    public int getStatus () {
+        return status;
+    }
+
+    /**
+     * @return Headers of the response, in order; unmodifiable.
+     */
+    public List<HeaderPair> getHeaders () {
+        return headers;
+    }
+
+    /**
+     * @return A copy of the body of the response
+     */
+    public byte[] getBody () {
+        return body.clone ();
+    }
+
+    /**
+     * Returns the response serialized by the codec as a complete preparation, ready to send.  The bytes are kept, so
+     * only the first call for each format does any work.  The array returned must not be modified.
+     */
+    byte[] payload (MockabilityCodec codec) throws IOException {
+        Payload result = payload;
+        if ((result == null) || !result.contentType.equals (codec.getContentType ())) {
+            ByteArrayOutputStream ostr = new ByteArrayOutputStream (body.length * 4 / 3 + 128);
+            try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (ostr)) {
+                writer.writeResponse (status, headers, body);
+            }
+            result = new Payload (codec.getContentType (), ostr.toByteArray ());
+            payload = result;
+        }
+        return result.bytes;
+    }
+
+    @Override
+    public boolean equals (Object o) {
+        if (this == o) {return true;}
+        if (!(o instanceof PreparedResponse)) {return false;}
+        PreparedResponse that = (PreparedResponse)o;
+        if ((hash != that.hash) || (status != that.status) || (headers.size () != that.headers.size ())) {
+            return false;
+        }
+        for (int i = 0; i < headers.size (); i++) {
+            HeaderPair mine = headers.get (i);
+            HeaderPair theirs = that.headers.get (i);
+            if (!Objects.equals (mine.name (), theirs.name ()) || !Objects.equals (mine.value (), theirs.value ())) {
+                return false;
+            }
+        }
+        return Arrays.equals (body, that.body);
+    }
+
+    @Override
+    public int hashCode () {
+        return hash;
+    }
+
+    @Override
+    public String toString () {
+        return "PreparedResponse(" + status + ", " + headers.size () + " header(s), " + body.length + " byte(s))";
+    }
+
+    private static class Payload {
+        final String contentType;
+        final byte[] bytes;
+
+        Payload (String contentType, byte[] bytes) {
+            this.contentType = contentType;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package mockability.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used set of PreparedResponses, keyed by their contents, so that a client preparing the same
+ * response over and over reuses the serialization it made the first time.  Shared by every client using the same
+ * MockabilityOptions.
+ */
+class PreparedResponseCache {
+
+    private final Map<PreparedResponse, PreparedResponse> entries;
+
+    PreparedResponseCache (int maxEntries) {
+        entries = new LinkedHashMap<PreparedResponse, PreparedResponse> (16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<PreparedResponse, PreparedResponse> eldest) {
+                return size () > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The cached PreparedResponse equal to the candidate, or the candidate itself after caching it.
+     */
+    synchronized PreparedResponse intern (PreparedResponse candidate) {
+        PreparedResponse existing = entries.get (candidate);
+        if (existing != null) {
+            return existing;
+        }
+        entries.put (candidate, candidate);
+        return candidate;
+    }
+
+    synchronized int size () {
+        return entries.size ();
+    }
+}
@@ -0,0 +1,42 @@
+package mockability.client;
+
+/**
+ * Marks a place in the list of requests the Mockability server has recorded for one method and URI, so that
+ * reportSince() can return only the requests that arrived after it.  Cursors are immutable; start with
+ * ReportCursor.START and use the one each ReportPage hands back for the next call.
+ */
+public class ReportCursor {
+
+    /**
+     * The cursor before the first request: reportSince() with this cursor reports everything.
+     */
+    public static final ReportCursor START = new ReportCursor (0);
+
+    private final int offset;
+
+    ReportCursor (int offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * @return Number of requests before this cursor: that is, the number already seen.
+     */
+    public int getOffset () {
+        return offset;
+    }
+
+    @Override
+    public boolean equals (Object o) {
+        return (o instanceof ReportCursor) && (((ReportCursor)o).offset == offset);
+    }
+
+    @Override
+    public int hashCode () {
+        return offset;
+    }
+
+    @Override
+    public String toString () {
+        return "ReportCursor(" + offset + ")";
+    }
+}
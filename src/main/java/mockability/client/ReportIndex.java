@@ -0,0 +1,315 @@
+package mockability.client;
+
+import mockability.client.adapters.Headers;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hash indexes over the requests in a report, for test suites that check thousands of reported requests against
+ * thousands of expectations.  Instead of scanning the whole report for each expectation, look requests up by method,
+ * URI, path, query parameter, the value of any header chosen when the index was built, or body.  Each criterion is a
+ * hash lookup, and a query with several criteria intersects their results, starting from the shortest, so a lookup
+ * costs about as much as the number of requests it could possibly match rather than the size of the report.
+ *
+ * <p>The index is built in a single pass over the report, except for bodies: they can be large, and decoding all of
+ * them costs a lot more than reading the rest of each request, so they're indexed in a second pass the first time a
+ * query asks for a body.  The index can be shared between threads; the Query objects that read it can't.</p>
+ *
+ * <pre>
+ * ReportIndex&lt;HttpRequestBase&gt; index = client.reportIndex ("POST", "/orders", "X-Tenant");
+ * for (Order expected : expectedOrders) {
+ *     assertEquals (1, index.query ().queryParam ("id", expected.getId ()).header ("X-Tenant", "acme").count ());
+ * }
+ * </pre>
+ * @param <Q> Class that represents an HTTP request.
+ */
+public class ReportIndex<Q> {
+
+    private final List<ReportedRequest<Q>> requests;
+    private final Map<String, Postings> methods = new HashMap<> ();
+    private final Map<String, Postings> uris = new HashMap<> ();
+    private final Map<String, Postings> paths = new HashMap<> ();
+    private final Map<String, Postings> queryParams = new HashMap<> ();
+    private final Map<String, Map<String, Postings>> headers = new HashMap<> ();
+    private volatile Map<Long, Postings> bodies;
+
+    ReportIndex (List<ReportedRequest<Q>> requests, String... indexedHeaders) {
+        this.requests = Collections.unmodifiableList (new ArrayList<> (requests));
+        for (String name : indexedHeaders) {
+            headers.put (name.toLowerCase (Locale.ROOT), new HashMap<> ());
+        }
+        for (int id = 0; id < this.requests.size (); id++) {
+            add (id, this.requests.get (id));
+        }
+    }
+
+    /**
+     * @param view A report, as returned by reportView()
+     * @param indexedHeaders Names of the headers whose values should be indexed, in any case.  Only these headers
+     *                       can be used in queries.
+     * @return An index over the requests in the report.
+     */
+    public static <Q> ReportIndex<Q> of (ReportView<Q> view, String... indexedHeaders) {
+        return new ReportIndex<> (view, indexedHeaders);
+    }
+
+    /**
+     * @return Number of requests in the report.
+     */
+    public int size () {
+        return requests.size ();
+    }
+
+    /**
+     * @return Every request in the report, in the order the server received them.
+     */
+    public List<ReportedRequest<Q>> getRequests () {
+        return requests;
+    }
+
+    /**
+     * @return A new, empty Query, which matches every request until criteria are added to it.
+     */
+    public Query query () {
+        return new Query ();
+    }
+
+    private void add (int id, ReportedRequest<Q> request) {
+        post (methods, request.getMethod (), id);
+        String uri = request.getUri ();
+        post (uris, uri, id);
+        int question = uri.indexOf ('?');
+        post (paths, (question < 0) ? uri : uri.substring (0, question), id);
+        if (question >= 0) {
+            for (String param : uri.substring (question + 1).split ("&")) {
+                if (param.isEmpty ()) {continue;}
+                int equals = param.indexOf ('=');
+                String name = (equals < 0) ? param : param.substring (0, equals);
+                String value = (equals < 0) ? "" : param.substring (equals + 1);
+                post (queryParams, paramKey (decode (name), decode (value)), id);
+            }
+        }
+        if (!headers.isEmpty ()) {
+            Headers requestHeaders = Headers.of (request.getHeaders ());
+            for (int i = 0; i < requestHeaders.size (); i++) {
+                String name = requestHeaders.name (i);
+                Map<String, Postings> values = (name == null) ? null : headers.get (name.toLowerCase (Locale.ROOT));
+                if (values != null) {
+                    post (values, requestHeaders.value (i), id);
+                }
+            }
+        }
+    }
+
+    private Map<Long, Postings> bodies () {
+        Map<Long, Postings> result = bodies;
+        if (result == null) {
+            synchronized (this) {
+                result = bodies;
+                if (result == null) {
+                    result = new HashMap<> ();
+                    for (int id = 0; id < requests.size (); id++) {
+                        post (result, Hashing.hash (requests.get (id).getBody ()), id);
+                    }
+                    bodies = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static <K> void post (Map<K, Postings> index, K key, int id) {
+        Postings postings = index.get (key);
+        if (postings == null) {
+            postings = new Postings ();
+            index.put (key, postings);
+        }
+        postings.add (id);
+    }
+
+    private static String paramKey (String name, String value) {
+        return name + '\u0000' + value;
+    }
+
+    private static String decode (String text) {
+        try {
+            return URLDecoder.decode (text, "UTF-8");
+        }
+        catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            return text;
+        }
+    }
+
+    /**
+     * Criteria for finding requests in a ReportIndex.  Every criterion added must match; adding the same kind of
+     * criterion twice requires both to match.  A Query can be run as often as you like, and added to in between.
+     */
+    public class Query {
+        private final List<Postings> criteria = new ArrayList<> ();
+        private final List<byte[]> bodyCriteria = new ArrayList<> ();
+
+        private Query () {}
+
+        /**
+         * @param method HTTP method, exactly: for example, "POST".
+         * @return this
+         */
+        public Query method (String method) {
+            return require (methods.get (method));
+        }
+
+        /**
+         * @param uri Complete URI, including any query string, exactly as it was reported.
+         * @return this
+         */
+        public Query uri (String uri) {
+            return require (uris.get (uri));
+        }
+
+        /**
+         * @param path URI without its query string: for example, "/orders/12".
+         * @return this
+         */
+        public Query path (String path) {
+            return require (paths.get (path));
+        }
+
+        /**
+         * @param name Name of a query parameter, without percent-encoding
+         * @param value Value the parameter must have, without percent-encoding; "" for a parameter with no value.
+         *              A request that repeats a parameter matches any of its values.
+         * @return this
+         */
+        public Query queryParam (String name, String value) {
+            return require (queryParams.get (paramKey (name, value)));
+        }
+
+        /**
+         * @param name Name of a header, in any case; must be one of those the index was built with.
+         * @param value Value the header must have, exactly.  A request that repeats a header matches any of its
+         *              values.
+         * @return this
+         */
+        public Query header (String name, String value) {
+            Map<String, Postings> values = headers.get (name.toLowerCase (Locale.ROOT));
+            if (values == null) {
+                throw new IllegalArgumentException ("Header " + name + " wasn't indexed; only " + headers.keySet () +
+                    " were");
+            }
+            return require (values.get (value));
+        }
+
+        /**
+         * @param body Body the request must have, byte for byte; empty for a request with no body.  The first call
+         *             on any Query decodes and indexes the bodies of every request in the report.
+         * @return this
+         */
+        public Query body (byte[] body) {
+            bodyCriteria.add (body.clone ());
+            // Bodies are indexed by hash alone; those whose hashes match are still compared byte by byte.
+            return require (bodies ().get (Hashing.hash (body)));
+        }
+
+        /**
+         * @return The matching requests, in the order the server received them.
+         */
+        public List<ReportedRequest<Q>> find () {
+            List<ReportedRequest<Q>> result = new ArrayList<> ();
+            for (int id : ids ()) {
+                result.add (requests.get (id));
+            }
+            return result;
+        }
+
+        /**
+         * @return The matching requests converted through the LibraryAdapter, in the order the server received them.
+         */
+        public List<Q> findRequests () {
+            return ReportedRequest.toRequests (find ());
+        }
+
+        /**
+         * @return The first matching request, or null if none match.
+         */
+        public ReportedRequest<Q> findFirst () {
+            int[] ids = ids ();
+            return (ids.length == 0) ? null : requests.get (ids[0]);
+        }
+
+        /**
+         * @return Number of matching requests.
+         */
+        public int count () {
+            return ids ().length;
+        }
+
+        private Query require (Postings postings) {
+            criteria.add ((postings == null) ? Postings.NONE : postings);
+            return this;
+        }
+
+        // Walks the shortest posting list, keeping the ids that every other list contains too.
+        private int[] ids () {
+            if (criteria.isEmpty ()) {
+                int[] all = new int[requests.size ()];
+                for (int i = 0; i < all.length; i++) {all[i] = i;}
+                return all;
+            }
+            List<Postings> sorted = new ArrayList<> (criteria);
+            sorted.sort (Comparator.comparingInt (postings -> postings.size));
+            Postings shortest = sorted.get (0);
+            int[] result = new int[shortest.size];
+            int count = 0;
+            for (int i = 0; i < shortest.size; i++) {
+                int id = shortest.ids[i];
+                if (inAll (sorted, id) && bodyMatches (id)) {
+                    result[count++] = id;
+                }
+            }
+            return Arrays.copyOf (result, count);
+        }
+
+        private boolean inAll (List<Postings> sorted, int id) {
+            for (int j = 1; j < sorted.size (); j++) {
+                if (!sorted.get (j).contains (id)) {return false;}
+            }
+            return true;
+        }
+
+        private boolean bodyMatches (int id) {
+            for (byte[] body : bodyCriteria) {
+                if (!Arrays.equals (body, requests.get (id).getBody ())) {return false;}
+            }
+            return true;
+        }
+    }
+
+    // Ids of the requests with one indexed value, ascending, since they're added in report order.
+    private static class Postings {
+        static final Postings NONE = new Postings ();
+
+        int[] ids = new int[2];
+        int size;
+
+        void add (int id) {
+            if ((size > 0) && (ids[size - 1] == id)) {return;}
+            if (size == ids.length) {
+                ids = Arrays.copyOf (ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean contains (int id) {
+            return Arrays.binarySearch (ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package mockability.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What reportSince() returns: the requests that arrived after the cursor it was given, and the cursor to give it
+ * next time.
+ * @param <Q> Class that represents an HTTP request.
+ */
+public class ReportPage<Q> {
+
+    private final List<Q> requests;
+    private final ReportCursor nextCursor;
+
+    ReportPage (List<Q> requests, ReportCursor nextCursor) {
+        this.requests = Collections.unmodifiableList (requests);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return The requests that arrived after the cursor, in the order they arrived; possibly empty.
+     */
+    public List<Q> getRequests () {
+        return requests;
+    }
+
+    /**
+     * @return Cursor after the last request in this page, to pass to the next call to reportSince().
+     */
+    public ReportCursor getNextCursor () {
+        return nextCursor;
+    }
+}
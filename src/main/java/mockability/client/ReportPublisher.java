@@ -0,0 +1,179 @@
+package mockability.client;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Reactive Streams Publisher of the requests in one report.  Each subscriber gets a report of its own, opened
+ * without blocking when it subscribes.  Requests are read, decoded and converted only as the subscriber asks for
+ * them, on whichever thread asks, or on the thread that opens the report if the subscriber asked before it opened.
+ * Signals to a subscriber never overlap, however many threads call request() and cancel().
+ * @param <Q> Class that will represent an HTTP request. Q for "reQuest."
+ */
+class ReportPublisher<Q> implements Publisher<Q> {
+
+    /**
+     * A report that has begun to arrive, ready to be read one request at a time.
+     */
+    interface Source<Q> {
+        boolean hasNext ();
+        Q next ();
+        void close ();
+    }
+
+    private final Supplier<CompletableFuture<Source<Q>>> opener;
+
+    ReportPublisher (Supplier<CompletableFuture<Source<Q>>> opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public void subscribe (Subscriber<? super Q> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException ("Subscriber must not be null");
+        }
+        ReportSubscription subscription = new ReportSubscription (subscriber);
+        subscriber.onSubscribe (subscription);
+        subscription.open ();
+    }
+
+    // Every signal goes out from drain(), and only one thread is ever in drain() at a time: a thread that finds
+    // another already there leaves a note in pending, and the thread already there goes round again.
+    private class ReportSubscription implements Subscription {
+        private final Subscriber<? super Q> subscriber;
+        private final AtomicLong requested = new AtomicLong ();
+        private final AtomicInteger pending = new AtomicInteger ();
+        private volatile Source<Q> source;
+        private volatile Throwable failure;
+        private volatile IllegalArgumentException badRequest;
+        private volatile boolean cancelled;
+        private boolean done;
+        private boolean closed;
+
+        ReportSubscription (Subscriber<? super Q> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void open () {
+            if (cancelled) {return;}
+            try {
+                opener.get ().whenComplete ((opened, e) -> {
+                    if (e != null) {
+                        failure = ((e instanceof CompletionException) && (e.getCause () != null)) ? e.getCause () : e;
+                    }
+                    else {
+                        source = opened;
+                    }
+                    drain ();
+                });
+            }
+            catch (RuntimeException e) {
+                failure = e;
+                drain ();
+            }
+        }
+
+        @Override
+        public void request (long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException ("Reactive Streams rule 3.9: request must be positive, not " + n);
+            }
+            else {
+                long current;
+                long next;
+                do {
+                    current = requested.get ();
+                    next = current + n;
+                    if (next < 0) {next = Long.MAX_VALUE;}
+                } while (!requested.compareAndSet (current, next));
+            }
+            drain ();
+        }
+
+        @Override
+        public void cancel () {
+            cancelled = true;
+            drain ();
+        }
+
+        private void drain () {
+            if (pending.getAndIncrement () != 0) {return;}
+            int missed = 1;
+            do {
+                emit ();
+                missed = pending.addAndGet (-missed);
+            } while (missed != 0);
+        }
+
+        private void emit () {
+            if (done) {
+                closeSource ();
+                return;
+            }
+            if (badRequest != null) {
+                finish ();
+                subscriber.onError (badRequest);
+                return;
+            }
+            if (cancelled) {
+                finish ();
+                return;
+            }
+            if (failure != null) {
+                finish ();
+                subscriber.onError (failure);
+                return;
+            }
+            Source<Q> report = source;
+            if (report == null) {return;}
+            long wanted = requested.get ();
+            long emitted = 0;
+            while (!cancelled && (badRequest == null)) {
+                boolean more;
+                Q request = null;
+                try {
+                    more = report.hasNext ();
+                    if (more && (emitted != wanted)) {
+                        request = report.next ();
+                    }
+                }
+                catch (RuntimeException e) {
+                    finish ();
+                    subscriber.onError (e);
+                    return;
+                }
+                if (!more) {
+                    finish ();
+                    subscriber.onComplete ();
+                    return;
+                }
+                if (emitted == wanted) {break;}
+                emitted++;
+                subscriber.onNext (request);
+            }
+            if ((emitted > 0) && (wanted != Long.MAX_VALUE)) {
+                requested.addAndGet (-emitted);
+            }
+        }
+
+        private void finish () {
+            done = true;
+            closeSource ();
+        }
+
+        private void closeSource () {
+            Source<Q> report = source;
+            if (!closed && (report != null)) {
+                closed = true;
+                report.close ();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package mockability.client;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * What reportView() returns: the reported requests as ReportedRequests, which put off decoding bodies and converting
+ * through the LibraryAdapter until somebody asks.  Assertions that look only at methods, URIs, and headers never pay
+ * for either.  The list is unmodifiable.
+ * @param <Q> Class that represents an HTTP request.
+ */
+public class ReportView<Q> extends AbstractList<ReportedRequest<Q>> implements RandomAccess {
+
+    private final List<ReportedRequest<Q>> requests;
+
+    ReportView (List<ReportedRequest<Q>> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public ReportedRequest<Q> get (int index) {
+        return requests.get (index);
+    }
+
+    @Override
+    public int size () {
+        return requests.size ();
+    }
+
+    /**
+     * @return Every request, converted through the LibraryAdapter; the same list report() would have returned.  If a
+     *          conversion fails, the requests this call had already converted are given to the adapter's
+     *          discardRequest() before the IllegalStateException is thrown.
+     */
+    public List<Q> toRequests () {
+        return ReportedRequest.toRequests (requests);
+    }
+}
@@ -0,0 +1,131 @@
+package mockability.client;
+
+import mockability.client.adapters.Headers;
+import mockability.client.adapters.LibraryAdapter;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.codec.MockabilityCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One request in a ReportView.  The method, URI, and headers are available at once; the body stays encoded until
+ * getBody() is called, and the request isn't converted through the LibraryAdapter until toRequest() is called.  Both
+ * are remembered once computed; two threads that ask at the same moment may each compute them, harmlessly.
+ * @param <Q> Class that represents an HTTP request.
+ */
+public class ReportedRequest<Q> {
+
+    private final LibraryAdapter<Q, ?> adapter;
+    private final String method;
+    private final String uri;
+    private final Headers headers;
+    private final MockabilityCodec.EncodedBody encodedBody;
+    private volatile byte[] body;
+    private volatile Q request;
+
+    ReportedRequest (LibraryAdapter<Q, ?> adapter, String method, String uri, List<HeaderPair> headers,
+                     MockabilityCodec.EncodedBody encodedBody) {
+        this.adapter = adapter;
+        this.method = method;
+        this.uri = uri;
+        this.headers = Headers.of (headers);
+        this.encodedBody = encodedBody;
+    }
+
+    /**
+     * @return HTTP method of the request.
+     */
+    public String getMethod () {
+        return method;
+    }
+
+    /**
+     * @return URI of the request, including any query string.
+     */
+    public String getUri () {
+        return uri;
+    }
+
+    /**
+     * @return All the headers of the request, in order.
+     */
+    public List<HeaderPair> getHeaders () {
+        return headers;
+    }
+
+    /**
+     * @param name Header name; case doesn't matter.
+     * @return Value of the first header with that name, or null if there is none.
+     */
+    public String getHeader (String name) {
+        return headers.getFirst (name);
+    }
+
+    /**
+     * @return Body of the request, decoded on the first call; empty, not null, if it had none.  Don't modify it.
+     */
+    public byte[] getBody () {
+        byte[] result = body;
+        if (result == null) {
+            try {
+                result = encodedBody.decode ();
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalStateException (e);
+            }
+            body = result;
+        }
+        return result;
+    }
+
+    // Converts every request, as ReportView.toRequests () and ReportIndex.Query.findRequests () do.  If one fails,
+    // those converted by this call will never reach the caller, so the adapter gets to free them.
+    static <Q> List<Q> toRequests (List<ReportedRequest<Q>> requests) {
+        List<Q> result = new ArrayList<> (requests.size ());
+        List<ReportedRequest<Q>> converting = new ArrayList<> ();
+        try {
+            for (ReportedRequest<Q> request : requests) {
+                if (request.request == null) {converting.add (request);}
+                result.add (request.toRequest ());
+            }
+        }
+        catch (RuntimeException e) {
+            for (ReportedRequest<Q> request : converting) {
+                Q converted = request.request;
+                request.request = null;
+                if (converted != null) {
+                    MockabilityClient.discard (request.adapter, Collections.singletonList (converted), e);
+                }
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * @return The request converted through the LibraryAdapter, on the first call.
+     */
+    public Q toRequest () {
+        Q result = request;
+        if (result == null) {
+            try {
+                result = MockabilityClient.convert (adapter, method, uri, headers, getBody ());
+            }
+            catch (IllegalStateException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new IllegalStateException (e);
+            }
+            request = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString () {
+        return method + " '" + uri + "' " + headers.size () + " header(s)";
+    }
+}
@@ -0,0 +1,281 @@
+package mockability.client;
+
+import mockability.client.adapters.LibraryAdapter;
+import org.reactivestreams.Publisher;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Spreads the load of a large test suite across several Mockability servers.  Each method/URI pair is assigned to one
+ * of the servers by consistent hashing, so every preparation, request, and report for that pair goes to the same
+ * server, and adding or removing a server moves only about 1/n of the pairs.  The system under test must send each
+ * request to the server chosen for it; shardUrlFor() tells you which one that is.
+ * @param <Q> Class that will represent an HTTP request for this client. Q for "reQuest."
+ * @param <S> Class that will represent an HTTP response for this client. S for "reSponse."
+ */
+public class ShardedMockabilityClient<Q, S> {
+
+    static final int VIRTUAL_NODES_PER_SHARD = 160;
+
+    private final List<String> baseUrls;
+    private final List<MockabilityClient<Q, S>> shards;
+    private final TreeMap<Long, Integer> ring = new TreeMap<> ();
+
+    /**
+     * Create a new ShardedMockabilityClient whose per-server clients share the default connection pool.
+     * @param adapter Instance of class that implements the LibraryAdapter interface, adapting MockabilityClient to
+     *                some standard representation of HTTP requests and responses.
+     * @param baseUrls Base URLs of the Mockability servers to spread keys across: for example,
+     *                 "http://mock1:9000", "http://mock2:9000".  At least one, with no repeats.
+     */
+    public ShardedMockabilityClient (LibraryAdapter<Q, S> adapter, List<String> baseUrls) {
+        this (adapter, baseUrls, MockabilityOptions.defaults ());
+    }
+
+    /**
+     * Create a new ShardedMockabilityClient whose per-server clients share the connection pool belonging to the
+     * supplied MockabilityOptions.
+     * @param adapter Instance of class that implements the LibraryAdapter interface, adapting MockabilityClient to
+     *                some standard representation of HTTP requests and responses.
+     * @param baseUrls Base URLs of the Mockability servers to spread keys across; at least one, with no repeats.
+     * @param options Settings, including the connection pool, that may be shared with other clients.
+     */
+    public ShardedMockabilityClient (LibraryAdapter<Q, S> adapter, List<String> baseUrls, MockabilityOptions options) {
+        if (baseUrls.isEmpty ()) {
+            throw new IllegalArgumentException ("At least one Mockability server is required");
+        }
+        // A server listed twice would put both copies' virtual nodes at the same places on the ring.
+        if (new HashSet<> (baseUrls).size () != baseUrls.size ()) {
+            throw new IllegalArgumentException ("Each Mockability server may be listed only once: " + baseUrls);
+        }
+        this.baseUrls = Collections.unmodifiableList (new ArrayList<> (baseUrls));
+        List<MockabilityClient<Q, S>> clients = new ArrayList<> ();
+        for (int i = 0; i < baseUrls.size (); i++) {
+            clients.add (new MockabilityClient<> (adapter, baseUrls.get (i), options));
+            for (int v = 0; v < VIRTUAL_NODES_PER_SHARD; v++) {
+                ring.put (hash (baseUrls.get (i) + "#" + v), i);
+            }
+        }
+        shards = Collections.unmodifiableList (clients);
+    }
+
+    /**
+     * @param method HTTP method of the request the system under test will make
+     * @param uri URI of the request the system under test will make
+     * @return Base URL of the Mockability server to which the system under test must send that request, exactly as
+     *          it was given to the constructor.
+     */
+    public String shardUrlFor (String method, String uri) {
+        return baseUrls.get (shardIndexFor (method, uri));
+    }
+
+    /**
+     * @param method HTTP method
+     * @param uri URI
+     * @return The single-server client responsible for the method/URI pair.
+     */
+    public MockabilityClient<Q, S> shardFor (String method, String uri) {
+        return shards.get (shardIndexFor (method, uri));
+    }
+
+    /**
+     * @return The single-server clients, in the order of the base URLs given to the constructor.
+     */
+    public List<MockabilityClient<Q, S>> getShards () {
+        return shards;
+    }
+
+    /**
+     * Opens connections ahead of time to every server.  See MockabilityClient.prewarm().
+     * @param connections Number of connections to open to each server
+     */
+    public void prewarm (int connections) {
+        for (MockabilityClient<Q, S> shard : shards) {
+            shard.prewarm (connections);
+        }
+    }
+
+    /**
+     * See MockabilityClient.clear(method, uri); only the responsible server is contacted.
+     */
+    public String clear (String method, String uri) {
+        return shardFor (method, uri).clear (method, uri);
+    }
+
+    /**
+     * Direct every Mockability server to forget everything it knows about requests and responses from your IP.  The
+     * servers are cleared in parallel.
+     * @return If any server was unsuccessful, an IllegalStateException with a message that explains the problem;
+     *          otherwise, the text/plain bodies of the 200 responses, one per line, in server order.
+     */
+    public String clear () {
+        return join (clearAsync ());
+    }
+
+    /**
+     * See MockabilityClient.prepare(method, uri, response).
+     */
+    public String prepare (String method, String uri, S response) {
+        return shardFor (method, uri).prepare (method, uri, response);
+    }
+
+    /**
+     * See MockabilityClient.prepare(method, uri, preparedResponse).
+     */
+    public String prepare (String method, String uri, PreparedResponse response) {
+        return shardFor (method, uri).prepare (method, uri, response);
+    }
+
+    /**
+     * See MockabilityClient.toPreparedResponse(response).  Every shard shares the same options, so the result suits
+     * any of them.
+     */
+    public PreparedResponse toPreparedResponse (S response) {
+        return shards.get (0).toPreparedResponse (response);
+    }
+
+    /**
+     * See MockabilityClient.prepareAll(method, uri, responses).
+     */
+    public String prepareAll (String method, String uri, Iterable<S> responses) {
+        return shardFor (method, uri).prepareAll (method, uri, responses);
+    }
+
+    /**
+     * See MockabilityClient.prepareFromFile(method, uri, status, headers, file).
+     */
+    public String prepareFromFile (String method, String uri, int status, List<LibraryAdapter.HeaderPair> headers,
+            Path file) {
+        return shardFor (method, uri).prepareFromFile (method, uri, status, headers, file);
+    }
+
+    /**
+     * See MockabilityClient.report(method, uri).
+     */
+    public List<Q> report (String method, String uri) {
+        return shardFor (method, uri).report (method, uri);
+    }
+
+    /**
+     * See MockabilityClient.reportView(method, uri).
+     */
+    public ReportView<Q> reportView (String method, String uri) {
+        return shardFor (method, uri).reportView (method, uri);
+    }
+
+    /**
+     * See MockabilityClient.reportIndex(method, uri, indexedHeaders).
+     */
+    public ReportIndex<Q> reportIndex (String method, String uri, String... indexedHeaders) {
+        return shardFor (method, uri).reportIndex (method, uri, indexedHeaders);
+    }
+
+    /**
+     * See MockabilityClient.reportSince(method, uri, cursor).
+     */
+    public ReportPage<Q> reportSince (String method, String uri, ReportCursor cursor) {
+        return shardFor (method, uri).reportSince (method, uri, cursor);
+    }
+
+    /**
+     * See MockabilityClient.waitForRequests(method, uri, count, timeout, unit).
+     */
+    public List<Q> waitForRequests (String method, String uri, int count, long timeout, TimeUnit unit) {
+        return shardFor (method, uri).waitForRequests (method, uri, count, timeout, unit);
+    }
+
+    /**
+     * See MockabilityClient.reportStream(method, uri).
+     */
+    public Stream<Q> reportStream (String method, String uri) {
+        return shardFor (method, uri).reportStream (method, uri);
+    }
+
+    /**
+     * See MockabilityClient.reportPublisher(method, uri).
+     */
+    public Publisher<Q> reportPublisher (String method, String uri) {
+        return shardFor (method, uri).reportPublisher (method, uri);
+    }
+
+    /**
+     * See MockabilityClient.clearAsync(method, uri).
+     */
+    public CompletableFuture<String> clearAsync (String method, String uri) {
+        return shardFor (method, uri).clearAsync (method, uri);
+    }
+
+    /**
+     * Asynchronous version of clear().
+     * @return A future that completes when every server has been cleared, or completes exceptionally with the
+     *          first failure.
+     */
+    public CompletableFuture<String> clearAsync () {
+        List<CompletableFuture<String>> futures = new ArrayList<> ();
+        for (MockabilityClient<Q, S> shard : shards) {
+            futures.add (shard.clearAsync ());
+        }
+        return CompletableFuture.allOf (futures.toArray (new CompletableFuture<?>[futures.size ()])).thenApply (v -> {
+            StringBuilder buf = new StringBuilder ();
+            for (CompletableFuture<String> future : futures) {
+                if (buf.length () > 0) {buf.append ("\n");}
+                buf.append (future.join ());
+            }
+            return buf.toString ();
+        });
+    }
+
+    /**
+     * See MockabilityClient.prepareAsync(method, uri, response).
+     */
+    public CompletableFuture<String> prepareAsync (String method, String uri, S response) {
+        return shardFor (method, uri).prepareAsync (method, uri, response);
+    }
+
+    /**
+     * See MockabilityClient.prepareAsync(method, uri, preparedResponse).
+     */
+    public CompletableFuture<String> prepareAsync (String method, String uri, PreparedResponse response) {
+        return shardFor (method, uri).prepareAsync (method, uri, response);
+    }
+
+    /**
+     * See MockabilityClient.reportAsync(method, uri).
+     */
+    public CompletableFuture<List<Q>> reportAsync (String method, String uri) {
+        return shardFor (method, uri).reportAsync (method, uri);
+    }
+
+    int shardIndexFor (String method, String uri) {
+        long hash = hash (method + " " + (uri.startsWith ("/") ? uri : "/" + uri));
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry (hash);
+        return (entry == null ? ring.firstEntry () : entry).getValue ();
+    }
+
+    private static long hash (String key) {
+        return Hashing.hash (key.getBytes (StandardCharsets.UTF_8));
+    }
+
+    private static String join (CompletableFuture<String> future) {
+        try {
+            return future.join ();
+        }
+        catch (CompletionException e) {
+            if (e.getCause () instanceof IllegalStateException) {
+                throw (IllegalStateException)e.getCause ();
+            }
+            throw new IllegalStateException (e.getCause ());
+        }
+    }
+}
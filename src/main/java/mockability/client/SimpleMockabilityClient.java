@@ -12,4 +12,8 @@ public class SimpleMockabilityClient extends MockabilityClient<SimpleRequest, Si
     public SimpleMockabilityClient(String baseUrl) {
         super(new SimpleAdapter(), baseUrl);
     }
+
+    public SimpleMockabilityClient(String baseUrl, MockabilityOptions options) {
+        super(new SimpleAdapter(), baseUrl, options);
+    }
 }
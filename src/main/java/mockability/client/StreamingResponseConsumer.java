@@ -0,0 +1,177 @@
+package mockability.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Hands an HTTP response over as soon as its headers arrive, with an entity whose content is read from the network
+ * only as fast as somebody reads it.  No more than WINDOW bytes of the body are ever held: when the window is full,
+ * the I/O thread stops reading from the connection until the reader makes room.  The connection stays leased until
+ * the whole body has been read or the response is closed; closing it early shuts the connection down rather than
+ * reading the rest.  The I/O thread never waits, but the reader does, so never read the body on an I/O thread.
+ */
+class StreamingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+    static final int WINDOW = 64 * 1024;
+
+    private final Consumer<HttpResponse> arrival;
+    private final ByteBuffer window = ByteBuffer.allocate (WINDOW);
+    private StreamedResponse response;
+    private IOControl ioControl;
+    private boolean suspended = false;
+    private boolean ended = false;
+    private boolean abandoned = false;
+    private boolean completed = false;
+    private IOException failure = null;
+
+    /**
+     * @param arrival Called on an I/O thread, once, with the response as soon as its headers have arrived.
+     */
+    StreamingResponseConsumer (Consumer<HttpResponse> arrival) {
+        this.arrival = arrival;
+    }
+
+    @Override
+    protected void onResponseReceived (HttpResponse received) {
+        response = new StreamedResponse (received);
+    }
+
+    @Override
+    protected void onEntityEnclosed (HttpEntity entity, ContentType contentType) {
+        BasicHttpEntity streamed = new BasicHttpEntity ();
+        streamed.setContent (new Body ());
+        streamed.setContentLength (entity.getContentLength ());
+        streamed.setContentType (entity.getContentType ());
+        streamed.setContentEncoding (entity.getContentEncoding ());
+        response.setEntity (streamed);
+        arrival.accept (response);
+    }
+
+    @Override
+    protected synchronized void onContentReceived (ContentDecoder decoder, IOControl ioControl) throws IOException {
+        this.ioControl = ioControl;
+        if (abandoned) {
+            throw new IOException ("Response was closed before all of it was read");
+        }
+        decoder.read (window);
+        if (!window.hasRemaining ()) {
+            ioControl.suspendInput ();
+            suspended = true;
+        }
+        notifyAll ();
+    }
+
+    @Override
+    protected HttpResponse buildResult (HttpContext context) {
+        synchronized (this) {
+            completed = true;
+        }
+        if (response.getEntity () == null) {
+            arrival.accept (response);
+        }
+        return response;
+    }
+
+    // Called however the exchange ends: completed, failed, or cancelled.
+    @Override
+    protected synchronized void releaseResources () {
+        if (!completed && (failure == null)) {
+            Exception cause = getException ();
+            failure = (cause instanceof IOException) ? (IOException)cause
+                : new IOException ("Response was cut off before all of it arrived", cause);
+        }
+        ended = true;
+        notifyAll ();
+    }
+
+    private synchronized int read (byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {return 0;}
+        while ((window.position () == 0) && !ended && !abandoned) {
+            try {
+                wait ();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread ().interrupt ();
+                throw new InterruptedIOException ();
+            }
+        }
+        if (abandoned) {return -1;}
+        if (window.position () == 0) {
+            if (failure != null) {throw failure;}
+            return -1;
+        }
+        window.flip ();
+        int count = Math.min (length, window.remaining ());
+        window.get (buffer, offset, count);
+        window.compact ();
+        if (suspended) {
+            suspended = false;
+            ioControl.requestInput ();
+        }
+        return count;
+    }
+
+    private synchronized int available () {
+        return abandoned ? 0 : window.position ();
+    }
+
+    private synchronized void abandon () {
+        if (abandoned) {return;}
+        abandoned = true;
+        window.clear ();
+        notifyAll ();
+        if (!ended && (ioControl != null)) {
+            try {ioControl.shutdown ();} catch (IOException e) {/* nothing more to do */}
+        }
+    }
+
+    private class Body extends InputStream {
+        @Override
+        public int read () throws IOException {
+            byte[] one = new byte[1];
+            return (read (one, 0, 1) < 0) ? -1 : (one[0] & 0xFF);
+        }
+
+        @Override
+        public int read (byte[] buffer, int offset, int length) throws IOException {
+            return StreamingResponseConsumer.this.read (buffer, offset, length);
+        }
+
+        @Override
+        public int available () {
+            return StreamingResponseConsumer.this.available ();
+        }
+
+        @Override
+        public void close () {
+            abandon ();
+        }
+    }
+
+    // Closing the response abandons whatever is left of its body.
+    private class StreamedResponse extends BasicHttpResponse implements Closeable {
+        StreamedResponse (HttpResponse received) {
+            super (received.getStatusLine ());
+            setHeaders (received.getAllHeaders ());
+        }
+
+        @Override
+        public void close () {
+            abandon ();
+        }
+    }
+}
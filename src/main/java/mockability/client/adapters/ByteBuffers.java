@@ -0,0 +1,25 @@
+package mockability.client.adapters;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for adapters whose request classes can only hold a body as a whole byte array.
+ */
+final class ByteBuffers {
+
+    private ByteBuffers () {}
+
+    /**
+     * @param body Buffer holding a body between its position and its limit
+     * @return The array behind the buffer if the body fills all of it; otherwise a copy of the body.
+     */
+    static byte[] arrayOf (ByteBuffer body) {
+        if (body.hasArray () && (body.arrayOffset () == 0) && (body.position () == 0)
+                && (body.remaining () == body.array ().length)) {
+            return body.array ();
+        }
+        byte[] copy = new byte[body.remaining ()];
+        body.duplicate ().get (copy);
+        return copy;
+    }
+}
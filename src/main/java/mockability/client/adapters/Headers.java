@@ -0,0 +1,293 @@
+package mockability.client.adapters;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Immutable, compact list of HTTP headers.  Names and values are kept in two flat arrays rather than as a list of
+ * HeaderPair objects, and well-known names such as "Content-Type" are shared rather than allocated afresh for every
+ * request in a report.  Looking a header up by name ignores case; the index that makes that fast is built the first
+ * time it's needed.  HeaderPairs are made only when get() asks for them, once each.  Since a Headers object is a List of HeaderPairs, it can go anywhere a List of HeaderPairs goes.
+ */
+public final class Headers extends AbstractList<HeaderPair> implements RandomAccess {
+
+    /**
+     * Headers with nothing in them.
+     */
+    public static final Headers EMPTY = new Headers (new String[0], new String[0], 0);
+
+    private static final String[] COMMON_NAMES = {
+        "Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Authorization", "Cache-Control",
+        "Connection", "Content-Disposition", "Content-Encoding", "Content-Language", "Content-Length",
+        "Content-Location", "Content-Type", "Cookie", "Date", "ETag", "Expect", "Expires", "Host", "If-Match",
+        "If-Modified-Since", "If-None-Match", "If-Unmodified-Since", "Last-Modified", "Location", "Origin", "Pragma",
+        "Range", "Referer", "Server", "Set-Cookie", "Transfer-Encoding", "User-Agent", "Vary", "WWW-Authenticate",
+        "X-Forwarded-For", "X-Requested-With"
+    };
+    private static final int TABLE_MASK = 127;
+    private static final String[] TABLE = new String[TABLE_MASK + 1];
+
+    static {
+        for (String name : COMMON_NAMES) {
+            int slot = hash (name) & TABLE_MASK;
+            while (TABLE[slot] != null) {
+                slot = (slot + 1) & TABLE_MASK;
+            }
+            TABLE[slot] = name;
+        }
+    }
+
+    private final String[] names;
+    private final String[] values;
+    private final int size;
+    private volatile Map<String, int[]> index;
+    private volatile HeaderPair[] pairs;
+
+    private Headers (String[] names, String[] values, int size) {
+        this.names = names;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @param headers Any list of headers, or null for none
+     * @return The same headers as a Headers object: the list itself if it already is one, otherwise a copy.
+     */
+    public static Headers of (List<HeaderPair> headers) {
+        if (headers == null) {
+            return EMPTY;
+        }
+        if (headers instanceof Headers) {
+            return (Headers)headers;
+        }
+        Builder builder = new Builder (headers.size ());
+        for (HeaderPair header : headers) {
+            builder.add (header.name (), header.value ());
+        }
+        return builder.build ();
+    }
+
+    /**
+     * @return A Builder for a new Headers object.
+     */
+    public static Builder builder () {
+        return new Builder (8);
+    }
+
+    /**
+     * @param name Any header name
+     * @return The shared instance of the name if it's a well-known one spelled the usual way, otherwise the name.
+     */
+    public static String intern (String name) {
+        if (name == null) {
+            return null;
+        }
+        int slot = hash (name) & TABLE_MASK;
+        for (String candidate = TABLE[slot]; candidate != null; candidate = TABLE[slot = (slot + 1) & TABLE_MASK]) {
+            if (candidate.equals (name)) {
+                return candidate;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Like intern (String), for a name that hasn't been made into a String yet; a well-known name never is.
+     * @param chars Characters holding the name
+     * @param offset Index of the first character of the name
+     * @param length Length of the name
+     * @return The shared instance of the name if it's a well-known one, otherwise a new String.
+     */
+    public static String intern (char[] chars, int offset, int length) {
+        String common = lookUp (chars, offset, length);
+        return (common == null) ? new String (chars, offset, length) : common;
+    }
+
+    private static String lookUp (char[] chars, int offset, int length) {
+        int slot = hash (chars, offset, length) & TABLE_MASK;
+        for (String candidate = TABLE[slot]; candidate != null; candidate = TABLE[slot = (slot + 1) & TABLE_MASK]) {
+            if (matches (candidate, chars, offset, length)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    // The two hashes must agree: a name hashes the same whether it arrives as a String or as characters.
+    private static int hash (String name) {
+        int result = name.length ();
+        for (int i = 0; i < name.length (); i++) {
+            result = 31 * result + name.charAt (i);
+        }
+        return result ^ (result >>> 16);
+    }
+
+    private static int hash (char[] chars, int offset, int length) {
+        int result = length;
+        for (int i = offset; i < offset + length; i++) {
+            result = 31 * result + chars[i];
+        }
+        return result ^ (result >>> 16);
+    }
+
+    private static boolean matches (String candidate, char[] chars, int offset, int length) {
+        if (candidate.length () != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt (i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public HeaderPair get (int i) {
+        checkIndex (i);
+        HeaderPair[] made = pairs;
+        if (made == null) {
+            made = new HeaderPair[size];
+            pairs = made;
+        }
+        // Two threads may each make the same pair; HeaderPairs are immutable, so either will do.
+        HeaderPair pair = made[i];
+        if (pair == null) {
+            pair = new HeaderPair (names[i], values[i]);
+            made[i] = pair;
+        }
+        return pair;
+    }
+
+    @Override
+    public int size () {
+        return size;
+    }
+
+    /**
+     * @param i Position of a header
+     * @return Name of the header at that position
+     */
+    public String name (int i) {
+        checkIndex (i);
+        return names[i];
+    }
+
+    /**
+     * @param i Position of a header
+     * @return Value of the header at that position
+     */
+    public String value (int i) {
+        checkIndex (i);
+        return values[i];
+    }
+
+    /**
+     * @param name Name of the header wanted, in any case
+     * @return Value of the first header with that name, or null if there isn't one.
+     */
+    public String getFirst (String name) {
+        int[] positions = index ().get (name.toLowerCase (Locale.ROOT));
+        return (positions == null) ? null : values[positions[0]];
+    }
+
+    /**
+     * @param name Name of the headers wanted, in any case
+     * @return Values of all the headers with that name, in order; empty if there aren't any.
+     */
+    public List<String> getAll (String name) {
+        int[] positions = index ().get (name.toLowerCase (Locale.ROOT));
+        if (positions == null) {
+            return Collections.emptyList ();
+        }
+        List<String> result = new ArrayList<> (positions.length);
+        for (int position : positions) {
+            result.add (values[position]);
+        }
+        return result;
+    }
+
+    private Map<String, int[]> index () {
+        Map<String, int[]> result = index;
+        if (result == null) {
+            result = new HashMap<> ();
+            for (int i = 0; i < size; i++) {
+                if (names[i] == null) {continue;}
+                String key = names[i].toLowerCase (Locale.ROOT);
+                int[] positions = result.get (key);
+                if (positions == null) {
+                    positions = new int[] {i};
+                }
+                else {
+                    positions = Arrays.copyOf (positions, positions.length + 1);
+                    positions[positions.length - 1] = i;
+                }
+                result.put (key, positions);
+            }
+            index = result;
+        }
+        return result;
+    }
+
+    private void checkIndex (int i) {
+        if ((i < 0) || (i >= size)) {
+            throw new IndexOutOfBoundsException ("Index " + i + ", size " + size);
+        }
+    }
+
+    /**
+     * Accumulates headers, in order, for a new Headers object.
+     */
+    public static class Builder {
+        private String[] names;
+        private String[] values;
+        private int size;
+
+        private Builder (int capacity) {
+            names = new String[Math.max (capacity, 1)];
+            values = new String[names.length];
+        }
+
+        /**
+         * @param name Name of the header; interned if it's a well-known one.
+         * @param value Value of the header
+         * @return this
+         */
+        public Builder add (String name, String value) {
+            return addInterned (intern (name), value);
+        }
+
+        /**
+         * Like add (String, String), for a name that has already been through intern ().
+         * @param name Name of the header
+         * @param value Value of the header
+         * @return this
+         */
+        public Builder addInterned (String name, String value) {
+            if (size == names.length) {
+                names = Arrays.copyOf (names, size * 2);
+                values = Arrays.copyOf (values, size * 2);
+            }
+            names[size] = name;
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return A new Headers object holding the headers added so far.  The Builder shouldn't be used afterward.
+         */
+        public Headers build () {
+            return (size == 0) ? EMPTY : new Headers (names, values, size);
+        }
+    }
+}
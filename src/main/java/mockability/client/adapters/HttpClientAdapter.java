@@ -6,23 +6,31 @@ import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpResponse;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by dnwiebe on 7/19/15.
  */
-public class HttpClientAdapter implements LibraryAdapter<HttpRequestBase, HttpResponse> {
+public class HttpClientAdapter implements StreamingLibraryAdapter<HttpRequestBase, HttpResponse> {
     @Override
     public HttpRequestBase convert(String method, String uri, List<HeaderPair> headers, byte[] body) throws Exception {
+        return convert (method, uri, headers, ByteBuffer.wrap (body));
+    }
+
+    @Override
+    public HttpRequestBase convert(String method, String uri, List<HeaderPair> headers, ByteBuffer body) throws Exception {
         HttpRequestBase request = makeRequest (method, uri);
         addHeaders (request, headers);
         if (HttpEntityEnclosingRequest.class.isAssignableFrom (request.getClass ())) {
             HttpEntityEnclosingRequest heeRequest = (HttpEntityEnclosingRequest)request;
-            heeRequest.setEntity (new ByteArrayEntity (body));
+            heeRequest.setEntity (entityOver (body));
         }
         return request;
     }
@@ -53,7 +61,8 @@ public class HttpClientAdapter implements LibraryAdapter<HttpRequestBase, HttpRe
     @Override
     public byte[] getRequestBody(HttpRequestBase request) throws Exception {
         if (HttpEntityEnclosingRequestBase.class.isAssignableFrom (request.getClass ())) {
-            return inputStreamToByteArray (((HttpEntityEnclosingRequestBase)request).getEntity ().getContent ());
+            HttpEntityEnclosingRequestBase heeRequest = (HttpEntityEnclosingRequestBase)request;
+            return bodyOf (heeRequest.getEntity (), heeRequest::setEntity);
         }
         return new byte[0];
     }
@@ -70,10 +79,66 @@ public class HttpClientAdapter implements LibraryAdapter<HttpRequestBase, HttpRe
 
     @Override
     public byte[] getResponseBody(HttpResponse response) throws Exception {
-        if (response.getEntity () == null) {
-            return new byte[] {};
+        return bodyOf (response.getEntity (), response::setEntity);
+    }
+
+    // bodyOf () writes into an array of its own; the only other holder is the ByteArrayEntity it may create, which
+    // never lets the array out.
+    @Override
+    public boolean returnsFreshResponseBodies () {
+        return true;
+    }
+
+    @Override
+    public void writeResponseBody(HttpResponse response, OutputStream ostr) throws Exception {
+        HttpEntity entity = response.getEntity ();
+        if (entity == null) {return;}
+        if (entity.isRepeatable ()) {
+            entity.writeTo (ostr);
+        }
+        else {
+            ostr.write (bodyOf (entity, response::setEntity));
+        }
+    }
+
+    // A repeatable entity, such as a ByteArrayEntity, StringEntity, or FileEntity, writes itself straight into an
+    // array of the right size.  Anything else can only be read once, so it's read into an array and replaced with a
+    // repeatable copy of itself, leaving the caller's message as usable as it was.
+    private byte[] bodyOf (HttpEntity entity, Consumer<HttpEntity> replacer) throws IOException {
+        if (entity == null) {
+            return new byte[0];
+        }
+        long length = entity.getContentLength ();
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException ("Body is too large to hold in an array: " + length + " bytes");
+        }
+        PresizedOutputStream ostr = new PresizedOutputStream ((length < 0) ? 4096 : (int)length);
+        if (entity.isRepeatable ()) {
+            entity.writeTo (ostr);
+            return ostr.toByteArray ();
         }
-        return inputStreamToByteArray (response.getEntity ().getContent ());
+        try (InputStream istr = entity.getContent ()) {
+            if (istr != null) {
+                ostr.readFrom (istr);
+            }
+        }
+        byte[] body = ostr.toByteArray ();
+        ByteArrayEntity copy = new ByteArrayEntity (body);
+        copy.setContentType (entity.getContentType ());
+        copy.setContentEncoding (entity.getContentEncoding ());
+        copy.setChunked (entity.isChunked ());
+        replacer.accept (copy);
+        return body;
+    }
+
+    // Shares the buffer's array when there is one, instead of copying it.
+    private ByteArrayEntity entityOver (ByteBuffer body) {
+        if (body.hasArray ()) {
+            return new ByteArrayEntity (body.array (), body.arrayOffset () + body.position (), body.remaining ());
+        }
+        byte[] copy = new byte[body.remaining ()];
+        body.duplicate ().get (copy);
+        return new ByteArrayEntity (copy);
     }
 
     private void addHeaders (HttpMessage msg, List<HeaderPair> headers) {
@@ -95,21 +160,57 @@ public class HttpClientAdapter implements LibraryAdapter<HttpRequestBase, HttpRe
     }
 
     private List<HeaderPair> extractHeaderPairs (HttpMessage msg) {
-        List<HeaderPair> pairs = new ArrayList<> ();
+        Headers.Builder builder = Headers.builder ();
         for (Header header : msg.getAllHeaders ()) {
-            pairs.add (new HeaderPair (header.getName (), header.getValue ()));
+            builder.add (header.getName (), header.getValue ());
         }
-        return pairs;
+        return builder.build ();
     }
 
-    private byte[] inputStreamToByteArray (InputStream istr) throws Exception {
-        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
-        byte[] buf = new byte[1024];
-        while (true) {
-            int len = istr.read (buf);
-            if (len < 0) {break;}
-            ostr.write (buf, 0, len);
+    // Like a ByteArrayOutputStream, but hands over its array without copying when the size guess was right.
+    private static class PresizedOutputStream extends OutputStream {
+        private byte[] buf;
+        private int count;
+
+        PresizedOutputStream (int size) {
+            buf = new byte[size];
+        }
+
+        @Override
+        public void write (int b) {
+            ensureRoom (1);
+            buf[count++] = (byte)b;
+        }
+
+        @Override
+        public void write (byte[] b, int off, int len) {
+            ensureRoom (len);
+            System.arraycopy (b, off, buf, count, len);
+            count += len;
+        }
+
+        // Only grows the array if the stream turns out to be longer than it said it would be.
+        void readFrom (InputStream istr) throws IOException {
+            while (true) {
+                if (count == buf.length) {
+                    int b = istr.read ();
+                    if (b < 0) {return;}
+                    write (b);
+                }
+                int len = istr.read (buf, count, buf.length - count);
+                if (len < 0) {return;}
+                count += len;
+            }
+        }
+
+        byte[] toByteArray () {
+            return (count == buf.length) ? buf : Arrays.copyOf (buf, count);
+        }
+
+        private void ensureRoom (int len) {
+            if (count + len > buf.length) {
+                buf = Arrays.copyOf (buf, Math.max (count + len, Math.max (buf.length * 2, 256)));
+            }
         }
-        return ostr.toByteArray ();
     }
 }
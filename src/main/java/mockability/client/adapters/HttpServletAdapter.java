@@ -5,7 +5,8 @@ import org.springframework.mock.web.MockHttpServletResponse;
 
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
@@ -13,7 +14,13 @@ import java.util.List;
 /**
  * Created by dnwiebe on 7/29/15.
  */
-public class HttpServletAdapter implements LibraryAdapter<MockHttpServletRequest, MockHttpServletResponse> {
+public class HttpServletAdapter implements StreamingLibraryAdapter<MockHttpServletRequest, MockHttpServletResponse> {
+
+    // The request keeps the decoded array itself when the buffer covers all of it, instead of another copy.
+    @Override
+    public MockHttpServletRequest convert (String method, String uri, List<HeaderPair> headers, ByteBuffer body) throws Exception {
+        return convert (method, uri, headers, ByteBuffers.arrayOf (body));
+    }
 
     @Override
     public MockHttpServletRequest convert (String method, String uri, List<HeaderPair> headers, byte[] body) throws Exception {
@@ -47,24 +54,24 @@ public class HttpServletAdapter implements LibraryAdapter<MockHttpServletRequest
 
     @Override
     public List<HeaderPair> getRequestHeaders (MockHttpServletRequest request) {
-        List<HeaderPair> pairs = new ArrayList<> ();
+        Headers.Builder builder = Headers.builder ();
         Enumeration<String> names = request.getHeaderNames ();
         while (names.hasMoreElements ()) {
             String name = names.nextElement ();
             Enumeration<String> values = request.getHeaders (name);
             while (values.hasMoreElements ()) {
                 String value = values.nextElement ();
-                pairs.add (new HeaderPair (name, value));
+                builder.add (name, value);
             }
         }
-        return pairs;
+        return builder.build ();
     }
 
     @Override
     public byte[] getRequestBody (MockHttpServletRequest request) throws Exception {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream ();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream (Math.max (request.getContentLength (), 32));
         InputStream istr = request.getInputStream ();
-        byte[] buf = new byte[1024];
+        byte[] buf = new byte[8192];
         while (true) {
             int len = istr.read (buf);
             if (len < 0) {break;}
@@ -80,19 +87,30 @@ public class HttpServletAdapter implements LibraryAdapter<MockHttpServletRequest
 
     @Override
     public List<HeaderPair> getResponseHeaders (MockHttpServletResponse response) {
-        List<HeaderPair> pairs = new ArrayList<> ();
+        Headers.Builder builder = Headers.builder ();
         Collection<String> names = response.getHeaderNames ();
         for (String name : names) {
             Collection<String> values = response.getHeaders (name);
             for (String value : values) {
-                pairs.add (new HeaderPair (name, value));
+                builder.add (name, value);
             }
         }
-        return pairs;
+        return builder.build ();
     }
 
     @Override
     public byte[] getResponseBody (MockHttpServletResponse response) throws Exception {
         return response.getContentAsByteArray ();
     }
+
+    // MockHttpServletResponse copies its content into a new array every time it's asked.
+    @Override
+    public boolean returnsFreshResponseBodies () {
+        return true;
+    }
+
+    @Override
+    public void writeResponseBody (MockHttpServletResponse response, OutputStream ostr) throws Exception {
+        ostr.write (response.getContentAsByteArray ());
+    }
 }
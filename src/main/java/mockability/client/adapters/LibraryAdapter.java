@@ -1,6 +1,7 @@
 package mockability.client.adapters;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Created by dnwiebe on 7/19/15.
@@ -15,11 +16,12 @@ import java.util.List;
 public interface LibraryAdapter<Q, S> {
 
     /**
-     * Class of immutable objects that each hold the name and value of a single HTTP header.
+     * Class of immutable objects that each hold the name and value of a single HTTP header.  Lists of them are
+     * usually Headers objects, which store the names and values more compactly and can look them up by name.
      */
     class HeaderPair {
-        private String _name;
-        private String _value;
+        private final String _name;
+        private final String _value;
 
         /**
          * Create a new HeaderPair with name and value.
@@ -40,6 +42,18 @@ public interface LibraryAdapter<Q, S> {
          * @return Value of the header
          */
         public String value () {return _value;}
+
+        @Override
+        public boolean equals (Object o) {
+            if (!(o instanceof HeaderPair)) {return false;}
+            HeaderPair that = (HeaderPair)o;
+            return Objects.equals (_name, that._name) && Objects.equals (_value, that._value);
+        }
+
+        @Override
+        public int hashCode () {
+            return 31 * Objects.hashCode (_name) + Objects.hashCode (_value);
+        }
     }
 
     /**
@@ -47,7 +61,7 @@ public interface LibraryAdapter<Q, S> {
      * @param method HTTP method, such as "GET" or "PUT".
      * @param uri HTTP URI, usually beginning with a slash.  Do not include scheme, hostname, or port.
      * @param headers List of headers for the request.
-     * @param body Body of the request, not Base64-encoded. Chunking and streaming are not supported.
+     * @param body Body of the request, not Base64-encoded.  For streaming, see StreamingLibraryAdapter.
      * @return An object of the specified HTTP Request type, populated with the supplied information.
      * @throws Exception The conversion method may throw whatever exception it needs to throw.
      */
@@ -57,7 +71,7 @@ public interface LibraryAdapter<Q, S> {
      * Combine a collection of information about an HTTP response into an object representing that response.
      * @param status Status code, such as 200 or 404.
      * @param headers List of headers for the response.
-     * @param body Body of the response, not Base64-encoded. Chunking and streaming are not supported.
+     * @param body Body of the response, not Base64-encoded.  For streaming, see StreamingLibraryAdapter.
      * @return An object of the specified HTTP Response type, populated with the supplied information.
      * @throws Exception The conversion method may throw whatever exception it needs to throw.
      */
@@ -115,6 +129,14 @@ public interface LibraryAdapter<Q, S> {
      */
     byte[] getResponseBody (S response) throws Exception;
 
+    /**
+     * Called for each request this adapter converted for a report that then failed, so that the request will never
+     * reach the caller.  Adapters whose requests hold resources that must be given back, such as pooled buffers,
+     * should give them back here.  Does nothing by default.
+     * @param request Request converted by this adapter that nobody else will see
+     */
+    default void discardRequest (Q request) {}
+
     /**
      * Used mostly internally, this static method throws an exception if the HTTP method supplied is not one of the
      * recognized ones.
@@ -0,0 +1,153 @@
+package mockability.client.adapters;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adapts MockabilityClient to Netty's FullHttpRequest and FullHttpResponse.  Netty is an optional dependency of
+ * this library: it must be on the classpath to use this class, and only this class.
+ *
+ * <p>Bodies are reference-counted ByteBufs, so ownership matters:</p>
+ * <ul>
+ *     <li>Every request or response this adapter creates (including each request returned by report() and the
+ *     other report methods of NettyMockabilityClient) holds a body allocated from the adapter's allocator, by
+ *     default PooledByteBufAllocator.DEFAULT, with a reference count of one.  The caller owns it and must call
+ *     release() on it when finished; until then the memory can't go back to the pool.  If a report fails partway
+ *     through, the requests already converted for it are released before the failure is thrown.</li>
+ *     <li>Requests and responses handed to the adapter (for example, the responses you prepare) still belong to the
+ *     caller.  The adapter reads their bodies without moving their reader indexes, and never retains or releases
+ *     them.</li>
+ * </ul>
+ */
+public class NettyAdapter implements StreamingLibraryAdapter<FullHttpRequest, FullHttpResponse> {
+
+    private final ByteBufAllocator allocator;
+
+    /**
+     * Create an adapter whose bodies come from PooledByteBufAllocator.DEFAULT.
+     */
+    public NettyAdapter () {
+        this (PooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * @param allocator Allocator for the bodies of the requests and responses this adapter creates: for example, the
+     *                  one your Netty channels use.
+     */
+    public NettyAdapter (ByteBufAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    @Override
+    public FullHttpRequest convert (String method, String uri, List<HeaderPair> headers, byte[] body) {
+        return convert (method, uri, headers, ByteBuffer.wrap (body));
+    }
+
+    @Override
+    public FullHttpRequest convert (String method, String uri, List<HeaderPair> headers, ByteBuffer body) {
+        FullHttpRequest request = new DefaultFullHttpRequest (HttpVersion.HTTP_1_1, HttpMethod.valueOf (method), uri,
+            bufferOf (body));
+        addHeaders (request.headers (), headers);
+        return request;
+    }
+
+    @Override
+    public FullHttpResponse convert (int status, List<HeaderPair> headers, byte[] body) {
+        FullHttpResponse response = new DefaultFullHttpResponse (HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf (status),
+            bufferOf (ByteBuffer.wrap (body)));
+        addHeaders (response.headers (), headers);
+        return response;
+    }
+
+    @Override
+    public String getRequestMethod (FullHttpRequest request) {
+        return request.method ().name ();
+    }
+
+    @Override
+    public String getRequestUri (FullHttpRequest request) {
+        return request.uri ();
+    }
+
+    @Override
+    public List<HeaderPair> getRequestHeaders (FullHttpRequest request) {
+        return headerPairsOf (request.headers ());
+    }
+
+    @Override
+    public byte[] getRequestBody (FullHttpRequest request) {
+        return ByteBufUtil.getBytes (request.content ());
+    }
+
+    @Override
+    public int getResponseStatus (FullHttpResponse response) {
+        return response.status ().code ();
+    }
+
+    @Override
+    public List<HeaderPair> getResponseHeaders (FullHttpResponse response) {
+        return headerPairsOf (response.headers ());
+    }
+
+    @Override
+    public byte[] getResponseBody (FullHttpResponse response) {
+        return ByteBufUtil.getBytes (response.content ());
+    }
+
+    // ByteBufUtil.getBytes () always copies.
+    @Override
+    public boolean returnsFreshResponseBodies () {
+        return true;
+    }
+
+    // Nobody else will ever release the request's pooled body.
+    @Override
+    public void discardRequest (FullHttpRequest request) {
+        ReferenceCountUtil.release (request);
+    }
+
+    // A heap buffer goes onto the stream straight from its array; a direct one, in chunks.
+    @Override
+    public void writeResponseBody (FullHttpResponse response, OutputStream ostr) throws Exception {
+        ByteBuf content = response.content ();
+        content.getBytes (content.readerIndex (), ostr, content.readableBytes ());
+    }
+
+    private ByteBuf bufferOf (ByteBuffer body) {
+        ByteBuf buffer = allocator.buffer (body.remaining ());
+        buffer.writeBytes (body.duplicate ());
+        return buffer;
+    }
+
+    private void addHeaders (HttpHeaders target, List<HeaderPair> headers) {
+        for (HeaderPair header : headers) {
+            target.add (header.name (), header.value ());
+        }
+    }
+
+    private List<HeaderPair> headerPairsOf (HttpHeaders headers) {
+        Headers.Builder builder = Headers.builder ();
+        for (Iterator<Map.Entry<String, String>> i = headers.iteratorAsString (); i.hasNext ();) {
+            Map.Entry<String, String> header = i.next ();
+            builder.add (header.getKey (), header.getValue ());
+        }
+        return builder.build ();
+    }
+}
@@ -1,17 +1,19 @@
 package mockability.client.adapters;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
  * Created by ga-mlsdiscovery on 8/4/15.
  */
-public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest, SimpleAdapter.SimpleResponse> {
+public class SimpleAdapter implements StreamingLibraryAdapter<SimpleAdapter.SimpleRequest, SimpleAdapter.SimpleResponse> {
 
     public static class SimpleRequest {
 
         private String method;
         private String uri;
-        private List<HeaderPair> headers;
+        private Headers headers;
         private byte[] body;
 
         public SimpleRequest(String method, String uri, List<HeaderPair> headers) {
@@ -21,7 +23,7 @@ public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest
         public SimpleRequest(String method, String uri, List<HeaderPair> headers, byte[] body) {
             this.method = method;
             this.uri = uri;
-            this.headers = headers;
+            this.headers = Headers.of(headers);
             this.body = body;
         }
 
@@ -37,6 +39,14 @@ public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest
             return headers;
         }
 
+        /**
+         * @param name Name of the header wanted, in any case
+         * @return Value of the first header with that name, or null if there isn't one.
+         */
+        public String getHeader(String name) {
+            return headers.getFirst(name);
+        }
+
         public byte[] getBody() {
             return body;
         }
@@ -46,7 +56,7 @@ public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest
     public static class SimpleResponse {
 
         private int status;
-        private List<HeaderPair> headers;
+        private Headers headers;
         private byte[] body;
 
         public SimpleResponse(int status, List<HeaderPair> headers) {
@@ -55,7 +65,7 @@ public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest
 
         public SimpleResponse(int status, List<HeaderPair> headers, byte[] body) {
             this.status = status;
-            this.headers = headers;
+            this.headers = Headers.of(headers);
             this.body = body;
         }
 
@@ -68,6 +78,14 @@ public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest
             return headers;
         }
 
+        /**
+         * @param name Name of the header wanted, in any case
+         * @return Value of the first header with that name, or null if there isn't one.
+         */
+        public String getHeader(String name) {
+            return headers.getFirst(name);
+        }
+
         public byte[] getBody() {
             return body;
         }
@@ -79,6 +97,12 @@ public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest
         return new SimpleRequest(method, uri, headers, body);
     }
 
+    // The request keeps the decoded array itself when the buffer covers all of it, instead of another copy.
+    @Override
+    public SimpleRequest convert(String method, String uri, List<HeaderPair> headers, ByteBuffer body) {
+        return convert(method, uri, headers, ByteBuffers.arrayOf(body));
+    }
+
     @Override
     public SimpleResponse convert(int status, List<HeaderPair> headers, byte[] body) {
         return new SimpleResponse(status, headers, body);
@@ -118,4 +142,9 @@ public class SimpleAdapter implements LibraryAdapter<SimpleAdapter.SimpleRequest
     public byte[] getResponseBody(SimpleResponse response) {
         return response.getBody();
     }
+
+    @Override
+    public void writeResponseBody(SimpleResponse response, OutputStream ostr) throws Exception {
+        ostr.write(response.getBody());
+    }
 }
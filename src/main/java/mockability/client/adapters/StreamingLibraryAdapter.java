@@ -0,0 +1,49 @@
+package mockability.client.adapters;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A LibraryAdapter that can move bodies without copying them into byte arrays of their own.  When its adapter
+ * implements this interface, MockabilityClient has it write each prepared response body straight from the response
+ * object onto the wire, with no byte array of the body in between.  Reported request bodies are not streamed: each
+ * is still decoded whole into an array of its own, but the adapter gets a ByteBuffer over that array instead of
+ * another copy of it, and may keep the array as the request's body.  Either way a big body is held in memory once
+ * fewer than it would be through a plain LibraryAdapter.
+ * @param <Q> Class that will represent an HTTP request. Q for "reQuest."
+ * @param <S> Class that will represent an HTTP response. S for "reSponse."
+ */
+public interface StreamingLibraryAdapter<Q, S> extends LibraryAdapter<Q, S> {
+
+    /**
+     * Like convert (String, String, List, byte[]), except for the form of the body.
+     * @param method HTTP method, such as "GET" or "PUT".
+     * @param uri HTTP URI, usually beginning with a slash.  Do not include scheme, hostname, or port.
+     * @param headers List of headers for the request.
+     * @param body Body of the request, not Base64-encoded, between its position and its limit: a buffer over the
+     *             array the whole body was decoded into, which nothing else refers to.  The adapter may keep the
+     *             buffer, or the array behind it, rather than copying it.
+     * @return An object of the specified HTTP Request type, populated with the supplied information.
+     * @throws Exception The conversion method may throw whatever exception it needs to throw.
+     */
+    Q convert (String method, String uri, List<HeaderPair> headers, ByteBuffer body) throws Exception;
+
+    /**
+     * Writes just the body from the supplied response, instead of returning it the way getResponseBody() does.
+     * @param response Response whose body is wanted
+     * @param ostr Stream to write the body to, not Base64-encoded.  Don't close it.
+     * @throws Exception Sometimes reading the body can throw an exception.
+     */
+    void writeResponseBody (S response, OutputStream ostr) throws Exception;
+
+    /**
+     * Says whether every array getResponseBody() returns is a new one that nothing else refers to.  If it is,
+     * MockabilityClient can keep the array, for example in a PreparedResponseCache, without copying it; if not, a
+     * caller who changed the response's body afterward would change what was kept.
+     * @return true only if getResponseBody() never returns an array that the response, or anything else, keeps.
+     */
+    default boolean returnsFreshResponseBodies () {
+        return false;
+    }
+}
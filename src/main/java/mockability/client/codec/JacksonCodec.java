@@ -0,0 +1,413 @@
+package mockability.client.codec;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import mockability.client.adapters.Headers;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * MockabilityCodec for any format Jackson can stream.  Bodies are written with writeBinary() and read with
+ * getBinaryValue(), so a textual format like JSON carries them in Base64, while a binary format like Smile can carry
+ * the raw bytes.
+ */
+public class JacksonCodec implements MockabilityCodec {
+
+    private final JsonFactory factory;
+    private final String contentType;
+
+    /**
+     * @param factory Fully configured Jackson factory for the format; it will be shared by every reader and writer.
+     * @param contentType MIME type of the format.
+     */
+    public JacksonCodec (JsonFactory factory, String contentType) {
+        this.factory = factory;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public String getContentType () {
+        return contentType;
+    }
+
+    @Override
+    public ResponseWriter newResponseWriter (OutputStream ostr) throws IOException {
+        return new JacksonResponseWriter (startList (ostr));
+    }
+
+    @Override
+    public RequestReader newRequestReader (InputStream istr) throws IOException {
+        return new JacksonRequestReader (openList (istr, "requests"));
+    }
+
+    @Override
+    public RequestWriter newRequestWriter (OutputStream ostr) throws IOException {
+        return new JacksonRequestWriter (startList (ostr));
+    }
+
+    @Override
+    public ResponseReader newResponseReader (InputStream istr) throws IOException {
+        return new JacksonResponseReader (openList (istr, "responses"));
+    }
+
+    private JsonGenerator startList (OutputStream ostr) throws IOException {
+        JsonGenerator generator = factory.createGenerator (ostr);
+        generator.disable (JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartArray ();
+        return generator;
+    }
+
+    private JsonParser openList (InputStream istr, String what) throws IOException {
+        JsonParser parser = factory.createParser (istr);
+        parser.disable (JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        if (parser.nextToken () != JsonToken.START_ARRAY) {
+            throw new IOException ("Expected a list of " + what + ", but found " + parser.getCurrentToken ());
+        }
+        return parser;
+    }
+
+    private static abstract class ElementWriter {
+        protected final JsonGenerator generator;
+
+        ElementWriter (JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        protected void writeHeaders (List<HeaderPair> headers) throws IOException {
+            generator.writeArrayFieldStart ("headers");
+            for (HeaderPair header : headers) {
+                generator.writeStartObject ();
+                generator.writeStringField ("name", header.name ());
+                generator.writeStringField ("value", header.value ());
+                generator.writeEndObject ();
+            }
+            generator.writeEndArray ();
+        }
+
+        public void close () throws IOException {
+            generator.writeEndArray ();
+            generator.close ();
+        }
+    }
+
+    private static class JacksonResponseWriter extends ElementWriter implements ResponseWriter {
+
+        JacksonResponseWriter (JsonGenerator generator) {
+            super (generator);
+        }
+
+        @Override
+        public void writeResponse (int status, List<HeaderPair> headers, byte[] body) throws IOException {
+            generator.writeStartObject ();
+            generator.writeNumberField ("status", status);
+            writeHeaders (headers);
+            generator.writeFieldName ("body");
+            generator.writeBinary (body);
+            generator.writeEndObject ();
+        }
+
+        // Textual formats get the body Base64-encoded a piece at a time, as it's written, between quotes written by
+        // hand.  Binary formats need the length first, so the body is collected.
+        @Override
+        public void writeResponse (int status, List<HeaderPair> headers, BodyWriter body) throws IOException {
+            generator.writeStartObject ();
+            generator.writeNumberField ("status", status);
+            writeHeaders (headers);
+            generator.writeFieldName ("body");
+            if (generator.canWriteBinaryNatively ()) {
+                ByteArrayOutputStream collected = new ByteArrayOutputStream ();
+                body.writeTo (collected);
+                generator.writeBinary (collected.toByteArray ());
+            }
+            else {
+                generator.writeRawValue ("\"");
+                try (OutputStream encoder = Base64.getEncoder ().wrap (new RawTextOutputStream (generator))) {
+                    body.writeTo (encoder);
+                }
+                generator.writeRaw ('"');
+            }
+            generator.writeEndObject ();
+        }
+
+        // Binary formats know the length of a buffer in advance, so it can be streamed to them too.
+        @Override
+        public void writeResponse (int status, List<HeaderPair> headers, ByteBuffer body) throws IOException {
+            if (!generator.canWriteBinaryNatively ()) {
+                writeResponse (status, headers, ostr -> copy (body.duplicate (), ostr));
+                return;
+            }
+            generator.writeStartObject ();
+            generator.writeNumberField ("status", status);
+            writeHeaders (headers);
+            generator.writeFieldName ("body");
+            generator.writeBinary (new ByteBufferInputStream (body.duplicate ()), body.remaining ());
+            generator.writeEndObject ();
+        }
+
+        private static void copy (ByteBuffer source, OutputStream ostr) throws IOException {
+            byte[] chunk = new byte[Math.min (source.remaining (), 8192)];
+            while (source.hasRemaining ()) {
+                int count = Math.min (source.remaining (), chunk.length);
+                source.get (chunk, 0, count);
+                ostr.write (chunk, 0, count);
+            }
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream (ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read () {
+            return buffer.hasRemaining () ? (buffer.get () & 0xFF) : -1;
+        }
+
+        @Override
+        public int read (byte[] b, int off, int len) {
+            if (len == 0) {return 0;}
+            if (!buffer.hasRemaining ()) {return -1;}
+            int count = Math.min (len, buffer.remaining ());
+            buffer.get (b, off, count);
+            return count;
+        }
+    }
+
+    /**
+     * Passes ASCII bytes to a generator as raw text.  Closing it doesn't close the generator.
+     */
+    private static class RawTextOutputStream extends OutputStream {
+        private final JsonGenerator generator;
+        private final char[] chars = new char[4096];
+
+        RawTextOutputStream (JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void write (int b) throws IOException {
+            generator.writeRaw ((char)(b & 0xFF));
+        }
+
+        @Override
+        public void write (byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int count = Math.min (len, chars.length);
+                for (int i = 0; i < count; i++) {
+                    chars[i] = (char)(b[off + i] & 0xFF);
+                }
+                generator.writeRaw (chars, 0, count);
+                off += count;
+                len -= count;
+            }
+        }
+    }
+
+    private static class JacksonRequestWriter extends ElementWriter implements RequestWriter {
+
+        JacksonRequestWriter (JsonGenerator generator) {
+            super (generator);
+        }
+
+        @Override
+        public void writeRequest (String method, String uri, List<HeaderPair> headers, byte[] body) throws IOException {
+            generator.writeStartObject ();
+            generator.writeStringField ("method", method);
+            generator.writeStringField ("uri", uri);
+            writeHeaders (headers);
+            generator.writeFieldName ("body");
+            generator.writeBinary (body);
+            generator.writeEndObject ();
+        }
+    }
+
+    private static abstract class ElementReader {
+        protected final JsonParser parser;
+        protected List<HeaderPair> headers;
+        protected byte[] body;
+        protected EncodedBody encodedBody;
+
+        ElementReader (JsonParser parser) {
+            this.parser = parser;
+        }
+
+        protected boolean nextElement () throws IOException {
+            JsonToken token = parser.nextToken ();
+            if (token == JsonToken.START_OBJECT) {
+                return true;
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException ("Expected the start of an element, but found " + token);
+            }
+            return false;
+        }
+
+        protected void readElement (boolean decodeBody) throws IOException {
+            headers = Headers.EMPTY;
+            body = decodeBody ? new byte[] {} : null;
+            encodedBody = decodeBody ? null : EncodedBody.EMPTY;
+            while (parser.nextToken () == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName ();
+                JsonToken value = parser.nextToken ();
+                switch (field) {
+                    case "headers": headers = readHeaders (); break;
+                    case "body":
+                        if (value == JsonToken.VALUE_NULL) {break;}
+                        if (decodeBody) {body = parser.getBinaryValue ();}
+                        else {encodedBody = encodedBody (value);}
+                        break;
+                    default: if (!readField (field)) {parser.skipChildren ();}
+                }
+            }
+        }
+
+        // Text is kept as it is, to be decoded from Base64 later; a format with real binary values has nothing to
+        // decode.
+        private EncodedBody encodedBody (JsonToken value) throws IOException {
+            if (value == JsonToken.VALUE_STRING) {
+                String text = parser.getText ();
+                Base64Variant variant = Base64Variants.getDefaultVariant ();
+                return () -> variant.decode (text);
+            }
+            byte[] raw = parser.getBinaryValue ();
+            return raw::clone;
+        }
+
+        // Strings, binary values included, are passed over without being decoded.
+        protected void skipElement () throws IOException {
+            parser.skipChildren ();
+        }
+
+        /**
+         * @return true if the field was one this kind of element knows about, false if it should be skipped.
+         */
+        protected abstract boolean readField (String field) throws IOException;
+
+        // Well-known names are matched in the parser's own buffer, so they never become new Strings.
+        private Headers readHeaders () throws IOException {
+            Headers.Builder builder = Headers.builder ();
+            while (parser.nextToken () == JsonToken.START_OBJECT) {
+                String name = null;
+                String value = null;
+                while (parser.nextToken () == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName ();
+                    JsonToken token = parser.nextToken ();
+                    switch (field) {
+                        case "name":
+                            name = (token == JsonToken.VALUE_STRING)
+                                ? Headers.intern (parser.getTextCharacters (), parser.getTextOffset (), parser.getTextLength ())
+                                : parser.getText ();
+                            break;
+                        case "value": value = parser.getText (); break;
+                        default: parser.skipChildren ();
+                    }
+                }
+                builder.addInterned (name, value);
+            }
+            return builder.build ();
+        }
+
+        public List<HeaderPair> getHeaders () {return headers;}
+
+        public byte[] getBody () {return body;}
+
+        public EncodedBody getEncodedBody () {return encodedBody;}
+
+        public void close () throws IOException {
+            parser.close ();
+        }
+    }
+
+    private static class JacksonRequestReader extends ElementReader implements RequestReader {
+        private String method;
+        private String uri;
+
+        JacksonRequestReader (JsonParser parser) {
+            super (parser);
+        }
+
+        @Override
+        public boolean nextRequest () throws IOException {
+            return nextElement ();
+        }
+
+        @Override
+        public void readRequest () throws IOException {
+            method = null;
+            uri = null;
+            readElement (true);
+        }
+
+        @Override
+        public void readRequestLeavingBodyEncoded () throws IOException {
+            method = null;
+            uri = null;
+            readElement (false);
+        }
+
+        @Override
+        public void skipRequest () throws IOException {
+            skipElement ();
+        }
+
+        @Override
+        protected boolean readField (String field) throws IOException {
+            switch (field) {
+                case "method": method = parser.getText (); return true;
+                case "uri": uri = parser.getText (); return true;
+                default: return false;
+            }
+        }
+
+        @Override
+        public String getMethod () {return method;}
+
+        @Override
+        public String getUri () {return uri;}
+    }
+
+    private static class JacksonResponseReader extends ElementReader implements ResponseReader {
+        private int status;
+
+        JacksonResponseReader (JsonParser parser) {
+            super (parser);
+        }
+
+        @Override
+        public boolean nextResponse () throws IOException {
+            return nextElement ();
+        }
+
+        @Override
+        public void readResponse () throws IOException {
+            status = 0;
+            readElement (true);
+        }
+
+        @Override
+        protected boolean readField (String field) throws IOException {
+            if ("status".equals (field)) {
+                status = parser.getIntValue ();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int getStatus () {return status;}
+    }
+}
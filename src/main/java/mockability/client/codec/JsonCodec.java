@@ -0,0 +1,16 @@
+package mockability.client.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+/**
+ * The Mockability server's native format: JSON, with bodies in Base64.  Every Mockability server understands it, so
+ * MockabilityClient falls back to it whenever a server doesn't understand anything else.
+ */
+public class JsonCodec extends JacksonCodec {
+
+    public static final String CONTENT_TYPE = "application/json";
+
+    public JsonCodec () {
+        super (new JsonFactory (), CONTENT_TYPE);
+    }
+}
@@ -0,0 +1,234 @@
+package mockability.client.codec;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A class that implements this interface knows how to put the responses sent by prepare() onto the wire, and how to
+ * take the requests returned by report() off the wire, in some particular format.  MockabilityClient sends the
+ * format's content type with prepared responses and asks for it (with a fallback to JSON) when it requests a report.
+ * The stand-in server uses the same codecs in the opposite direction: it reads responses and writes requests.
+ * A codec is shared by every client using the same MockabilityOptions, on any number of threads, so it must be
+ * thread-safe; each reader and writer it creates is used by only one thread at a time.
+ */
+public interface MockabilityCodec {
+
+    /**
+     * @return MIME type of the format this codec reads and writes: for example, "application/json".
+     */
+    String getContentType ();
+
+    /**
+     * Begin writing a list of responses to the supplied stream.
+     * @param ostr Stream to write to.  It will be flushed, but not closed, when the writer is closed.
+     * @return A writer that will write each response it is given as the next element of the list.
+     * @throws IOException If the stream can't be written.
+     */
+    ResponseWriter newResponseWriter (OutputStream ostr) throws IOException;
+
+    /**
+     * Begin reading a list of requests from the supplied stream.
+     * @param istr Stream to read from.  It will not be closed when the reader is closed.
+     * @return A reader positioned before the first request in the list.
+     * @throws IOException If the stream can't be read or doesn't begin with a list.
+     */
+    RequestReader newRequestReader (InputStream istr) throws IOException;
+
+    /**
+     * Begin writing a list of requests to the supplied stream: the server's side of report().
+     * @param ostr Stream to write to.  It will be flushed, but not closed, when the writer is closed.
+     * @return A writer that will write each request it is given as the next element of the list.
+     * @throws IOException If the stream can't be written.
+     */
+    RequestWriter newRequestWriter (OutputStream ostr) throws IOException;
+
+    /**
+     * Begin reading a list of responses from the supplied stream: the server's side of prepare().
+     * @param istr Stream to read from.  It will not be closed when the reader is closed.
+     * @return A reader positioned before the first response in the list.
+     * @throws IOException If the stream can't be read or doesn't begin with a list.
+     */
+    ResponseReader newResponseReader (InputStream istr) throws IOException;
+
+    /**
+     * Writes responses, one after another, as elements of a list.  Closing the writer ends the list.
+     */
+    interface ResponseWriter extends Closeable {
+
+        /**
+         * Write one response as the next element of the list.
+         * @param status Status code, such as 200 or 404.
+         * @param headers List of headers for the response.
+         * @param body Body of the response, not encoded in any way.
+         * @throws IOException If the response can't be written.
+         */
+        void writeResponse (int status, List<HeaderPair> headers, byte[] body) throws IOException;
+
+        /**
+         * Like writeResponse (int, List, byte[]), except that the body is written by the caller, as it is needed,
+         * instead of being handed over in one piece.  Formats that must know the length of a body before it starts
+         * may have to collect it first.
+         * @param status HTTP status code
+         * @param headers Headers, in order
+         * @param body Writes the body, not Base64-encoded
+         * @throws IOException If the response can't be written, or the body can't be.
+         */
+        void writeResponse (int status, List<HeaderPair> headers, BodyWriter body) throws IOException;
+
+        /**
+         * Like writeResponse (int, List, byte[]), except that the body is whatever lies between the buffer's
+         * position and its limit.  The buffer itself is left as it was, so it can be written again.
+         * @param status HTTP status code
+         * @param headers Headers, in order
+         * @param body Body, not Base64-encoded; may be a memory-mapped file
+         * @throws IOException If the response can't be written, or the body can't be read.
+         */
+        void writeResponse (int status, List<HeaderPair> headers, ByteBuffer body) throws IOException;
+    }
+
+    /**
+     * Reads requests, one after another, from a list.  Call nextRequest() to move to each request, and then
+     * readRequest() to decode it; after that, its parts are available from the getters.
+     */
+    interface RequestReader extends Closeable {
+
+        /**
+         * Move to the next request in the list, without decoding any of it.
+         * @return true if there is another request; false if the end of the list has been reached.
+         * @throws IOException If the stream can't be read or doesn't contain what it should.
+         */
+        boolean nextRequest () throws IOException;
+
+        /**
+         * Decode the request that nextRequest() moved to.
+         * @throws IOException If the stream can't be read or doesn't contain what it should.
+         */
+        void readRequest () throws IOException;
+
+        /**
+         * Pass over the request that nextRequest() moved to, without decoding any of it.  Call this instead of
+         * readRequest() when all you want is to count requests.
+         * @throws IOException If the stream can't be read or doesn't contain what it should.
+         */
+        void skipRequest () throws IOException;
+
+        /**
+         * Like readRequest(), except that the body is left in whatever form it takes on the wire--Base64 text, for
+         * JSON--and is available only from getEncodedBody(), not getBody().
+         * @throws IOException If the stream can't be read or doesn't contain what it should.
+         */
+        void readRequestLeavingBodyEncoded () throws IOException;
+
+        /**
+         * @return Still-encoded body of the request most recently read by readRequestLeavingBodyEncoded().
+         */
+        EncodedBody getEncodedBody ();
+
+        /**
+         * @return HTTP method of the request most recently decoded by readRequest().
+         */
+        String getMethod ();
+
+        /**
+         * @return URI of the request most recently decoded by readRequest().
+         */
+        String getUri ();
+
+        /**
+         * @return Headers of the request most recently decoded by readRequest().
+         */
+        List<HeaderPair> getHeaders ();
+
+        /**
+         * @return Body of the request most recently decoded by readRequest(); empty, not null, if it had none.
+         */
+        byte[] getBody ();
+    }
+
+    /**
+     * Something that can write a body to a stream.
+     */
+    interface BodyWriter {
+
+        /**
+         * @param ostr Stream to write the body to.  Don't close it.
+         * @throws IOException If the body can't be written.
+         */
+        void writeTo (OutputStream ostr) throws IOException;
+    }
+
+    /**
+     * A request body as it arrived, waiting to be decoded.  Instances hold nothing but the encoded data, so they can
+     * be kept after the reader that produced them has moved on or been closed.
+     */
+    interface EncodedBody {
+
+        /**
+         * A body that is empty.
+         */
+        EncodedBody EMPTY = () -> new byte[] {};
+
+        /**
+         * @return The decoded body; a new array each time.
+         * @throws IllegalArgumentException If the encoded body is malformed.
+         */
+        byte[] decode ();
+    }
+
+    /**
+     * Writes requests, one after another, as elements of a list.  Closing the writer ends the list.
+     */
+    interface RequestWriter extends Closeable {
+
+        /**
+         * Write one request as the next element of the list.
+         * @param method HTTP method, such as "GET" or "PUT".
+         * @param uri HTTP URI, beginning with a slash.
+         * @param headers List of headers for the request.
+         * @param body Body of the request, not encoded in any way.
+         * @throws IOException If the request can't be written.
+         */
+        void writeRequest (String method, String uri, List<HeaderPair> headers, byte[] body) throws IOException;
+    }
+
+    /**
+     * Reads responses, one after another, from a list.  Call nextResponse() to move to each response, and then
+     * readResponse() to decode it; after that, its parts are available from the getters.
+     */
+    interface ResponseReader extends Closeable {
+
+        /**
+         * Move to the next response in the list, without decoding any of it.
+         * @return true if there is another response; false if the end of the list has been reached.
+         * @throws IOException If the stream can't be read or doesn't contain what it should.
+         */
+        boolean nextResponse () throws IOException;
+
+        /**
+         * Decode the response that nextResponse() moved to.
+         * @throws IOException If the stream can't be read or doesn't contain what it should.
+         */
+        void readResponse () throws IOException;
+
+        /**
+         * @return Status code of the response most recently decoded by readResponse().
+         */
+        int getStatus ();
+
+        /**
+         * @return Headers of the response most recently decoded by readResponse().
+         */
+        List<HeaderPair> getHeaders ();
+
+        /**
+         * @return Body of the response most recently decoded by readResponse(); empty, not null, if it had none.
+         */
+        byte[] getBody ();
+    }
+}
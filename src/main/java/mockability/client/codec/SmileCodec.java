@@ -0,0 +1,18 @@
+package mockability.client.codec;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Smile, Jackson's binary equivalent of JSON.  Bodies go over the wire as raw bytes instead of Base64, which saves
+ * a quarter of their size and the cost of encoding and decoding them.  Use this only with Mockability servers that
+ * accept it; MockabilityClient falls back to JSON when a server refuses it.
+ */
+public class SmileCodec extends JacksonCodec {
+
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+
+    public SmileCodec () {
+        super (new SmileFactory ().disable (SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT), CONTENT_TYPE);
+    }
+}
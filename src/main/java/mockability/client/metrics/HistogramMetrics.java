@@ -0,0 +1,180 @@
+package mockability.client.metrics;
+
+import mockability.client.MockabilityMetrics;
+import mockability.client.MockabilityOperation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A MockabilityMetrics that keeps, for each kind of operation, latency histograms of the total time and of each of
+ * its parts, along with counts of operations, failures, bytes, and elements.  Nothing is ever locked, so it's cheap
+ * enough to leave switched on in a load test.
+ *
+ * <pre>
+ * HistogramMetrics metrics = new HistogramMetrics ();
+ * MockabilityOptions options = MockabilityOptions.builder ().metrics (metrics).build ();
+ * ...
+ * System.out.println (metrics.get (MockabilityOperation.Kind.REPORT).getNetwork ().getValueAtPercentile (99.0));
+ * </pre>
+ */
+public class HistogramMetrics implements MockabilityMetrics {
+
+    private final Map<MockabilityOperation.Kind, OperationStats> stats = new EnumMap<> (MockabilityOperation.Kind.class);
+
+    public HistogramMetrics () {
+        for (MockabilityOperation.Kind kind : MockabilityOperation.Kind.values ()) {
+            stats.put (kind, new OperationStats ());
+        }
+    }
+
+    @Override
+    public void operationCompleted (MockabilityOperation operation) {
+        stats.get (operation.getKind ()).record (operation);
+    }
+
+    /**
+     * @param kind Kind of operation
+     * @return Everything recorded so far about that kind of operation.
+     */
+    public OperationStats get (MockabilityOperation.Kind kind) {
+        return stats.get (kind);
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset () {
+        for (OperationStats each : stats.values ()) {
+            each.reset ();
+        }
+    }
+
+    @Override
+    public String toString () {
+        StringBuilder buf = new StringBuilder ();
+        for (Map.Entry<MockabilityOperation.Kind, OperationStats> entry : stats.entrySet ()) {
+            buf.append (entry.getKey ()).append (": ").append (entry.getValue ()).append ("\n");
+        }
+        return buf.toString ();
+    }
+
+    /**
+     * Histograms and counters for one kind of operation.
+     */
+    public static class OperationStats {
+        private final LatencyHistogram total = new LatencyHistogram ();
+        private final LatencyHistogram serialize = new LatencyHistogram ();
+        private final LatencyHistogram network = new LatencyHistogram ();
+        private final LatencyHistogram deserialize = new LatencyHistogram ();
+        private final LatencyHistogram conversion = new LatencyHistogram ();
+        private final LongAdder failures = new LongAdder ();
+        private final LongAdder bytesSent = new LongAdder ();
+        private final LongAdder bytesReceived = new LongAdder ();
+        private final LongAdder elements = new LongAdder ();
+
+        OperationStats () {}
+
+        void record (MockabilityOperation operation) {
+            total.record (operation.getTotalNanos ());
+            serialize.record (operation.getSerializeNanos ());
+            network.record (operation.getNetworkNanos ());
+            deserialize.record (operation.getDeserializeNanos ());
+            conversion.record (operation.getConversionNanos ());
+            if (operation.getFailure () != null) {failures.increment ();}
+            bytesSent.add (operation.getBytesSent ());
+            bytesReceived.add (operation.getBytesReceived ());
+            elements.add (operation.getElements ());
+        }
+
+        void reset () {
+            total.reset ();
+            serialize.reset ();
+            network.reset ();
+            deserialize.reset ();
+            conversion.reset ();
+            failures.reset ();
+            bytesSent.reset ();
+            bytesReceived.reset ();
+            elements.reset ();
+        }
+
+        /**
+         * @return Number of operations recorded, successful or not.
+         */
+        public long getCount () {
+            return total.getCount ();
+        }
+
+        /**
+         * @return Number of operations that failed.
+         */
+        public long getFailures () {
+            return failures.sum ();
+        }
+
+        /**
+         * @return Histogram of total time per operation.
+         */
+        public LatencyHistogram getTotal () {
+            return total;
+        }
+
+        /**
+         * @return Histogram of serialization time per operation.
+         */
+        public LatencyHistogram getSerialize () {
+            return serialize;
+        }
+
+        /**
+         * @return Histogram of network time per operation.
+         */
+        public LatencyHistogram getNetwork () {
+            return network;
+        }
+
+        /**
+         * @return Histogram of deserialization time per operation.
+         */
+        public LatencyHistogram getDeserialize () {
+            return deserialize;
+        }
+
+        /**
+         * @return Histogram of LibraryAdapter time per operation; part of serialization or deserialization.
+         */
+        public LatencyHistogram getConversion () {
+            return conversion;
+        }
+
+        /**
+         * @return Request-body bytes sent, across all operations.
+         */
+        public long getBytesSent () {
+            return bytesSent.sum ();
+        }
+
+        /**
+         * @return Response-body bytes received, across all operations.
+         */
+        public long getBytesReceived () {
+            return bytesReceived.sum ();
+        }
+
+        /**
+         * @return Responses prepared or requests reported, across all operations.
+         */
+        public long getElements () {
+            return elements.sum ();
+        }
+
+        @Override
+        public String toString () {
+            return getCount () + " operations, " + getFailures () + " failed, " + getBytesSent () + " bytes sent, " +
+                getBytesReceived () + " received, " + getElements () + " elements; total " + total + "; serialize " +
+                serialize + "; network " + network + "; deserialize " + deserialize + "; conversion " + conversion;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package mockability.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of nanosecond durations, bucketed the way HdrHistogram does it: each power of two is split
+ * into 32 equal sub-buckets, so any recorded value is reported to within about 3%, from one nanosecond up to
+ * Long.MAX_VALUE, in a fixed 15KB array.  Recording is a handful of arithmetic operations and one atomic increment,
+ * and never blocks; reading while others record gives an answer that may be slightly out of date but is never torn
+ * badly enough to matter for monitoring.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray (BUCKETS);
+    private final LongAdder count = new LongAdder ();
+    private final LongAdder sum = new LongAdder ();
+    private final AtomicLong max = new AtomicLong ();
+
+    /**
+     * @param nanos Duration to record; negative values are recorded as zero.
+     */
+    public void record (long nanos) {
+        long value = Math.max (0, nanos);
+        counts.incrementAndGet (indexOf (value));
+        count.increment ();
+        sum.add (value);
+        long previous = max.get ();
+        while ((value > previous) && !max.compareAndSet (previous, value)) {
+            previous = max.get ();
+        }
+    }
+
+    /**
+     * @return Number of values recorded.
+     */
+    public long getCount () {
+        return count.sum ();
+    }
+
+    /**
+     * @return Largest value recorded, exactly; zero if none.
+     */
+    public long getMax () {
+        return max.get ();
+    }
+
+    /**
+     * @return Arithmetic mean of the values recorded; zero if none.
+     */
+    public double getMean () {
+        long n = count.sum ();
+        return (n == 0) ? 0.0 : (double)sum.sum () / n;
+    }
+
+    /**
+     * @param percentile Percentile wanted, from 0.0 to 100.0: for example, 99.9.
+     * @return A value at least as large as the requested fraction of the recorded values, and no more than about
+     *          3% larger than the true percentile; zero if nothing has been recorded.
+     */
+    public long getValueAtPercentile (double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get (i);
+        }
+        if (total == 0) {return 0;}
+        long wanted = Math.max (1, (long)Math.ceil (total * Math.min (percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get (i);
+            if (seen >= wanted) {
+                return Math.min (highestEquivalentValue (i), getMax ());
+            }
+        }
+        return getMax ();
+    }
+
+    /**
+     * Forget everything recorded so far.  Values recorded while this is going on may or may not be forgotten.
+     */
+    public void reset () {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set (i, 0);
+        }
+        count.reset ();
+        sum.reset ();
+        max.set (0);
+    }
+
+    @Override
+    public String toString () {
+        return "count=" + getCount () + " mean=" + (long)getMean () + " p50=" + getValueAtPercentile (50.0) +
+            " p99=" + getValueAtPercentile (99.0) + " p99.9=" + getValueAtPercentile (99.9) + " max=" + getMax ();
+    }
+
+    // Values below 2 * SUB_BUCKETS get a bucket each; above that, the top SUB_BUCKET_BITS + 1 bits choose the bucket.
+    static int indexOf (long value) {
+        int shift = Math.max (0, 63 - Long.numberOfLeadingZeros (value) - SUB_BUCKET_BITS);
+        return (shift * SUB_BUCKETS) + (int)(value >>> shift);
+    }
+
+    static long lowestEquivalentValue (int index) {
+        if (index < 2 * SUB_BUCKETS) {return index;}
+        int shift = (index / SUB_BUCKETS) - 1;
+        return (long)((index % SUB_BUCKETS) + SUB_BUCKETS) << shift;
+    }
+
+    static long highestEquivalentValue (int index) {
+        return (index == BUCKETS - 1) ? Long.MAX_VALUE : lowestEquivalentValue (index + 1) - 1;
+    }
+}
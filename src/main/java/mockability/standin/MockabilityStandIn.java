@@ -0,0 +1,143 @@
+package mockability.standin;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import java.io.Closeable;
+
+/**
+ * An in-process, in-memory stand-in for the Mockability server, for tests and benchmarks that have to run without
+ * one.  It speaks the same protocol over HTTP (prepare, report, clear, and answering prepared-for requests, all
+ * keyed by client address, method, and URI), accepts and produces both JSON and Smile, gzip-compressed or not, and
+ * keeps counts of what it has done.
+ *
+ * <pre>
+ * try (MockabilityStandIn standIn = new MockabilityStandIn ().start ()) {
+ *     HttpClientMockabilityClient client = new HttpClientMockabilityClient (standIn.getBaseUrl ());
+ *     ...
+ * }
+ * </pre>
+ */
+public class MockabilityStandIn implements Closeable {
+
+    private final Server server;
+    private final StandInCounters counters = new StandInCounters ();
+
+    /**
+     * Create a stand-in that will listen on some free port, chosen when it starts.
+     */
+    public MockabilityStandIn () {
+        this (0);
+    }
+
+    /**
+     * @param port Port to listen on, or 0 for any free port.
+     */
+    public MockabilityStandIn (int port) {
+        server = new Server (port);
+        ServletContextHandler context = new ServletContextHandler ();
+        context.setContextPath ("/");
+        context.addServlet (new ServletHolder (new StandInServlet (new StandInStore (), counters)), "/*");
+        server.setHandler (context);
+    }
+
+    /**
+     * Start listening.
+     * @return this
+     */
+    public MockabilityStandIn start () {
+        try {
+            server.start ();
+            return this;
+        }
+        catch (Exception e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * Stop listening and forget everything.
+     */
+    @Override
+    public void close () {
+        try {
+            server.stop ();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * @return Port the stand-in is listening on; only meaningful once it has started.
+     */
+    public int getPort () {
+        return ((ServerConnector)server.getConnectors ()[0]).getLocalPort ();
+    }
+
+    /**
+     * @return Base URL to give to a MockabilityClient and to the system under test: for example,
+     *          "http://localhost:54321".
+     */
+    public String getBaseUrl () {
+        return "http://localhost:" + getPort ();
+    }
+
+    /**
+     * @return Total number of HTTP requests of every kind the stand-in has served.
+     */
+    public long getRequestsServed () {
+        return getPrepares () + getReports () + getClears () + getMockedRequests () + getUnpreparedRequests ();
+    }
+
+    /**
+     * @return Number of prepare requests received.  See getPreparedResponses() for the number of responses they held.
+     */
+    public long getPrepares () {
+        return counters.prepares.sum ();
+    }
+
+    /**
+     * @return Number of responses prepared, across all prepare requests.
+     */
+    public long getPreparedResponses () {
+        return counters.preparedResponses.sum ();
+    }
+
+    /**
+     * @return Number of report requests received.
+     */
+    public long getReports () {
+        return counters.reports.sum ();
+    }
+
+    /**
+     * @return Number of recorded requests sent back in reports.
+     */
+    public long getReportedRequests () {
+        return counters.reportedRequests.sum ();
+    }
+
+    /**
+     * @return Number of clear requests received, specific and nonspecific.
+     */
+    public long getClears () {
+        return counters.clears.sum ();
+    }
+
+    /**
+     * @return Number of requests answered with a prepared response.
+     */
+    public long getMockedRequests () {
+        return counters.mocked.sum ();
+    }
+
+    /**
+     * @return Number of requests answered with a 499 because nothing had been prepared for them.
+     */
+    public long getUnpreparedRequests () {
+        return counters.unprepared.sum ();
+    }
+}
@@ -0,0 +1,16 @@
+package mockability.standin;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals kept by the stand-in server.  Updated from every request thread, so each is a LongAdder.
+ */
+class StandInCounters {
+    final LongAdder prepares = new LongAdder ();
+    final LongAdder preparedResponses = new LongAdder ();
+    final LongAdder reports = new LongAdder ();
+    final LongAdder reportedRequests = new LongAdder ();
+    final LongAdder clears = new LongAdder ();
+    final LongAdder mocked = new LongAdder ();
+    final LongAdder unprepared = new LongAdder ();
+}
@@ -0,0 +1,259 @@
+package mockability.standin;
+
+import mockability.client.adapters.Headers;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.client.codec.JsonCodec;
+import mockability.client.codec.MockabilityCodec;
+import mockability.client.codec.SmileCodec;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Speaks the Mockability protocol: /mockability/{method}/{uri} to prepare (POST), report (GET), or clear (DELETE),
+ * /mockability to clear everything, and anything else to be answered from what was prepared.
+ */
+class StandInServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+    static final int UNPREPARED = 499;
+    static final String OFFSET_HEADER = "X-Mockability-Offset";
+    private static final String PREFIX = "/mockability";
+    private static final String GZIP = "gzip";
+    private static final MockabilityCodec JSON = new JsonCodec ();
+    private static final MockabilityCodec SMILE = new SmileCodec ();
+
+    // The servlet lives only inside its own embedded Jetty, so its state is never serialized.
+    private final transient StandInStore store;
+    private final transient StandInCounters counters;
+
+    StandInServlet (StandInStore store, StandInCounters counters) {
+        this.store = store;
+        this.counters = counters;
+    }
+
+    @Override
+    protected void service (HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getRequestURI ();
+        if (path.equals (PREFIX)) {
+            if ("DELETE".equals (request.getMethod ())) {
+                counters.clears.increment ();
+                store.clear (request.getRemoteAddr ());
+                sendText (response, 200, "Cleared everything for " + request.getRemoteAddr ());
+            }
+            else {
+                sendText (response, 405, "Only DELETE is allowed on " + PREFIX);
+            }
+        }
+        else if (path.startsWith (PREFIX + "/")) {
+            serveMockability (request, response, path.substring (PREFIX.length () + 1));
+        }
+        else {
+            serveMocked (request, response);
+        }
+    }
+
+    private void serveMockability (HttpServletRequest request, HttpServletResponse response, String rest)
+            throws IOException {
+        int slash = rest.indexOf ('/');
+        String method = (slash < 0) ? rest : rest.substring (0, slash);
+        String uri = withQuery ((slash < 0) ? "/" : rest.substring (slash), request);
+        String address = request.getRemoteAddr ();
+        switch (request.getMethod ()) {
+            case "POST": prepare (request, response, address, method, uri); break;
+            case "GET": report (request, response, address, method, uri); break;
+            case "DELETE":
+                counters.clears.increment ();
+                store.clear (address, method, uri);
+                sendText (response, 200, "Cleared " + method + " '" + uri + "'");
+                break;
+            default: sendText (response, 405, "Only POST, GET, and DELETE are allowed on " + PREFIX + "/...");
+        }
+    }
+
+    private void prepare (HttpServletRequest request, HttpServletResponse response, String address, String method,
+                          String uri) throws IOException {
+        counters.prepares.increment ();
+        MockabilityCodec codec = codecFor (request.getContentType ());
+        if (codec == null) {
+            sendText (response, 415, "Prepared responses must be " + JSON.getContentType () + " or " +
+                SMILE.getContentType ());
+            return;
+        }
+        List<SimpleResponse> responses = new ArrayList<> ();
+        try (MockabilityCodec.ResponseReader reader = codec.newResponseReader (contentOf (request))) {
+            while (reader.nextResponse ()) {
+                reader.readResponse ();
+                responses.add (new SimpleResponse (reader.getStatus (), reader.getHeaders (), reader.getBody ()));
+            }
+        }
+        catch (IOException e) {
+            sendText (response, 400, "Couldn't understand prepared responses: " + e.getMessage ());
+            return;
+        }
+        // Jetty closes a connection whose request wasn't read to the end, so don't leave the last chunk behind
+        drain (request.getInputStream ());
+        store.prepare (address, method, uri, responses);
+        counters.preparedResponses.add (responses.size ());
+        sendText (response, 200, "Prepared " + responses.size () + " response(s) for " + method + " '" + uri + "'");
+    }
+
+    private void report (HttpServletRequest request, HttpServletResponse response, String address, String method,
+                         String uri) throws IOException {
+        counters.reports.increment ();
+        List<SimpleRequest> requests = store.report (address, method, uri);
+        if (requests == null) {
+            sendText (response, UNPREPARED, "\nReport was demanded for:\n" + address + ": " + method + " '" + uri +
+                "'\n\nReports are prepared only for:\n" + describe (store.describePrepared (address), "reports"));
+            return;
+        }
+        Integer offset = offsetOf (request);
+        if (offset != null) {
+            requests = requests.subList (Math.min (offset, requests.size ()), requests.size ());
+            response.setHeader (OFFSET_HEADER, offset.toString ());
+        }
+        MockabilityCodec codec = accepts (request, SMILE.getContentType ()) ? SMILE : JSON;
+        response.setStatus (200);
+        response.setContentType (codec.getContentType ());
+        OutputStream ostr = response.getOutputStream ();
+        if (acceptsGzip (request)) {
+            response.setHeader ("Content-Encoding", GZIP);
+            ostr = new GZIPOutputStream (ostr, 8192);
+        }
+        // Counted before the report is written, since a client may check the counters as soon as it has the report
+        counters.reportedRequests.add (requests.size ());
+        try (OutputStream body = ostr;
+             MockabilityCodec.RequestWriter writer = codec.newRequestWriter (body)) {
+            for (SimpleRequest reported : requests) {
+                writer.writeRequest (reported.getMethod (), reported.getUri (), reported.getHeaders (), reported.getBody ());
+            }
+        }
+    }
+
+    private void serveMocked (HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String address = request.getRemoteAddr ();
+        SimpleRequest received = new SimpleRequest (request.getMethod (), withQuery (request.getRequestURI (), request),
+            headersOf (request), readAll (request.getInputStream ()));
+        SimpleResponse prepared = store.respond (address, received);
+        if (prepared == null) {
+            counters.unprepared.increment ();
+            sendText (response, UNPREPARED, "\nRequest was received for:\n" + address + ": " + received.getMethod () +
+                " '" + received.getUri () + "'\n\nResponses are prepared only for:\n" +
+                describe (store.describePrepared (address), "responses"));
+            return;
+        }
+        counters.mocked.increment ();
+        response.setStatus (prepared.getStatus ());
+        for (HeaderPair header : prepared.getHeaders ()) {
+            if (!"Content-Length".equalsIgnoreCase (header.name ()) &&
+                    !"Transfer-Encoding".equalsIgnoreCase (header.name ())) {
+                response.addHeader (header.name (), header.value ());
+            }
+        }
+        response.setContentLength (prepared.getBody ().length);
+        response.getOutputStream ().write (prepared.getBody ());
+    }
+
+    private static MockabilityCodec codecFor (String contentType) {
+        if ((contentType == null) || contentType.startsWith (JSON.getContentType ())) {return JSON;}
+        if (contentType.startsWith (SMILE.getContentType ())) {return SMILE;}
+        return null;
+    }
+
+    private static boolean accepts (HttpServletRequest request, String contentType) {
+        String accept = request.getHeader ("Accept");
+        return (accept != null) && accept.contains (contentType);
+    }
+
+    private static boolean acceptsGzip (HttpServletRequest request) {
+        String acceptEncoding = request.getHeader ("Accept-Encoding");
+        return (acceptEncoding != null) && acceptEncoding.contains (GZIP);
+    }
+
+    // A compressed body is decompressed as it's parsed.
+    private static InputStream contentOf (HttpServletRequest request) throws IOException {
+        String encoding = request.getHeader ("Content-Encoding");
+        if ((encoding != null) && GZIP.equalsIgnoreCase (encoding.trim ())) {
+            return new GZIPInputStream (request.getInputStream (), 8192);
+        }
+        return request.getInputStream ();
+    }
+
+    // An unreadable offset is ignored, and not echoed, so the client skips for itself.
+    private static Integer offsetOf (HttpServletRequest request) {
+        String header = request.getHeader (OFFSET_HEADER);
+        if (header == null) {return null;}
+        try {
+            int offset = Integer.parseInt (header.trim ());
+            return (offset < 0) ? null : offset;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String withQuery (String uri, HttpServletRequest request) {
+        String query = request.getQueryString ();
+        return (query == null) ? uri : uri + "?" + query;
+    }
+
+    private static List<HeaderPair> headersOf (HttpServletRequest request) {
+        Headers.Builder headers = Headers.builder ();
+        for (String name : Collections.list (request.getHeaderNames ())) {
+            Enumeration<String> values = request.getHeaders (name);
+            while (values.hasMoreElements ()) {
+                headers.add (name, values.nextElement ());
+            }
+        }
+        return headers.build ();
+    }
+
+    private static String describe (Set<String> prepared, String what) {
+        if (prepared.isEmpty ()) {
+            return "No " + what + " were prepared.\n";
+        }
+        StringBuilder buf = new StringBuilder ();
+        for (String description : prepared) {
+            buf.append (description).append ("\n");
+        }
+        return buf.toString ();
+    }
+
+    private static void drain (InputStream istr) throws IOException {
+        byte[] buf = new byte[256];
+        while (istr.read (buf) >= 0) {}
+    }
+
+    private static byte[] readAll (InputStream istr) throws IOException {
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+        byte[] buf = new byte[8192];
+        while (true) {
+            int len = istr.read (buf);
+            if (len < 0) {break;}
+            ostr.write (buf, 0, len);
+        }
+        return ostr.toByteArray ();
+    }
+
+    private static void sendText (HttpServletResponse response, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes ("UTF-8");
+        response.setStatus (status);
+        response.setContentType ("text/plain; charset=UTF-8");
+        response.setContentLength (bytes.length);
+        response.getOutputStream ().write (bytes);
+    }
+}
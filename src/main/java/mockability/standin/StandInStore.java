@@ -0,0 +1,132 @@
+package mockability.standin;
+
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Everything the stand-in server remembers: for each client address, method, and URI that has been prepared, the
+ * responses still waiting to be sent and the requests received so far.  Operations on different keys never block
+ * one another; operations on the same key happen one at a time, in a single order that every client sees.
+ */
+class StandInStore {
+
+    private final ConcurrentMap<Key, Exchange> exchanges = new ConcurrentHashMap<> ();
+
+    void prepare (String address, String method, String uri, Collection<SimpleResponse> responses) {
+        Key key = new Key (address, method, uri);
+        while (true) {
+            Exchange exchange = exchanges.computeIfAbsent (key, k -> new Exchange ());
+            synchronized (exchange) {
+                if (!exchange.removed) {
+                    exchange.responses.addAll (responses);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The requests recorded for the key, or null if it has not been prepared.
+     */
+    List<SimpleRequest> report (String address, String method, String uri) {
+        Exchange exchange = exchanges.get (new Key (address, method, uri));
+        if (exchange == null) {return null;}
+        synchronized (exchange) {
+            return exchange.removed ? null : new ArrayList<> (exchange.requests);
+        }
+    }
+
+    /**
+     * Records the request and takes the next prepared response for it.
+     * @return The response, or null if none is waiting.
+     */
+    SimpleResponse respond (String address, SimpleRequest request) {
+        Exchange exchange = exchanges.get (new Key (address, request.getMethod (), request.getUri ()));
+        if (exchange == null) {return null;}
+        synchronized (exchange) {
+            if (exchange.removed) {return null;}
+            exchange.requests.add (request);
+            return exchange.responses.pollFirst ();
+        }
+    }
+
+    void clear (String address, String method, String uri) {
+        remove (new Key (address, method, uri));
+    }
+
+    void clear (String address) {
+        for (Key key : exchanges.keySet ()) {
+            if (key.address.equals (address)) {
+                remove (key);
+            }
+        }
+    }
+
+    /**
+     * @return Descriptions, in the form "address: METHOD 'uri'", of everything that's been prepared for the address.
+     */
+    Set<String> describePrepared (String address) {
+        Set<String> descriptions = new TreeSet<> ();
+        for (Map.Entry<Key, Exchange> entry : exchanges.entrySet ()) {
+            if (entry.getKey ().address.equals (address)) {
+                descriptions.add (entry.getKey ().toString ());
+            }
+        }
+        return descriptions;
+    }
+
+    private void remove (Key key) {
+        Exchange exchange = exchanges.remove (key);
+        if (exchange != null) {
+            synchronized (exchange) {
+                exchange.removed = true;
+            }
+        }
+    }
+
+    private static class Exchange {
+        private final Deque<SimpleResponse> responses = new ArrayDeque<> ();
+        private final List<SimpleRequest> requests = new ArrayList<> ();
+        private boolean removed = false;
+    }
+
+    static class Key {
+        private final String address;
+        private final String method;
+        private final String uri;
+
+        Key (String address, String method, String uri) {
+            this.address = address;
+            this.method = method;
+            this.uri = uri;
+        }
+
+        @Override
+        public boolean equals (Object o) {
+            if (!(o instanceof Key)) {return false;}
+            Key that = (Key)o;
+            return address.equals (that.address) && method.equals (that.method) && uri.equals (that.uri);
+        }
+
+        @Override
+        public int hashCode () {
+            return (address.hashCode () * 31 + method.hashCode ()) * 31 + uri.hashCode ();
+        }
+
+        @Override
+        public String toString () {
+            return address + ": " + method + " '" + uri + "'";
+        }
+    }
+}
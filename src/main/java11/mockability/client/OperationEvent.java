@@ -0,0 +1,98 @@
+package mockability.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event for one Mockability operation: "mockability.Operation" in the Mockability category.  It
+ * is enabled with no threshold by default; raise the threshold in your .jfc file (mockability.Operation#threshold)
+ * to record only the slow ones.  When no recording is running, or the event is below its threshold, nothing but
+ * the begin and end timestamps is ever computed.
+ */
+@Name ("mockability.Operation")
+@Label ("Mockability Operation")
+@Category ("Mockability")
+@Description ("A clear, prepare, or report sent to a Mockability server")
+@StackTrace (false)
+@Threshold ("0 ms")
+class OperationEvent extends Event {
+
+    @Label ("Kind")
+    String kind;
+
+    @Label ("Method")
+    String method;
+
+    @Label ("URI")
+    String uri;
+
+    @Label ("Asynchronous")
+    boolean async;
+
+    @Label ("Status")
+    int status;
+
+    @Label ("Bytes Sent")
+    @DataAmount
+    long bytesSent;
+
+    @Label ("Bytes Received")
+    @DataAmount
+    long bytesReceived;
+
+    @Label ("Elements")
+    @Description ("Responses prepared or requests reported")
+    int elements;
+
+    @Label ("Serialize Time")
+    @Timespan
+    long serializeTime;
+
+    @Label ("Network Time")
+    @Timespan
+    long networkTime;
+
+    @Label ("Deserialize Time")
+    @Timespan
+    long deserializeTime;
+
+    @Label ("Conversion Time")
+    @Description ("Time spent in the LibraryAdapter; part of serialize or deserialize time")
+    @Timespan
+    long conversionTime;
+
+    @Label ("Failure")
+    String failure;
+
+    static OperationEvent start () {
+        OperationEvent event = new OperationEvent ();
+        event.begin ();
+        return event;
+    }
+
+    void finish (MockabilityOperation operation) {
+        end ();
+        if (!shouldCommit ()) {return;}
+        kind = operation.getKind ().name ();
+        method = operation.getMethod ();
+        uri = operation.getUri ();
+        async = operation.isAsync ();
+        status = operation.getStatus ();
+        bytesSent = operation.getBytesSent ();
+        bytesReceived = operation.getBytesReceived ();
+        elements = operation.getElements ();
+        serializeTime = operation.getSerializeNanos ();
+        networkTime = operation.getNetworkNanos ();
+        deserializeTime = operation.getDeserializeNanos ();
+        conversionTime = operation.getConversionNanos ();
+        failure = (operation.getFailure () == null) ? null : operation.getFailure ().toString ();
+        commit ();
+    }
+}
@@ -0,0 +1,16 @@
+package mockability.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Supplies the threads MockabilityBulk runs its operations on: one virtual thread per operation, since every
+ * operation spends nearly all its time waiting on the network.  MockabilityBulk enforces the concurrency cap itself.
+ * Java 8 through 20 load the version in src/main/java instead.
+ */
+class BulkThreads {
+
+    static ExecutorService newExecutor (int maxConcurrency) {
+        return Executors.newThreadPerTaskExecutor (Thread.ofVirtual ().name ("Mockability bulk ", 1).factory ());
+    }
+}
@@ -0,0 +1,166 @@
+package mockability.client;
+
+import mockability.client.MockabilityBulk.Key;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter;
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.standin.MockabilityStandIn;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MockabilityBulkTest {
+
+    @Test
+    public void preparesReportsAndClearsManyKeysAgainstAServer () throws Exception {
+        try (MockabilityStandIn standIn = new MockabilityStandIn ().start ();
+             MockabilityOptions options = MockabilityOptions.builder ().build ();
+             CloseableHttpClient systemUnderTest = HttpClientBuilder.create ().build ()) {
+            MockabilityBulk<SimpleRequest, SimpleResponse> subject = new MockabilityBulk<> (
+                new MockabilityClient<> (new SimpleAdapter (), standIn.getBaseUrl (), options), 5);
+            Map<Key, SimpleResponse> preparations = new LinkedHashMap<> ();
+            for (int i = 0; i < 50; i++) {
+                preparations.put (Key.of ("GET", "/item/" + i),
+                    new SimpleResponse (200, Collections.<HeaderPair>emptyList (), ("item " + i).getBytes ()));
+            }
+
+            Map<Key, String> prepared = subject.prepare (preparations);
+            for (int i = 0; i < 50; i += 7) {
+                assertEquals ("item " + i, EntityUtils.toString (
+                    systemUnderTest.execute (new HttpGet (standIn.getBaseUrl () + "/item/" + i)).getEntity ()));
+            }
+            Map<Key, List<SimpleRequest>> reported = subject.report (preparations.keySet ());
+            Map<Key, String> cleared = subject.clear (preparations.keySet ());
+
+            assertEquals (new ArrayList<> (preparations.keySet ()), new ArrayList<> (prepared.keySet ()));
+            assertEquals (new ArrayList<> (preparations.keySet ()), new ArrayList<> (reported.keySet ()));
+            assertEquals (1, reported.get (Key.of ("GET", "/item/7")).size ());
+            assertEquals (0, reported.get (Key.of ("GET", "/item/8")).size ());
+            assertEquals (50, cleared.size ());
+            assertEquals (50, standIn.getPrepares ());
+            assertEquals (50, standIn.getClears ());
+            assertEquals (0, options.getPoolStats ().getLeased ());
+        }
+    }
+
+    @Test
+    public void neverRunsMoreThanTheCapAtOnce () {
+        MockabilityClient<String, String> client = mock (MockabilityClient.class);
+        AtomicInteger running = new AtomicInteger ();
+        AtomicInteger mostRunning = new AtomicInteger ();
+        when (client.clear (anyString (), anyString ())).thenAnswer (invocation -> {
+            mostRunning.accumulateAndGet (running.incrementAndGet (), Math::max);
+            Thread.sleep (5);
+            running.decrementAndGet ();
+            return "cleared";
+        });
+        List<Key> keys = new ArrayList<> ();
+        for (int i = 0; i < 40; i++) {keys.add (Key.of ("DELETE", "/" + i));}
+
+        Map<Key, String> result = new MockabilityBulk<> (client, 3).clear (keys);
+
+        assertEquals (40, result.size ());
+        assertTrue (mostRunning.get () <= 3);
+        assertTrue (mostRunning.get () > 1);
+    }
+
+    // The jar gives Java 21 and later the BulkThreads in src/main/java21; testJava21 runs this against it.
+    @Test
+    public void runsOperationsOnVirtualThreadsFromJava21AndPlatformThreadsBefore () throws Exception {
+        MockabilityClient<String, String> client = mock (MockabilityClient.class);
+        List<Thread> threads = Collections.synchronizedList (new ArrayList<> ());
+        when (client.clear (anyString (), anyString ())).thenAnswer (invocation -> {
+            threads.add (Thread.currentThread ());
+            return "cleared";
+        });
+
+        new MockabilityBulk<> (client, 2).clear (Arrays.asList (Key.of ("GET", "/one"), Key.of ("GET", "/two")));
+
+        assertEquals (2, threads.size ());
+        String version = System.getProperty ("java.specification.version");
+        boolean virtualExpected = !version.startsWith ("1.") && (Integer.parseInt (version) >= 21);
+        for (Thread thread : threads) {
+            assertTrue (thread.getName (), thread.getName ().startsWith ("Mockability bulk "));
+            if (virtualExpected) {
+                assertTrue ((Boolean)Thread.class.getMethod ("isVirtual").invoke (thread));
+            }
+            else {
+                assertTrue (thread.isDaemon ());
+            }
+        }
+    }
+
+    @Test
+    public void reportsEveryFailureTogetherAfterRunningEverything () {
+        MockabilityClient<String, String> client = mock (MockabilityClient.class);
+        AtomicInteger calls = new AtomicInteger ();
+        when (client.clear (anyString (), anyString ())).thenAnswer (invocation -> {
+            calls.incrementAndGet ();
+            String uri = (String)invocation.getArguments ()[1];
+            if (uri.endsWith ("bad")) {
+                throw new IllegalStateException ("Couldn't clear " + uri);
+            }
+            return "cleared " + uri;
+        });
+
+        try {
+            new MockabilityBulk<> (client).clear (Arrays.asList (Key.of ("GET", "/good"), Key.of ("GET", "/bad"),
+                Key.of ("GET", "/good"), Key.of ("POST", "/also/bad"), Key.of ("PUT", "/fine")));
+            fail ();
+        }
+        catch (MockabilityBulkException e) {
+            assertEquals (4, calls.get ());
+            assertEquals ("2 of 4 operations failed; first, GET '/bad': Couldn't clear /bad", e.getMessage ());
+            assertEquals (Arrays.asList (Key.of ("GET", "/bad"), Key.of ("POST", "/also/bad")),
+                new ArrayList<> (e.getFailures ().keySet ()));
+            assertEquals ("cleared /fine", e.getResults ().get (Key.of ("PUT", "/fine")));
+            assertEquals (2, e.getSuppressed ().length);
+        }
+    }
+
+    @Test
+    public void survivesSerializationWithoutItsMaps () throws Exception {
+        Map<Key, Throwable> failures = new LinkedHashMap<> ();
+        failures.put (Key.of ("GET", "/bad"), new IllegalStateException ("Couldn't clear /bad"));
+        MockabilityBulkException original = new MockabilityBulkException (
+            Collections.singletonMap (Key.of ("PUT", "/fine"), new Object ()), failures);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+        try (ObjectOutputStream ostr = new ObjectOutputStream (bytes)) {
+            ostr.writeObject (original);
+        }
+
+        MockabilityBulkException result;
+        try (ObjectInputStream istr = new ObjectInputStream (new ByteArrayInputStream (bytes.toByteArray ()))) {
+            result = (MockabilityBulkException)istr.readObject ();
+        }
+
+        assertEquals (original.getMessage (), result.getMessage ());
+        assertEquals ("Couldn't clear /bad", result.getSuppressed ()[0].getMessage ());
+        assertTrue (result.getFailures ().isEmpty ());
+        assertTrue (result.getResults ().isEmpty ());
+        assertFalse (original.getResults ().isEmpty ());
+    }
+}
@@ -0,0 +1,230 @@
+package mockability.client;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter;
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.standin.MockabilityStandIn;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Many threads sharing one MockabilityClient against a stand-in server.
+ */
+public class MockabilityClientConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 25;
+
+    private MockabilityStandIn standIn;
+    private MockabilityOptions options;
+    private MockabilityClient<SimpleRequest, SimpleResponse> subject;
+    private CloseableHttpClient systemUnderTest;
+    private ExecutorService executor;
+
+    @Before
+    public void setup () {
+        standIn = new MockabilityStandIn ().start ();
+        options = MockabilityOptions.builder ().maxPerRoute (THREADS).ioThreads (2).build ();
+        subject = new MockabilityClient<> (new SimpleAdapter (), standIn.getBaseUrl (), options);
+        systemUnderTest = HttpClientBuilder.create ().setMaxConnPerRoute (THREADS).setMaxConnTotal (THREADS).build ();
+        executor = Executors.newFixedThreadPool (THREADS);
+    }
+
+    @After
+    public void teardown () throws Exception {
+        executor.shutdownNow ();
+        systemUnderTest.close ();
+        options.close ();
+        standIn.close ();
+    }
+
+    @Test
+    public void eachKeySeesItsPreparationsAndRequestsInOrder () throws Exception {
+        runOnEveryThread (worker -> {
+            String uri = "/worker/" + worker;
+            for (int i = 0; i < ITERATIONS; i++) {
+                if ((i % 2) == 0) {
+                    subject.prepare ("POST", uri, response ("response " + i));
+                }
+                else {
+                    subject.prepareAsync ("POST", uri, response ("response " + i)).get ();
+                }
+
+                assertEquals ("response " + i, send (uri, "request " + i));
+
+                List<SimpleRequest> reported = ((i % 5) == 4)
+                    ? subject.reportAsync ("POST", uri).get () : subject.report ("POST", uri);
+                assertEquals (i + 1, reported.size ());
+                for (int j = 0; j <= i; j++) {
+                    assertEquals ("request " + j, new String (reported.get (j).getBody ()));
+                }
+            }
+            return null;
+        });
+
+        assertEquals (THREADS * ITERATIONS, standIn.getMockedRequests ());
+        assertEquals (0, standIn.getUnpreparedRequests ());
+        assertNothingLeaked ();
+    }
+
+    @Test
+    public void contendingThreadsOnOneKeyEachGetOneOfThePreparedResponses () throws Exception {
+        List<List<String>> served = runOnEveryThread (worker -> {
+            List<String> bodies = new ArrayList<> ();
+            for (int i = 0; i < ITERATIONS; i++) {
+                subject.prepare ("POST", "/shared", response (worker + "/" + i));
+                bodies.add (send ("/shared", worker + "/" + i));
+            }
+            return bodies;
+        });
+
+        Set<String> responses = new HashSet<> ();
+        for (List<String> bodies : served) {
+            responses.addAll (bodies);
+        }
+        assertEquals (THREADS * ITERATIONS, responses.size ());
+        List<SimpleRequest> reported = subject.report ("POST", "/shared");
+        assertEquals (THREADS * ITERATIONS, reported.size ());
+        Set<String> requests = new HashSet<> ();
+        for (SimpleRequest request : reported) {
+            requests.add (new String (request.getBody ()));
+        }
+        assertEquals (responses, requests);
+        assertEquals (0, standIn.getUnpreparedRequests ());
+        assertNothingLeaked ();
+    }
+
+    @Test
+    public void streamsClosedOnManyThreadsReturnTheirConnections () throws Exception {
+        subject.prepare ("POST", "/streamed", response ("only"));
+        send ("/streamed", "only");
+
+        runOnEveryThread (worker -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                subject.reportStream ("POST", "/streamed").close ();
+                subject.reportView ("POST", "/streamed").get (0).getBody ();
+            }
+            return null;
+        });
+
+        assertNothingLeaked ();
+    }
+
+    @Test
+    public void publishersCancelledPartwayThroughBigReportsReturnTheirConnections () throws Exception {
+        String padding = new String (new char[4096]).replace ('\0', 'x');
+        List<SimpleResponse> responses = new ArrayList<> ();
+        for (int i = 0; i < 100; i++) {responses.add (response ("response " + i));}
+        subject.prepareAll ("POST", "/published", responses);
+        for (int i = 0; i < 100; i++) {send ("/published", "request " + i + " " + padding);}
+
+        List<Integer> counts = runOnEveryThread (worker -> {
+            boolean cancelling = (worker % 2) == 0;
+            BlockingQueue<Object> signals = new LinkedBlockingQueue<> ();
+            subject.reportPublisher ("POST", "/published").subscribe (new Subscriber<SimpleRequest> () {
+                @Override public void onSubscribe (Subscription subscription) {signals.add (subscription);}
+                @Override public void onNext (SimpleRequest request) {signals.add (request);}
+                @Override public void onError (Throwable error) {signals.add (error);}
+                @Override public void onComplete () {signals.add ("complete");}
+            });
+            Subscription subscription = (Subscription)signals.take ();
+            int count = 0;
+            for (int i = 0; i < 100; i++) {
+                subscription.request (1);
+                Object signal = signals.poll (10, TimeUnit.SECONDS);
+                assertEquals ("request " + i + " " + padding, new String (((SimpleRequest)signal).getBody ()));
+                count++;
+                if (cancelling && (i == 2)) {
+                    subscription.cancel ();
+                    return count;
+                }
+            }
+            subscription.request (1);
+            assertEquals ("complete", signals.poll (10, TimeUnit.SECONDS));
+            return count;
+        });
+
+        for (int i = 0; i < THREADS; i++) {
+            assertEquals ((i % 2) == 0 ? 3 : 100, (int)counts.get (i));
+        }
+        awaitNothingLeaked ();
+        assertEquals (100, subject.report ("POST", "/published").size ());
+    }
+
+    private interface Work<T> {
+        T run (int worker) throws Exception;
+    }
+
+    // All the threads start together, to give them the best chance of getting in each other's way.
+    private <T> List<T> runOnEveryThread (Work<T> work) throws Exception {
+        CountDownLatch start = new CountDownLatch (1);
+        List<Future<T>> futures = new ArrayList<> ();
+        for (int i = 0; i < THREADS; i++) {
+            int worker = i;
+            futures.add (executor.submit ((Callable<T>)() -> {
+                start.await ();
+                return work.run (worker);
+            }));
+        }
+        start.countDown ();
+        List<T> results = new ArrayList<> ();
+        for (Future<T> future : futures) {
+            results.add (future.get (60, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    // A connection shut down partway through a report goes back to the pool on an I/O thread, a moment later.
+    private void awaitNothingLeaked () throws Exception {
+        long deadline = System.currentTimeMillis () + 10000;
+        while ((options.getAsyncPoolStats ().getLeased () > 0) && (System.currentTimeMillis () < deadline)) {
+            Thread.sleep (10);
+        }
+        assertNothingLeaked ();
+    }
+
+    private void assertNothingLeaked () {
+        assertEquals (0, options.getPoolStats ().getLeased ());
+        assertEquals (0, options.getPoolStats ().getPending ());
+        assertEquals (0, options.getAsyncPoolStats ().getLeased ());
+        assertEquals (0, options.getAsyncPoolStats ().getPending ());
+    }
+
+    private String send (String uri, String body) throws Exception {
+        HttpPost request = new HttpPost (standIn.getBaseUrl () + uri);
+        request.setEntity (new ByteArrayEntity (body.getBytes ()));
+        HttpResponse response = systemUnderTest.execute (request);
+        assertEquals (200, response.getStatusLine ().getStatusCode ());
+        return EntityUtils.toString (response.getEntity ());
+    }
+
+    private static SimpleResponse response (String body) {
+        return new SimpleResponse (200, Collections.<HeaderPair>emptyList (), body.getBytes ());
+    }
+}
@@ -4,30 +4,70 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import mockability.client.adapters.LibraryAdapter;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter;
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.client.codec.JsonCodec;
+import mockability.client.codec.SmileCodec;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by dnwiebe on 7/19/15.
@@ -37,6 +77,7 @@ public class MockabilityClientTest {
     private MockabilityClient<String, String> subject;
     private LibraryAdapter<String, String> adapter;
     private HttpClient client;
+    private List<Runnable> handedOff = new ArrayList<> ();
 
     private static final Base64 CODEC = new Base64 ();
 
@@ -131,8 +172,7 @@ public class MockabilityClientTest {
     public void setup () {
         adapter = new TestAdapter ();
         client = mock (HttpClient.class);
-        subject = new MockabilityClient (adapter, "http://baseUrl:1234");
-        subject.client = client;
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, null);
     }
 
     @Test
@@ -229,6 +269,295 @@ public class MockabilityClientTest {
         assertEquals ("prepared", resultText);
     }
 
+    @Test
+    public void shouldStreamLargeBodyIntoPrepareRequest () throws Exception {
+        HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        postResponse.setEntity(new StringEntity("prepared"));
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenReturn (postResponse);
+        StringBuilder body = new StringBuilder ();
+        while (body.length () < 100000) {body.append ("All work and no play makes Jack a dull boy. ");}
+
+        subject.prepare("GLOMPETY", "/wiggle", "200|gurble=flop|" + body);
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client).execute (any (HttpHost.class), requestCaptor.capture ());
+        HttpPost request = (HttpPost)requestCaptor.getValue();
+        assertEquals (true, request.getEntity ().isChunked ());
+        assertEquals (-1L, request.getEntity ().getContentLength ());
+        ByteArrayOutputStream written = new ByteArrayOutputStream ();
+        request.getEntity ().writeTo (written);
+        ArrayNode list = (ArrayNode)new ObjectMapper ().readTree (written.toByteArray ());
+        assertEquals (CODEC.encodeAsString (body.toString ().getBytes ()), list.get (0).get ("body").asText ());
+    }
+
+    @Test
+    public void shouldStreamFileContentsIntoPrepareRequest () throws Exception {
+        HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        postResponse.setEntity(new StringEntity("prepared"));
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenReturn (postResponse);
+        byte[] contents = new byte[70000];
+        for (int i = 0; i < contents.length; i++) {contents[i] = (byte)(i * 7);}
+        Path file = Files.createTempFile ("mockability", ".bin");
+        try {
+            Files.write (file, contents);
+
+            String resultText = subject.prepareFromFile ("GET", "/picture.png", 200,
+                Arrays.asList (new LibraryAdapter.HeaderPair ("Content-Type", "image/png")), file);
+
+            ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+            verify (client).execute (any (HttpHost.class), requestCaptor.capture ());
+            HttpPost request = (HttpPost)requestCaptor.getValue();
+            assertEquals ("/mockability/GET/picture.png", request.getRequestLine().getUri());
+            assertEquals (true, request.getEntity ().isChunked ());
+            ObjectNode root = (ObjectNode)new ObjectMapper ().readTree (request.getEntity ().getContent ()).get (0);
+            assertEquals (200, root.get ("status").asInt ());
+            assertEquals ("image/png", root.get ("headers").get (0).get ("value").asText ());
+            assertEquals (CODEC.encodeAsString (contents), root.get ("body").asText ());
+            assertEquals ("prepared", resultText);
+        }
+        finally {
+            Files.delete (file);
+        }
+    }
+
+    @Test
+    public void shouldSendPreparedResponseAsItIs () throws Exception {
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenAnswer (invocation -> {
+            HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+            postResponse.setEntity(new StringEntity("prepared"));
+            return postResponse;
+        });
+        PreparedResponse prepared = subject.toPreparedResponse ("401|gurble=flop|go away");
+
+        assertEquals ("prepared", subject.prepare ("GET", "/secret", prepared));
+        assertEquals ("prepared", subject.prepare ("GET", "/other", prepared));
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (2)).execute (any (HttpHost.class), requestCaptor.capture ());
+        HttpPost request = (HttpPost)requestCaptor.getAllValues ().get (1);
+        assertEquals ("/mockability/GET/other", request.getRequestLine().getUri());
+        assertEquals ("application/json", request.getEntity ().getContentType ().getValue ());
+        ObjectNode root = (ObjectNode)new ObjectMapper ().readTree (request.getEntity ().getContent ()).get (0);
+        assertEquals (401, root.get ("status").asInt ());
+        assertEquals ("flop", root.get ("headers").get (0).get ("value").asText ());
+        assertEquals (CODEC.encodeAsString ("go away".getBytes ()), root.get ("body").asText ());
+    }
+
+    @Test
+    public void shouldGzipStreamedPrepareBodiesOnlyAboveThreshold () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().gzipThreshold (1024).build ();
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", options, client, null);
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenAnswer (invocation -> {
+            HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+            postResponse.setEntity(new StringEntity("prepared"));
+            return postResponse;
+        });
+        char[] filler = new char[100];
+        Arrays.fill (filler, 'x');
+        List<String> many = new ArrayList<> ();
+        for (int i = 0; i < 50; i++) {many.add ("200|gurble=flop|" + i + new String (filler));}
+
+        assertEquals ("prepared", subject.prepare ("GLOMPETY", "/wiggle", "503|gurble=flop|biggety-boo"));
+        assertEquals ("prepared", subject.prepareAll ("GLOMPETY", "/wiggle", many));
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (2)).execute (any (HttpHost.class), requestCaptor.capture ());
+        HttpEntity small = ((HttpPost)requestCaptor.getAllValues ().get (0)).getEntity ();
+        assertEquals (null, small.getContentEncoding ());
+        ArrayNode smallList = (ArrayNode)new ObjectMapper ().readTree (EntityUtils.toByteArray (small));
+        assertEquals (503, smallList.get (0).get ("status").asInt ());
+        assertEquals (CODEC.encodeAsString ("biggety-boo".getBytes ()), smallList.get (0).get ("body").asText ());
+        HttpEntity large = ((HttpPost)requestCaptor.getAllValues ().get (1)).getEntity ();
+        assertEquals ("gzip", large.getContentEncoding ().getValue ());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream ();
+        large.writeTo (compressed);
+        ArrayNode largeList = (ArrayNode)new ObjectMapper ().readTree (
+            new GZIPInputStream (new ByteArrayInputStream (compressed.toByteArray ())));
+        assertEquals (50, largeList.size ());
+        for (int i = 0; i < 50; i++) {
+            assertEquals (CODEC.encodeAsString ((i + new String (filler)).getBytes ()), largeList.get (i).get ("body").asText ());
+        }
+    }
+
+    @Test
+    public void shouldOnlyLetPrepareBodiesBeSentAgainWhenTheyWouldBeTheSame () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().gzipThreshold (1024).build ();
+        MockabilityClient<String, String> compressing = new MockabilityClient<> (adapter, "http://baseUrl:1234", options,
+            client, null);
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenAnswer (invocation -> {
+            HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+            postResponse.setEntity(new StringEntity("prepared"));
+            return postResponse;
+        });
+        char[] filler = new char[100];
+        Arrays.fill (filler, 'x');
+        List<String> many = new ArrayList<> ();
+        for (int i = 0; i < 50; i++) {many.add ("200|gurble=flop|" + i + new String (filler));}
+        Iterator<String> once = many.iterator ();
+
+        subject.prepareAll ("GLOMPETY", "/collection", many);
+        subject.prepareAll ("GLOMPETY", "/once", () -> once);
+        compressing.prepareAll ("GLOMPETY", "/compressed", many);
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (3)).execute (any (HttpHost.class), requestCaptor.capture ());
+        HttpEntity collection = ((HttpPost)requestCaptor.getAllValues ().get (0)).getEntity ();
+        assertTrue (collection.isRepeatable ());
+        assertEquals (EntityUtils.toString (collection), EntityUtils.toString (collection));
+        for (HttpRequest request : requestCaptor.getAllValues ().subList (1, 3)) {
+            HttpEntity entity = ((HttpPost)request).getEntity ();
+            assertFalse (entity.isRepeatable ());
+            entity.writeTo (new ByteArrayOutputStream ());
+            try {
+                entity.writeTo (new ByteArrayOutputStream ());
+                fail ();
+            }
+            catch (IOException e) {
+                assertEquals ("Prepared responses were already sent once and can't be sent again", e.getMessage ());
+            }
+        }
+    }
+
+    @Test
+    public void shouldGzipPreparedResponsesOnlyAboveThreshold () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().gzipThreshold (200).build ();
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", options, client, null);
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenAnswer (invocation -> {
+            HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+            postResponse.setEntity(new StringEntity("prepared"));
+            return postResponse;
+        });
+        char[] filler = new char[1000];
+        Arrays.fill (filler, 'x');
+
+        subject.prepare ("GET", "/small", subject.toPreparedResponse ("200|gurble=flop|tiny"));
+        subject.prepare ("GET", "/large", subject.toPreparedResponse ("200|gurble=flop|" + new String (filler)));
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (2)).execute (any (HttpHost.class), requestCaptor.capture ());
+        HttpEntity small = ((HttpPost)requestCaptor.getAllValues ().get (0)).getEntity ();
+        HttpEntity large = ((HttpPost)requestCaptor.getAllValues ().get (1)).getEntity ();
+        assertEquals (null, small.getContentEncoding ());
+        assertEquals ("gzip", large.getContentEncoding ().getValue ());
+        assertTrue (large.getContentLength () < 200);
+        ObjectNode root = (ObjectNode)new ObjectMapper ().readTree (new GZIPInputStream (large.getContent ())).get (0);
+        assertEquals (CODEC.encodeAsString (new String (filler).getBytes ()), root.get ("body").asText ());
+    }
+
+    @Test
+    public void shouldAskForAndDecompressGzippedReportsWhenCompressionIsOn () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().gzipThreshold (1024).build ();
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", options, client, null);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream ();
+        try (GZIPOutputStream gzip = new GZIPOutputStream (compressed)) {
+            gzip.write (requestsToJson ("GLOMPETY|/wiggle|molly=woo|booga-booga").getBytes ());
+        }
+        HttpResponse reportResponse = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 200, "");
+        reportResponse.setEntity (new ByteArrayEntity (compressed.toByteArray ()));
+        reportResponse.addHeader ("Content-Encoding", "gzip");
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (reportResponse);
+
+        List<String> requests = subject.report ("GLOMPETY", "/wiggle");
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client).execute (any (HttpHost.class), requestCaptor.capture ());
+        assertEquals ("gzip", requestCaptor.getValue ().getFirstHeader ("Accept-Encoding").getValue ());
+        assertEquals (Collections.singletonList ("GLOMPETY|/wiggle|molly=woo|booga-booga"), requests);
+    }
+
+    @Test
+    public void shouldReuseSerializationOfEqualResponsesWhenCacheIsOn () throws Exception {
+        int[] serializations = new int[1];
+        JsonCodec countingCodec = new JsonCodec () {
+            @Override
+            public ResponseWriter newResponseWriter (OutputStream ostr) throws IOException {
+                serializations[0]++;
+                return super.newResponseWriter (ostr);
+            }
+        };
+        MockabilityOptions options = MockabilityOptions.builder ().codec (countingCodec).preparedResponseCache (10).build ();
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", options, client, null);
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenAnswer (invocation -> {
+            HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+            postResponse.setEntity(new StringEntity("prepared"));
+            return postResponse;
+        });
+
+        subject.prepare ("GET", "/missing", "404|gurble=flop|not here");
+        subject.prepare ("GET", "/missing", "404|gurble=flop|not here");
+        subject.prepare ("GET", "/missing", "200|gurble=flop|here");
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (3)).execute (any (HttpHost.class), requestCaptor.capture ());
+        List<HttpRequest> requests = requestCaptor.getAllValues ();
+        ByteArrayOutputStream first = new ByteArrayOutputStream ();
+        ((HttpPost)requests.get (0)).getEntity ().writeTo (first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream ();
+        ((HttpPost)requests.get (1)).getEntity ().writeTo (second);
+        assertEquals (new String (first.toByteArray ()), new String (second.toByteArray ()));
+        assertEquals (2, serializations[0]);
+        assertEquals (2, options.getPreparedResponseCache ().size ());
+    }
+
+    @Test
+    public void shouldNotLetCallersChangeCachedResponsesThroughTheirBodyArrays () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().preparedResponseCache (10).build ();
+        MockabilityClient<SimpleRequest, SimpleResponse> simple = new MockabilityClient<> (new SimpleAdapter (),
+            "http://baseUrl:1234", options, client, null);
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenAnswer (invocation -> {
+            HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+            postResponse.setEntity(new StringEntity("prepared"));
+            return postResponse;
+        });
+        byte[] reused = "first".getBytes ();
+
+        simple.prepare ("GET", "/first", new SimpleResponse (200, Collections.<HeaderPair>emptyList (), reused));
+        System.arraycopy ("other".getBytes (), 0, reused, 0, reused.length);
+        simple.prepare ("GET", "/second", new SimpleResponse (200, Collections.<HeaderPair>emptyList (),
+            "first".getBytes ()));
+
+        assertEquals (1, options.getPreparedResponseCache ().size ());
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (2)).execute (any (HttpHost.class), requestCaptor.capture ());
+        ArrayNode list = (ArrayNode)new ObjectMapper ().readTree (
+            EntityUtils.toByteArray (((HttpPost)requestCaptor.getAllValues ().get (1)).getEntity ()));
+        assertEquals (CODEC.encodeAsString ("first".getBytes ()), list.get (0).get ("body").asText ());
+    }
+
+    @Test
+    public void shouldSendSingleChunkedPostRequestOnPrepareAll () throws Exception {
+        HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        postResponse.setEntity(new StringEntity("prepared"));
+        when(client.execute(any (HttpHost.class), any (HttpPost.class))).thenReturn (postResponse);
+
+        String resultText = subject.prepareAll("GLOMPETY", "/wiggle", Arrays.asList (
+            "503|gurble=flop|biggety-boo",
+            "200|mimsy=borogove",
+            "404|slithy=tove|not here"
+        ));
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (1)).execute (any (HttpHost.class), requestCaptor.capture ());
+
+        HttpPost request = (HttpPost)requestCaptor.getValue();
+        assertEquals ("/mockability/GLOMPETY/wiggle", request.getRequestLine().getUri());
+        assertEquals ("application/json", request.getHeaders ("Content-Type")[0].getValue ());
+        assertEquals (true, request.getEntity ().isChunked ());
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode list = (ArrayNode)mapper.readTree (request.getEntity ().getContent ());
+        assertEquals (3, list.size ());
+        assertEquals (503, list.get (0).get ("status").asInt ());
+        assertEquals (CODEC.encodeAsString ("biggety-boo".getBytes ()), list.get (0).get ("body").asText ());
+        assertEquals (200, list.get (1).get ("status").asInt ());
+        assertEquals ("mimsy", list.get (1).get ("headers").get (0).get ("name").asText ());
+        assertEquals ("", list.get (1).get ("body").asText ());
+        assertEquals (404, list.get (2).get ("status").asInt ());
+        assertEquals ("tove", list.get (2).get ("headers").get (0).get ("value").asText ());
+        assertEquals (CODEC.encodeAsString ("not here".getBytes ()), list.get (2).get ("body").asText ());
+
+        assertEquals ("prepared", resultText);
+    }
+
     @Test
     public void shouldThrowExceptionIfPrepareRequestReturnsOtherThan200 () throws Exception {
         HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 400, "");
@@ -274,6 +603,531 @@ public class MockabilityClientTest {
         assertEquals (2, requests.size ());
     }
 
+    @Test
+    public void waitForRequestsPollsUntilEnoughHaveArrivedAndConvertsOnlyTheLastReport () throws Exception {
+        adapter = spy (new TestAdapter ());
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, null);
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (
+            reportResponse (requestsToJson ()),
+            reportResponse (requestsToJson ("GLOMPETY|/wiggle|molly=woo|booga-booga")),
+            reportResponse (requestsToJson ("GLOMPETY|/wiggle|molly=woo|booga-booga", "GLOMPETY|/wiggle|woo=molly")));
+
+        List<String> requests = subject.waitForRequests ("GLOMPETY", "/wiggle", 2, 10, TimeUnit.SECONDS);
+
+        assertEquals (Arrays.asList ("GLOMPETY|/wiggle|molly=woo|booga-booga", "GLOMPETY|/wiggle|woo=molly"), requests);
+        verify (client, times (3)).execute (any (HttpHost.class), any (HttpGet.class));
+        verify (adapter, times (2)).convert (anyString (), anyString (), anyList (), any (byte[].class));
+    }
+
+    @Test
+    public void waitForRequestsGivesUpAfterTheTimeout () throws Exception {
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenAnswer (invocation ->
+            reportResponse (requestsToJson ("GLOMPETY|/wiggle|molly=woo")));
+        long start = System.nanoTime ();
+
+        try {
+            subject.waitForRequests ("GLOMPETY", "/wiggle", 2, 100, TimeUnit.MILLISECONDS);
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            assertEquals ("Waited 100ms for 2 request(s) to GLOMPETY '/wiggle', but only 1 arrived", e.getMessage ());
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis (System.nanoTime () - start);
+        assertTrue ("Took " + elapsedMillis + "ms", (elapsedMillis >= 100) && (elapsedMillis < 1000));
+        verify (client, atLeast (3)).execute (any (HttpHost.class), any (HttpGet.class));
+    }
+
+    @Test
+    public void waitForRequestsFailsAtOnceIfTheServerObjects () throws Exception {
+        HttpResponse response = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 499, "");
+        response.setEntity (new StringEntity ("Nothing prepared"));
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (response);
+
+        try {
+            subject.waitForRequests ("GLOMPETY", "/wiggle", 1, 10, TimeUnit.SECONDS);
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            assertEquals ("Nothing prepared", e.getMessage ());
+        }
+        verify (client, times (1)).execute (any (HttpHost.class), any (HttpGet.class));
+    }
+
+    @Test
+    public void reportViewDecodesAndConvertsOnlyWhatIsAskedFor () throws Exception {
+        adapter = spy (new TestAdapter ());
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, null);
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (
+            reportResponse (requestsToJson ("GLOMPETY|/wiggle|molly=woo|booga-booga", "PETYGLOM|/wobble|Woo=molly")));
+
+        ReportView<String> view = subject.reportView ("GLOMPETY", "/wiggle");
+
+        assertEquals (2, view.size ());
+        assertEquals ("GLOMPETY", view.get (0).getMethod ());
+        assertEquals ("/wobble", view.get (1).getUri ());
+        assertEquals ("molly", view.get (1).getHeader ("woo"));
+        assertEquals (null, view.get (1).getHeader ("gurble"));
+        verify (adapter, never ()).convert (anyString (), anyString (), anyList (), any (byte[].class));
+        assertEquals ("booga-booga", new String (view.get (0).getBody ()));
+        assertEquals ("GLOMPETY|/wiggle|molly=woo|booga-booga", view.get (0).toRequest ());
+        assertEquals ("GLOMPETY|/wiggle|molly=woo|booga-booga", view.get (0).toRequest ());
+        verify (adapter, times (1)).convert (anyString (), anyString (), anyList (), any (byte[].class));
+        assertEquals (Arrays.asList ("GLOMPETY|/wiggle|molly=woo|booga-booga", "PETYGLOM|/wobble|Woo=molly"),
+            view.toRequests ());
+    }
+
+    @Test
+    public void reportIndexFindsRequestsByIndexedHeader () throws Exception {
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (
+            reportResponse (requestsToJson ("GLOMPETY|/wiggle|molly=woo|booga-booga", "GLOMPETY|/wiggle|molly=boo")));
+
+        ReportIndex<String> index = subject.reportIndex ("GLOMPETY", "/wiggle", "Molly");
+
+        assertEquals (2, index.size ());
+        assertEquals (Collections.singletonList ("GLOMPETY|/wiggle|molly=boo"),
+            index.query ().header ("molly", "boo").findRequests ());
+    }
+
+    @Test
+    public void reportSinceSkipsRequestsBeforeTheCursorWhenTheServerSendsThemAnyway () throws Exception {
+        adapter = spy (new TestAdapter ());
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, null);
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (
+            reportResponse (requestsToJson ("GLOMPETY|/wiggle|one=1", "GLOMPETY|/wiggle|two=2", "GLOMPETY|/wiggle|three=3")));
+
+        ReportPage<String> page = subject.reportSince ("GLOMPETY", "/wiggle", new ReportCursor (2));
+
+        assertEquals (Arrays.asList ("GLOMPETY|/wiggle|three=3"), page.getRequests ());
+        assertEquals (new ReportCursor (3), page.getNextCursor ());
+        verify (adapter, times (1)).convert (anyString (), anyString (), anyList (), any (byte[].class));
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass (HttpRequest.class);
+        verify (client).execute (any (HttpHost.class), requestCaptor.capture ());
+        assertEquals ("2", requestCaptor.getValue ().getFirstHeader ("X-Mockability-Offset").getValue ());
+    }
+
+    @Test
+    public void reportSinceTrustsAServerThatHonorsTheOffset () throws Exception {
+        HttpResponse response = reportResponse (requestsToJson ("GLOMPETY|/wiggle|three=3"));
+        response.addHeader ("X-Mockability-Offset", "2");
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (response);
+
+        ReportPage<String> page = subject.reportSince ("GLOMPETY", "/wiggle", new ReportCursor (2));
+
+        assertEquals (Arrays.asList ("GLOMPETY|/wiggle|three=3"), page.getRequests ());
+        assertEquals (3, page.getNextCursor ().getOffset ());
+    }
+
+    @Test
+    public void reportSinceFromTheStartReportsEverythingWithoutAnOffset () throws Exception {
+        when (client.execute (any (HttpHost.class), any (HttpGet.class))).thenReturn (
+            reportResponse (requestsToJson ("GLOMPETY|/wiggle|one=1")));
+
+        ReportPage<String> page = subject.reportSince ("GLOMPETY", "/wiggle", ReportCursor.START);
+
+        assertEquals (Arrays.asList ("GLOMPETY|/wiggle|one=1"), page.getRequests ());
+        assertEquals (1, page.getNextCursor ().getOffset ());
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass (HttpRequest.class);
+        verify (client).execute (any (HttpHost.class), requestCaptor.capture ());
+        assertEquals (null, requestCaptor.getValue ().getFirstHeader ("X-Mockability-Offset"));
+    }
+
+    @Test
+    public void shouldStreamReportedRequestsOneAtATime () throws Exception {
+        HttpResponse reportResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        String json = requestsToJson (
+                "GLOMPETY|/wiggle|molly=woo|booga-booga, flarpjack",
+                "PETYGLOM|/wobble|woo=molly"
+        );
+        ByteArrayInputStream content = new ByteArrayInputStream (json.getBytes ());
+        BasicHttpEntity entity = new BasicHttpEntity ();
+        entity.setContent (content);
+        reportResponse.setEntity (entity);
+        when(client.execute(any (HttpHost.class), any (HttpGet.class))).thenReturn(reportResponse);
+
+        try (Stream<String> requests = subject.reportStream ("GLOMPETY", "/wiggle")) {
+            Iterator<String> iter = requests.iterator ();
+            assertEquals (true, iter.hasNext ());
+            assertEquals (true, iter.hasNext ());
+            assertEquals ("GLOMPETY|/wiggle|molly=woo|booga-booga, flarpjack", iter.next ());
+            assertEquals ("PETYGLOM|/wobble|woo=molly", iter.next ());
+            assertEquals (false, iter.hasNext ());
+        }
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client).execute (any (HttpHost.class), requestCaptor.capture ());
+        assertEquals ("/mockability/GLOMPETY/wiggle", requestCaptor.getValue ().getRequestLine().getUri());
+        assertEquals (0, content.available ());
+    }
+
+    @Test
+    public void shouldCloseResponseWhenReportStreamIsClosedEarly () throws Exception {
+        CloseableHttpResponse reportResponse = mock (CloseableHttpResponse.class);
+        when (reportResponse.getStatusLine ()).thenReturn (new BasicStatusLine (new ProtocolVersion("HTTP", 1, 1), 200, ""));
+        when (reportResponse.getEntity ()).thenReturn (new StringEntity (requestsToJson (
+                "GLOMPETY|/wiggle|molly=woo",
+                "PETYGLOM|/wobble|woo=molly"
+        )));
+        when(client.execute(any (HttpHost.class), any (HttpGet.class))).thenReturn(reportResponse);
+
+        try (Stream<String> requests = subject.reportStream ("GLOMPETY", "/wiggle")) {
+            assertEquals ("GLOMPETY|/wiggle|molly=woo", requests.findFirst ().get ());
+        }
+
+        verify (reportResponse).close ();
+    }
+
+    @Test
+    public void shouldConsumeEntityWhenRequestFails () throws Exception {
+        HttpResponse clearResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 500, "");
+        ByteArrayInputStream content = new ByteArrayInputStream ("Exploded".getBytes ());
+        BasicHttpEntity entity = new BasicHttpEntity ();
+        entity.setContent (content);
+        clearResponse.setEntity (entity);
+        when(client.execute(any (HttpHost.class), any (HttpDelete.class))).thenReturn (clearResponse);
+
+        try {
+            subject.clear("GLOMPETY", "/wiggle");
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            assertEquals ("Exploded", e.getMessage ());
+        }
+        assertEquals (0, content.available ());
+    }
+
+    @Test
+    public void shouldConsumeEntityWhenReportCannotBeParsed () throws Exception {
+        HttpResponse reportResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        ByteArrayInputStream content = new ByteArrayInputStream ("[{\"method\": }] and a lot of trailing junk".getBytes ());
+        BasicHttpEntity entity = new BasicHttpEntity ();
+        entity.setContent (content);
+        reportResponse.setEntity (entity);
+        when(client.execute(any (HttpHost.class), any (HttpGet.class))).thenReturn (reportResponse);
+
+        try {
+            subject.report("GLOMPETY", "/wiggle");
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals (0, content.available ());
+    }
+
+    @Test
+    public void shouldCompleteReportAsyncWithConvertedRequests () throws Exception {
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        HttpResponse reportResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        reportResponse.setEntity (new StringEntity(requestsToJson ("GLOMPETY|/wiggle|molly=woo|booga-booga")));
+        respondAsync (asyncClient, reportResponse);
+
+        List<String> requests = subject.reportAsync ("GLOMPETY", "/wiggle").get ();
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (asyncClient).execute (any (HttpHost.class), requestCaptor.capture (), any (FutureCallback.class));
+        assertEquals ("/mockability/GLOMPETY/wiggle", requestCaptor.getValue ().getRequestLine ().getUri ());
+        assertEquals (Collections.singletonList ("GLOMPETY|/wiggle|molly=woo|booga-booga"), requests);
+        verifyZeroInteractions (client);
+    }
+
+    @Test
+    public void shouldSendSerializedResponseOnPrepareAsync () throws Exception {
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        postResponse.setEntity (new StringEntity("prepared"));
+        respondAsync (asyncClient, postResponse);
+
+        String resultText = subject.prepareAsync ("GLOMPETY", "/wiggle", "503|gurble=flop|biggety-boo").get ();
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (asyncClient).execute (any (HttpHost.class), requestCaptor.capture (), any (FutureCallback.class));
+        HttpPost request = (HttpPost)requestCaptor.getValue ();
+        ArrayNode list = (ArrayNode)new ObjectMapper ().readTree (request.getEntity ().getContent ());
+        assertEquals (503, list.get (0).get ("status").asInt ());
+        assertEquals (CODEC.encodeAsString ("biggety-boo".getBytes ()), list.get (0).get ("body").asText ());
+        assertEquals ("prepared", resultText);
+    }
+
+    @Test
+    public void shouldCompleteClearAsyncExceptionallyIfServerComplains () throws Exception {
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        HttpResponse clearResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 400, "");
+        clearResponse.setEntity (new StringEntity("Your mother wears army boots"));
+        respondAsync (asyncClient, clearResponse);
+
+        try {
+            subject.clearAsync ("GLOMPETY", "/wiggle").get ();
+            fail ();
+        }
+        catch (ExecutionException e) {
+            assertEquals (IllegalStateException.class, e.getCause ().getClass ());
+            assertEquals ("Your mother wears army boots", e.getCause ().getMessage ());
+        }
+    }
+
+    @Test
+    public void shouldCompleteClearAsyncExceptionallyIfConnectionFails () throws Exception {
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        when (asyncClient.execute (any (HttpHost.class), any (HttpRequest.class), any (FutureCallback.class)))
+            .thenAnswer (invocation -> {
+                ((FutureCallback)invocation.getArguments ()[2]).failed (new IOException ("Connection refused"));
+                return null;
+            });
+
+        try {
+            subject.clearAsync ().get ();
+            fail ();
+        }
+        catch (ExecutionException e) {
+            assertEquals (IllegalStateException.class, e.getCause ().getClass ());
+            assertEquals (IOException.class, e.getCause ().getCause ().getClass ());
+        }
+    }
+
+    @Test
+    public void shouldPublishReportedRequestsOnlyAsSubscriberRequestsThem () throws Exception {
+        LibraryAdapter<String, String> spyAdapter = spy (new TestAdapter ());
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (spyAdapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        streamAsync (asyncClient, reportResponse (requestsToJson ("GLOMPETY|/wiggle|one=1", "GLOMPETY|/wiggle|two=2")));
+        RecordingSubscriber subscriber = new RecordingSubscriber ();
+
+        subject.reportPublisher ("GLOMPETY", "/wiggle", handedOff::add).subscribe (subscriber);
+
+        assertEquals (Collections.emptyList (), subscriber.received);
+        verify (spyAdapter, never ()).convert (anyString (), anyString (), anyList (), any (byte[].class));
+        subscriber.subscription.request (1);
+        assertEquals (Collections.singletonList ("GLOMPETY|/wiggle|one=1"), subscriber.received);
+        verify (spyAdapter, times (1)).convert (anyString (), anyString (), anyList (), any (byte[].class));
+        assertEquals (false, subscriber.completed);
+        subscriber.subscription.request (5);
+        assertEquals (Arrays.asList ("GLOMPETY|/wiggle|one=1", "GLOMPETY|/wiggle|two=2"), subscriber.received);
+        assertEquals (true, subscriber.completed);
+        assertEquals (null, subscriber.error);
+        verifyZeroInteractions (client);
+    }
+
+    @Test
+    public void shouldStopPublishingWhenSubscriptionIsCancelled () throws Exception {
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        streamAsync (asyncClient, reportResponse (requestsToJson ("GLOMPETY|/wiggle|one=1", "GLOMPETY|/wiggle|two=2")));
+        RecordingSubscriber subscriber = new RecordingSubscriber ();
+        subject.reportPublisher ("GLOMPETY", "/wiggle", handedOff::add).subscribe (subscriber);
+        subscriber.subscription.request (1);
+
+        subscriber.subscription.cancel ();
+        subscriber.subscription.request (1);
+
+        assertEquals (Collections.singletonList ("GLOMPETY|/wiggle|one=1"), subscriber.received);
+        assertEquals (false, subscriber.completed);
+        assertEquals (null, subscriber.error);
+    }
+
+    @Test
+    public void shouldSignalErrorWhenSubscriberRequestsNothing () throws Exception {
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        streamAsync (asyncClient, reportResponse (requestsToJson ("GLOMPETY|/wiggle|one=1")));
+        RecordingSubscriber subscriber = new RecordingSubscriber ();
+        subject.reportPublisher ("GLOMPETY", "/wiggle", handedOff::add).subscribe (subscriber);
+
+        subscriber.subscription.request (0);
+        subscriber.subscription.request (1);
+
+        assertEquals (IllegalArgumentException.class, subscriber.error.getClass ());
+        assertEquals (Collections.emptyList (), subscriber.received);
+    }
+
+    @Test
+    public void shouldSignalErrorWhenServerComplainsAboutPublishedReport () throws Exception {
+        HttpAsyncClient asyncClient = mock (HttpAsyncClient.class);
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", MockabilityOptions.defaults (), client, asyncClient);
+        HttpResponse complaint = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 400, "");
+        complaint.setEntity (new StringEntity ("Your mother wears army boots"));
+        streamAsync (asyncClient, complaint);
+        RecordingSubscriber subscriber = new RecordingSubscriber ();
+
+        subject.reportPublisher ("GLOMPETY", "/wiggle", handedOff::add).subscribe (subscriber);
+
+        assertEquals (IllegalStateException.class, subscriber.error.getClass ());
+        assertEquals ("Your mother wears army boots", subscriber.error.getMessage ());
+        assertEquals (Collections.emptyList (), subscriber.received);
+    }
+
+    @Test
+    public void shouldPrepareInPreferredCodecAndAskForItInReports () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().codec (new SmileCodec ()).build ();
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", options, client, null);
+        HttpResponse postResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        postResponse.setEntity (new StringEntity("prepared"));
+        HttpResponse reportResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        ObjectMapper smileMapper = new ObjectMapper (new SmileFactory ());
+        ArrayNode report = smileMapper.createArrayNode ();
+        ObjectNode element = report.addObject ();
+        element.put ("method", "GLOMPETY");
+        element.put ("uri", "/wiggle");
+        ObjectNode header = element.putArray ("headers").addObject ();
+        header.put ("name", "molly");
+        header.put ("value", "woo");
+        element.put ("body", "booga-booga".getBytes ());
+        reportResponse.setEntity (new ByteArrayEntity (smileMapper.writeValueAsBytes (report)));
+        reportResponse.addHeader ("Content-Type", "application/x-jackson-smile");
+        when(client.execute(any (HttpHost.class), any (HttpRequest.class))).thenReturn (postResponse, reportResponse);
+
+        subject.prepare ("GLOMPETY", "/wiggle", "503|gurble=flop|biggety-boo");
+        List<String> requests = subject.report ("GLOMPETY", "/wiggle");
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (2)).execute (any (HttpHost.class), requestCaptor.capture ());
+        HttpPost post = (HttpPost)requestCaptor.getAllValues ().get (0);
+        assertEquals ("application/x-jackson-smile", post.getFirstHeader ("Content-Type").getValue ());
+        ArrayNode list = (ArrayNode)smileMapper.readTree (post.getEntity ().getContent ());
+        assertEquals ("biggety-boo", new String (list.get (0).get ("body").binaryValue ()));
+        HttpGet get = (HttpGet)requestCaptor.getAllValues ().get (1);
+        assertEquals ("application/x-jackson-smile, application/json;q=0.5", get.getFirstHeader ("Accept").getValue ());
+        assertEquals (Collections.singletonList ("GLOMPETY|/wiggle|molly=woo|booga-booga"), requests);
+    }
+
+    @Test
+    public void shouldFallBackToJsonWhenServerRefusesPreferredCodec () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().codec (new SmileCodec ()).build ();
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", options, client, null);
+        HttpResponse refusal = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 415, "");
+        refusal.setEntity (new StringEntity("What is this gibberish?"));
+        HttpResponse firstAcceptance = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        firstAcceptance.setEntity (new StringEntity("prepared"));
+        HttpResponse secondAcceptance = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        secondAcceptance.setEntity (new StringEntity("prepared again"));
+        HttpResponse reportResponse = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        reportResponse.setEntity (new StringEntity(requestsToJson ("GLOMPETY|/wiggle|molly=woo")));
+        reportResponse.addHeader ("Content-Type", "application/json; charset=UTF-8");
+        when(client.execute(any (HttpHost.class), any (HttpRequest.class)))
+            .thenReturn (refusal, firstAcceptance, secondAcceptance, reportResponse);
+
+        assertEquals ("prepared", subject.prepare ("GLOMPETY", "/wiggle", "503|gurble=flop|biggety-boo"));
+        assertEquals ("prepared again", subject.prepare ("GLOMPETY", "/wiggle", "200|gurble=flop"));
+        List<String> requests = subject.report ("GLOMPETY", "/wiggle");
+
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (4)).execute (any (HttpHost.class), requestCaptor.capture ());
+        List<HttpRequest> sent = requestCaptor.getAllValues ();
+        assertEquals ("application/x-jackson-smile", sent.get (0).getFirstHeader ("Content-Type").getValue ());
+        assertEquals ("application/json", sent.get (1).getFirstHeader ("Content-Type").getValue ());
+        ArrayNode list = (ArrayNode)new ObjectMapper ().readTree (((HttpPost)sent.get (1)).getEntity ().getContent ());
+        assertEquals (503, list.get (0).get ("status").asInt ());
+        assertEquals ("application/json", sent.get (2).getFirstHeader ("Content-Type").getValue ());
+        assertEquals (Collections.singletonList ("GLOMPETY|/wiggle|molly=woo"), requests);
+    }
+
+    @Test
+    public void shouldRefuseToResendOneShotResponsesWhenServerRefusesPreferredCodec () throws Exception {
+        MockabilityOptions options = MockabilityOptions.builder ().codec (new SmileCodec ()).build ();
+        subject = new MockabilityClient<> (adapter, "http://baseUrl:1234", options, client, null);
+        HttpResponse refusal = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 415, "");
+        refusal.setEntity (new StringEntity("What is this gibberish?"));
+        HttpResponse acceptance = new BasicHttpResponse(new ProtocolVersion("HTTP", 1, 1), 200, "");
+        acceptance.setEntity (new StringEntity("prepared"));
+        when(client.execute(any (HttpHost.class), any (HttpRequest.class))).thenReturn (refusal, acceptance);
+        Iterator<String> once = Arrays.asList ("503|gurble=flop|biggety-boo", "200|gurble=flop").iterator ();
+
+        try {
+            subject.prepareAll ("GLOMPETY", "/wiggle", () -> once);
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            assertTrue (e.getMessage (), e.getMessage ().contains ("nothing was prepared"));
+        }
+
+        assertEquals ("prepared", subject.prepare ("GLOMPETY", "/wiggle", "200|gurble=flop"));
+        ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify (client, times (2)).execute (any (HttpHost.class), requestCaptor.capture ());
+        assertEquals ("application/json", requestCaptor.getAllValues ().get (1).getFirstHeader ("Content-Type").getValue ());
+    }
+
+    private HttpResponse reportResponse (String json) throws Exception {
+        HttpResponse response = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 200, "");
+        response.setEntity (new StringEntity (json));
+        return response;
+    }
+
+    private static class RecordingSubscriber implements Subscriber<String> {
+        Subscription subscription;
+        List<String> received = new ArrayList<> ();
+        boolean completed;
+        Throwable error;
+
+        @Override
+        public void onSubscribe (Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext (String request) {
+            received.add (request);
+        }
+
+        @Override
+        public void onError (Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete () {
+            completed = true;
+        }
+    }
+
+    private void respondAsync (HttpAsyncClient asyncClient, HttpResponse response) {
+        when (asyncClient.execute (any (HttpHost.class), any (HttpRequest.class), any (FutureCallback.class)))
+            .thenAnswer (invocation -> {
+                ((FutureCallback)invocation.getArguments ()[2]).completed (response);
+                return null;
+            });
+    }
+
+    // Plays the response through the consumer on the calling thread, the way the I/O reactor would on one of its own,
+    // then runs whatever was handed off from the I/O thread, the way the executor would on another.
+    @SuppressWarnings ("unchecked")
+    private void streamAsync (HttpAsyncClient asyncClient, HttpResponse response) {
+        when (asyncClient.execute (any (HttpAsyncRequestProducer.class), any (HttpAsyncResponseConsumer.class),
+                any (FutureCallback.class)))
+            .thenAnswer (invocation -> {
+                HttpAsyncResponseConsumer<HttpResponse> consumer =
+                    (HttpAsyncResponseConsumer<HttpResponse>)invocation.getArguments ()[1];
+                consumer.responseReceived (response);
+                if (response.getEntity () != null) {
+                    ReadableByteChannel content = Channels.newChannel (response.getEntity ().getContent ());
+                    boolean[] completed = {false};
+                    ContentDecoder decoder = new ContentDecoder () {
+                        @Override
+                        public int read (ByteBuffer buffer) throws IOException {
+                            int count = content.read (buffer);
+                            if (count < 0) {completed[0] = true;}
+                            return count;
+                        }
+
+                        @Override
+                        public boolean isCompleted () {
+                            return completed[0];
+                        }
+                    };
+                    while (!decoder.isCompleted ()) {
+                        consumer.consumeContent (decoder, mock (IOControl.class));
+                    }
+                }
+                consumer.responseCompleted (new BasicHttpContext ());
+                ((FutureCallback)invocation.getArguments ()[2]).completed (consumer.getResult ());
+                for (Runnable task : handedOff) {task.run ();}
+                handedOff.clear ();
+                return null;
+            });
+    }
+
     private String requestsToJson (String... requests) {
         TestAdapter adapter = new TestAdapter();
         ObjectMapper mapper = new ObjectMapper ();
@@ -0,0 +1,92 @@
+package mockability.client;
+
+import mockability.client.adapters.SimpleAdapter;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MockabilityOptionsTest {
+
+    private Server server;
+    private int port;
+    private MockabilityOptions subject;
+
+    @Before
+    public void setup () throws Exception {
+        server = new Server (0);
+        server.start ();
+        port = ((ServerConnector)server.getConnectors ()[0]).getLocalPort ();
+        subject = MockabilityOptions.builder ()
+            .maxTotal (7)
+            .maxPerRoute (3)
+            .keepAlive (5, TimeUnit.SECONDS)
+            .evictIdleAfter (0, TimeUnit.SECONDS)
+            .build ();
+    }
+
+    @After
+    public void teardown () throws Exception {
+        subject.close ();
+        server.stop ();
+    }
+
+    @Test
+    public void defaultsAreSharedByAllClientsWithoutExplicitOptions () {
+        MockabilityClient<SimpleAdapter.SimpleRequest, SimpleAdapter.SimpleResponse> one =
+            new SimpleMockabilityClient ("http://localhost:1234");
+        MockabilityClient<SimpleAdapter.SimpleRequest, SimpleAdapter.SimpleResponse> another =
+            new SimpleMockabilityClient ("http://otherhost:5678");
+
+        assertSame (MockabilityOptions.defaults (), MockabilityOptions.defaults ());
+        assertSame (one.getHttpClient (), another.getHttpClient ());
+    }
+
+    @Test
+    public void clientsWithTheSameOptionsShareTheirHttpClient () {
+        MockabilityClient<SimpleAdapter.SimpleRequest, SimpleAdapter.SimpleResponse> one =
+            new SimpleMockabilityClient ("http://localhost:1234", subject);
+        MockabilityClient<SimpleAdapter.SimpleRequest, SimpleAdapter.SimpleResponse> another =
+            new SimpleMockabilityClient ("http://otherhost:5678", subject);
+
+        assertSame (subject.getHttpClient (), one.getHttpClient ());
+        assertSame (subject.getHttpClient (), another.getHttpClient ());
+    }
+
+    @Test
+    public void builderSettingsReachTheConnectionManager () {
+        assertEquals (7, subject.getConnectionManager ().getMaxTotal ());
+        assertEquals (3, subject.getConnectionManager ().getDefaultMaxPerRoute ());
+    }
+
+    @Test
+    public void prewarmLeavesIdleConnectionsInThePoolUpToTheRouteLimit () {
+        MockabilityClient<SimpleAdapter.SimpleRequest, SimpleAdapter.SimpleResponse> client =
+            new SimpleMockabilityClient ("http://localhost:" + port, subject);
+
+        client.prewarm (5);
+
+        HttpRoute route = new HttpRoute (new HttpHost ("localhost", port, "http"));
+        assertEquals (3, subject.getConnectionManager ().getStats (route).getAvailable ());
+        assertEquals (0, subject.getConnectionManager ().getStats (route).getLeased ());
+    }
+
+    @Test
+    public void poolStatsAreExposed () {
+        new SimpleMockabilityClient ("http://localhost:" + port, subject).prewarm (2);
+
+        assertEquals (2, subject.getPoolStats ().getAvailable ());
+        assertEquals (0, subject.getPoolStats ().getLeased ());
+        assertEquals (0, subject.getPoolStats ().getPending ());
+        assertEquals (7, subject.getPoolStats ().getMax ());
+        assertEquals (0, subject.getAsyncPoolStats ().getAvailable ());
+    }
+}
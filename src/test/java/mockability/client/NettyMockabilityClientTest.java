@@ -0,0 +1,126 @@
+package mockability.client;
+
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledHeapByteBuf;
+import io.netty.handler.codec.http.FullHttpRequest;
+import mockability.client.adapters.NettyAdapter;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NettyMockabilityClientTest {
+
+    // Two good requests, then one whose method Netty refuses to convert
+    private static final String REPORT = "[" +
+        "{\"method\":\"POST\",\"uri\":\"/one\",\"headers\":[],\"body\":\"b25l\"}," +
+        "{\"method\":\"POST\",\"uri\":\"/two\",\"headers\":[],\"body\":\"dHdv\"}," +
+        "{\"method\":\"NOT A METHOD\",\"uri\":\"/three\",\"headers\":[],\"body\":\"dGhyZWU=\"}]";
+
+    private TrackingAllocator allocator;
+    private HttpClient client;
+    private MockabilityClient<FullHttpRequest, ?> subject;
+
+    @Before
+    public void setup () throws Exception {
+        allocator = new TrackingAllocator ();
+        client = mock (HttpClient.class);
+        when (client.execute (any (HttpHost.class), any (HttpRequest.class))).thenAnswer (invocation -> {
+            HttpResponse response = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 200, "");
+            response.setEntity (new StringEntity (REPORT));
+            return response;
+        });
+        subject = new MockabilityClient<> (new NettyAdapter (allocator), "http://baseUrl:1234",
+            MockabilityOptions.builder ().build (), client, null);
+    }
+
+    @Test
+    public void releasesRequestsAlreadyConvertedWhenReportFails () {
+        try {
+            subject.report ("POST", "/wiggle");
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        allocator.assertNothingLeaked ();
+    }
+
+    @Test
+    public void releasesRequestsAlreadyConvertedWhenWaitingFails () {
+        try {
+            subject.waitForRequests ("POST", "/wiggle", 3, 1, TimeUnit.SECONDS);
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        allocator.assertNothingLeaked ();
+    }
+
+    @Test
+    public void releasesRequestsAlreadyConvertedWhenViewConversionFails () {
+        ReportView<FullHttpRequest> view = subject.reportView ("POST", "/wiggle");
+        FullHttpRequest first = view.get (0).toRequest ();
+
+        try {
+            view.toRequests ();
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals (1, first.refCnt ());
+        first.release ();
+        allocator.assertNothingLeaked ();
+    }
+
+    // Remembers every buffer it hands out, so a test can check that all of them were released.
+    private static class TrackingAllocator extends AbstractByteBufAllocator {
+        private final List<ByteBuf> allocated = new ArrayList<> ();
+
+        @Override
+        protected ByteBuf newHeapBuffer (int initialCapacity, int maxCapacity) {
+            ByteBuf buffer = new UnpooledHeapByteBuf (this, initialCapacity, maxCapacity);
+            allocated.add (buffer);
+            return buffer;
+        }
+
+        @Override
+        protected ByteBuf newDirectBuffer (int initialCapacity, int maxCapacity) {
+            return newHeapBuffer (initialCapacity, maxCapacity);
+        }
+
+        @Override
+        public boolean isDirectBufferPooled () {
+            return false;
+        }
+
+        void assertNothingLeaked () {
+            assertTrue (allocated.size () >= 2);
+            for (ByteBuf buffer : allocated) {
+                assertEquals (0, buffer.refCnt ());
+            }
+        }
+    }
+}
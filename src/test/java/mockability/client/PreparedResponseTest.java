@@ -0,0 +1,82 @@
+package mockability.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.codec.JsonCodec;
+import mockability.client.codec.SmileCodec;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class PreparedResponseTest {
+
+    @Test
+    public void copiesWhatItIsGiven () {
+        List<HeaderPair> headers = new ArrayList<> (Arrays.asList (new HeaderPair ("gurble", "flop")));
+        byte[] body = "biggety-boo".getBytes ();
+
+        PreparedResponse subject = PreparedResponse.of (404, headers, body);
+        headers.clear ();
+        body[0] = 'X';
+        subject.getBody ()[1] = 'Y';
+
+        assertEquals (404, subject.getStatus ());
+        assertEquals ("flop", subject.getHeaders ().get (0).value ());
+        assertArrayEquals ("biggety-boo".getBytes (), subject.getBody ());
+    }
+
+    @Test
+    public void responsesWithTheSameContentsAreEqual () {
+        PreparedResponse one = PreparedResponse.of (404, Arrays.asList (new HeaderPair ("a", "b")), new byte[] {1, 2});
+        PreparedResponse two = PreparedResponse.of (404, Arrays.asList (new HeaderPair ("a", "b")), new byte[] {1, 2});
+
+        assertEquals (one, two);
+        assertEquals (one.hashCode (), two.hashCode ());
+        assertNotEquals (one, PreparedResponse.of (404, Arrays.asList (new HeaderPair ("a", "c")), new byte[] {1, 2}));
+        assertNotEquals (one, PreparedResponse.of (401, Arrays.asList (new HeaderPair ("a", "b")), new byte[] {1, 2}));
+        assertNotEquals (one, PreparedResponse.of (404, Arrays.asList (new HeaderPair ("a", "b")), new byte[] {1, 3}));
+    }
+
+    @Test
+    public void serializesOnlyOncePerFormat () throws Exception {
+        PreparedResponse subject = PreparedResponse.of (401, Collections.<HeaderPair>emptyList (), "go away".getBytes ());
+        JsonCodec json = new JsonCodec ();
+
+        byte[] first = subject.payload (json);
+        byte[] second = subject.payload (new JsonCodec ());
+        byte[] smile = subject.payload (new SmileCodec ());
+
+        assertSame (first, second);
+        assertNotSame (first, smile);
+        ArrayNode list = (ArrayNode)new ObjectMapper ().readTree (first);
+        assertEquals (401, list.get (0).get ("status").asInt ());
+        assertArrayEquals ("go away".getBytes (), list.get (0).get ("body").binaryValue ());
+    }
+
+    @Test
+    public void cacheKeepsOnlyTheMostRecentlyUsed () {
+        PreparedResponseCache cache = new PreparedResponseCache (2);
+        PreparedResponse a = PreparedResponse.of (200, Collections.<HeaderPair>emptyList (), "a".getBytes ());
+        PreparedResponse b = PreparedResponse.of (200, Collections.<HeaderPair>emptyList (), "b".getBytes ());
+
+        assertSame (a, cache.intern (a));
+        assertSame (b, cache.intern (b));
+        assertSame (a, cache.intern (PreparedResponse.of (200, Collections.<HeaderPair>emptyList (), "a".getBytes ())));
+        cache.intern (PreparedResponse.of (200, Collections.<HeaderPair>emptyList (), "c".getBytes ()));
+
+        assertEquals (2, cache.size ());
+        assertSame (a, cache.intern (PreparedResponse.of (200, Collections.<HeaderPair>emptyList (), "a".getBytes ())));
+        PreparedResponse newB = PreparedResponse.of (200, Collections.<HeaderPair>emptyList (), "b".getBytes ());
+        assertSame (newB, cache.intern (newB));
+    }
+}
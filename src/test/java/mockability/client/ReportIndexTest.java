@@ -0,0 +1,112 @@
+package mockability.client;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter;
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ReportIndexTest {
+
+    private ReportIndex<SimpleRequest> subject;
+
+    @Before
+    public void setup () {
+        List<ReportedRequest<SimpleRequest>> requests = new ArrayList<> ();
+        requests.add (reported ("POST", "/orders?id=1&tag=a%20b", "one", "X-Tenant", "acme"));
+        requests.add (reported ("POST", "/orders?id=2&tag=a%20b&tag=c", "two", "x-tenant", "acme"));
+        requests.add (reported ("GET", "/orders?id=1", "", "X-Tenant", "globex"));
+        requests.add (reported ("POST", "/orders/3", "one", "X-Other", "acme"));
+        subject = new ReportIndex<> (requests, "X-TENANT");
+    }
+
+    @Test
+    public void findsByEachKindOfCriterion () {
+        assertEquals (Arrays.asList (0, 1, 3), idsOf (subject.query ().method ("POST").find ()));
+        assertEquals (Arrays.asList (2), idsOf (subject.query ().uri ("/orders?id=1").find ()));
+        assertEquals (Arrays.asList (0, 1, 2), idsOf (subject.query ().path ("/orders").find ()));
+        assertEquals (Arrays.asList (0, 2), idsOf (subject.query ().queryParam ("id", "1").find ()));
+        assertEquals (Arrays.asList (0, 1), idsOf (subject.query ().queryParam ("tag", "a b").find ()));
+        assertEquals (Arrays.asList (1), idsOf (subject.query ().queryParam ("tag", "c").find ()));
+        assertEquals (Arrays.asList (0, 1), idsOf (subject.query ().header ("x-tenant", "acme").find ()));
+        assertEquals (Arrays.asList (0, 3), idsOf (subject.query ().body ("one".getBytes ()).find ()));
+        assertEquals (Arrays.asList (2), idsOf (subject.query ().body (new byte[0]).find ()));
+    }
+
+    @Test
+    public void findsOnlyWhatMatchesEveryCriterion () {
+        ReportIndex<SimpleRequest>.Query query = subject.query ().method ("POST").header ("X-Tenant", "acme");
+
+        assertEquals (2, query.count ());
+        assertEquals ("one", new String (query.queryParam ("tag", "a b").body ("one".getBytes ()).findFirst ().getBody ()));
+        assertEquals (0, subject.query ().path ("/orders").body ("one".getBytes ()).queryParam ("id", "2").count ());
+        assertEquals (0, subject.query ().method ("PATCH").path ("/orders").count ());
+        assertNull (subject.query ().uri ("/nowhere").findFirst ());
+        assertEquals (4, subject.query ().count ());
+    }
+
+    @Test
+    public void convertsOnlyTheRequestsFound () {
+        List<SimpleRequest> found = subject.query ().queryParam ("id", "2").findRequests ();
+
+        assertEquals (1, found.size ());
+        assertEquals ("/orders?id=2&tag=a%20b&tag=c", found.get (0).getUri ());
+        assertEquals ("acme", found.get (0).getHeader ("X-Tenant"));
+    }
+
+    @Test
+    public void decodesNoBodiesUntilABodyIsQueried () {
+        AtomicInteger decoded = new AtomicInteger ();
+        List<ReportedRequest<SimpleRequest>> requests = new ArrayList<> ();
+        for (String body : Arrays.asList ("one", "two", "one")) {
+            requests.add (new ReportedRequest<> (new SimpleAdapter (), "POST", "/orders",
+                Collections.<HeaderPair>emptyList (), () -> {
+                    decoded.incrementAndGet ();
+                    return body.getBytes ();
+                }));
+        }
+        ReportIndex<SimpleRequest> index = new ReportIndex<> (requests);
+
+        assertEquals (3, index.query ().method ("POST").path ("/orders").count ());
+        assertEquals (0, decoded.get ());
+
+        assertEquals (2, index.query ().body ("one".getBytes ()).count ());
+        assertEquals (1, index.query ().body ("two".getBytes ()).count ());
+        assertEquals (3, decoded.get ());
+    }
+
+    @Test
+    public void refusesToQueryHeadersThatWerentIndexed () {
+        try {
+            subject.query ().header ("X-Other", "acme");
+            fail ();
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals ("Header X-Other wasn't indexed; only [x-tenant] were", e.getMessage ());
+        }
+    }
+
+    private List<Integer> idsOf (List<ReportedRequest<SimpleRequest>> found) {
+        List<Integer> result = new ArrayList<> ();
+        for (ReportedRequest<SimpleRequest> request : found) {
+            result.add (subject.getRequests ().indexOf (request));
+        }
+        return result;
+    }
+
+    private static ReportedRequest<SimpleRequest> reported (String method, String uri, String body, String header,
+            String value) {
+        return new ReportedRequest<> (new SimpleAdapter (), method, uri,
+            Collections.singletonList (new HeaderPair (header, value)), () -> body.getBytes ());
+    }
+}
@@ -0,0 +1,136 @@
+package mockability.client;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.standin.MockabilityStandIn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardedMockabilityClientTest {
+
+    private List<MockabilityStandIn> standIns;
+    private List<String> baseUrls;
+    private ShardedMockabilityClient<SimpleAdapter.SimpleRequest, SimpleResponse> subject;
+
+    @Before
+    public void setup () {
+        standIns = new ArrayList<> ();
+        baseUrls = new ArrayList<> ();
+        for (int i = 0; i < 3; i++) {
+            MockabilityStandIn standIn = new MockabilityStandIn ().start ();
+            standIns.add (standIn);
+            baseUrls.add (standIn.getBaseUrl ());
+        }
+        subject = new ShardedMockabilityClient<> (new SimpleAdapter (), baseUrls);
+    }
+
+    @After
+    public void teardown () {
+        for (MockabilityStandIn standIn : standIns) {
+            standIn.close ();
+        }
+    }
+
+    @Test
+    public void preparationsGoToTheShardNamedByShardUrlFor () {
+        for (int i = 0; i < 30; i++) {
+            subject.prepare ("GET", "/thing/" + i, new SimpleResponse (200, Collections.<HeaderPair>emptyList ()));
+        }
+
+        long total = 0;
+        for (MockabilityStandIn standIn : standIns) {
+            long expected = 0;
+            for (int i = 0; i < 30; i++) {
+                if (subject.shardUrlFor ("GET", "/thing/" + i).equals (standIn.getBaseUrl ())) {expected++;}
+            }
+            assertEquals (expected, standIn.getPrepares ());
+            assertTrue ("Shard " + standIn.getBaseUrl () + " got no keys", expected > 0);
+            total += standIn.getPrepares ();
+        }
+        assertEquals (30, total);
+    }
+
+    @Test
+    public void reportComesFromTheShardThatWasPrepared () {
+        subject.prepare ("POST", "/wiggle?a=b", new SimpleResponse (200, Collections.<HeaderPair>emptyList ()));
+
+        assertEquals (0, subject.report ("POST", "/wiggle?a=b").size ());
+        assertEquals (subject.shardFor ("POST", "/wiggle?a=b"), subject.shardFor ("POST", "wiggle?a=b"));
+    }
+
+    @Test
+    public void clearFansOutToEveryShard () {
+        String result = subject.clear ();
+
+        assertEquals (3, result.split ("\n").length);
+        for (MockabilityStandIn standIn : standIns) {
+            assertEquals (1, standIn.getClears ());
+        }
+    }
+
+    @Test
+    public void addingAShardMovesKeysOnlyToTheNewShard () {
+        List<String> moreUrls = new ArrayList<> (baseUrls);
+        moreUrls.add ("http://newcomer:9000");
+        ShardedMockabilityClient<SimpleAdapter.SimpleRequest, SimpleResponse> bigger =
+            new ShardedMockabilityClient<> (new SimpleAdapter (), moreUrls);
+
+        int moved = 0;
+        for (int i = 0; i < 1000; i++) {
+            String before = subject.shardUrlFor ("GET", "/thing/" + i);
+            String after = bigger.shardUrlFor ("GET", "/thing/" + i);
+            if (!before.equals (after)) {
+                assertEquals ("http://newcomer:9000", after);
+                moved++;
+            }
+        }
+        assertTrue ("Moved " + moved, (moved > 150) && (moved < 350));
+    }
+
+    @Test
+    public void keysAreSpreadAcrossShards () {
+        Set<String> used = new HashSet<> ();
+        for (String method : Arrays.asList ("GET", "PUT", "POST", "DELETE")) {
+            for (int i = 0; i < 10; i++) {
+                used.add (subject.shardUrlFor (method, "/item/" + i));
+            }
+        }
+        assertEquals (new HashSet<> (baseUrls), used);
+    }
+
+    @Test
+    public void refusesAnEmptyListOfServers () {
+        try {
+            new ShardedMockabilityClient<> (new SimpleAdapter (), Collections.<String>emptyList ());
+            fail ();
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals ("At least one Mockability server is required", e.getMessage ());
+        }
+    }
+
+    @Test
+    public void refusesServerListedTwice () {
+        List<String> repeated = Arrays.asList (baseUrls.get (0), baseUrls.get (1), baseUrls.get (0));
+        try {
+            new ShardedMockabilityClient<> (new SimpleAdapter (), repeated);
+            fail ();
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals ("Each Mockability server may be listed only once: " + repeated, e.getMessage ());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package mockability.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class StreamingResponseConsumerTest {
+
+    private static final int SIZE = (StreamingResponseConsumer.WINDOW * 2) + 10;
+
+    private byte[] body;
+    private HttpResponse arrived;
+    private StreamingResponseConsumer subject;
+    private IOControl ioControl;
+    private ByteArrayDecoder decoder;
+
+    @Before
+    public void setup () throws Exception {
+        body = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {body[i] = (byte)i;}
+        subject = new StreamingResponseConsumer (response -> arrived = response);
+        ioControl = mock (IOControl.class);
+        decoder = new ByteArrayDecoder (body);
+        HttpResponse response = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 200, "");
+        response.setHeader ("Content-Type", "application/json");
+        response.setEntity (new ByteArrayEntity (body));
+        subject.responseReceived (response);
+    }
+
+    @Test
+    public void shouldHandResponseOverAsSoonAsItsHeadersArrive () throws Exception {
+        assertEquals (200, arrived.getStatusLine ().getStatusCode ());
+        assertEquals ("application/json", arrived.getFirstHeader ("Content-Type").getValue ());
+        assertEquals (SIZE, arrived.getEntity ().getContentLength ());
+        assertEquals (0, arrived.getEntity ().getContent ().available ());
+    }
+
+    @Test
+    public void shouldStopReadingFromTheNetworkUntilTheReaderMakesRoomInTheWindow () throws Exception {
+        subject.consumeContent (decoder, ioControl);
+
+        verify (ioControl).suspendInput ();
+        verify (ioControl, never ()).requestInput ();
+        assertEquals (StreamingResponseConsumer.WINDOW, decoder.position);
+        InputStream content = arrived.getEntity ().getContent ();
+        assertEquals (StreamingResponseConsumer.WINDOW, content.available ());
+        byte[] first = new byte[100];
+        assertEquals (100, content.read (first));
+        verify (ioControl).requestInput ();
+        assertArrayEquals (Arrays.copyOf (body, 100), first);
+    }
+
+    @Test
+    public void shouldDeliverWholeBodyAsReaderKeepsUp () throws Exception {
+        CompletableFuture<byte[]> read = CompletableFuture.supplyAsync (() -> {
+            try {return EntityUtils.toByteArray (arrived.getEntity ());}
+            catch (IOException e) {throw new IllegalStateException (e);}
+        });
+
+        while (!decoder.isCompleted ()) {
+            subject.consumeContent (decoder, ioControl);
+            if (decoder.position < SIZE) {waitForRoom ();}
+        }
+        subject.responseCompleted (new BasicHttpContext ());
+
+        assertArrayEquals (body, read.get (10, TimeUnit.SECONDS));
+        assertSame (arrived, subject.getResult ());
+    }
+
+    @Test
+    public void shouldShutConnectionDownWhenResponseIsClosedBeforeTheEnd () throws Exception {
+        subject.consumeContent (decoder, ioControl);
+
+        ((Closeable)arrived).close ();
+
+        verify (ioControl).shutdown ();
+        assertEquals (-1, arrived.getEntity ().getContent ().read ());
+        try {
+            subject.consumeContent (decoder, ioControl);
+            fail ();
+        }
+        catch (IOException e) {
+            assertEquals ("Response was closed before all of it was read", e.getMessage ());
+        }
+    }
+
+    @Test
+    public void shouldLeaveConnectionAloneWhenResponseIsClosedAfterTheEnd () throws Exception {
+        decoder = new ByteArrayDecoder (new byte[] {1, 2, 3});
+        subject.consumeContent (decoder, ioControl);
+        subject.responseCompleted (new BasicHttpContext ());
+
+        ((Closeable)arrived).close ();
+
+        verify (ioControl, never ()).shutdown ();
+    }
+
+    @Test
+    public void shouldReportFailureAfterWhatArrivedBeforeIt () throws Exception {
+        decoder = new ByteArrayDecoder (new byte[] {1, 2, 3, 4, 5}, 3);
+        subject.consumeContent (decoder, ioControl);
+
+        subject.failed (new IOException ("Connection reset"));
+
+        InputStream content = arrived.getEntity ().getContent ();
+        ByteArrayOutputStream received = new ByteArrayOutputStream ();
+        try {
+            for (int next = content.read (); next >= 0; next = content.read ()) {received.write (next);}
+            fail ();
+        }
+        catch (IOException e) {
+            assertEquals ("Connection reset", e.getMessage ());
+        }
+        assertArrayEquals (new byte[] {1, 2, 3}, received.toByteArray ());
+    }
+
+    // The reader asks for more input once it has made room; until then the reactor wouldn't call again.
+    private void waitForRoom () throws Exception {
+        long deadline = System.currentTimeMillis () + 10000;
+        while (arrived.getEntity ().getContent ().available () == StreamingResponseConsumer.WINDOW) {
+            if (System.currentTimeMillis () > deadline) {fail ("Reader never made room");}
+            Thread.sleep (1);
+        }
+    }
+
+    private static class ByteArrayDecoder implements ContentDecoder {
+        private final byte[] content;
+        private final int end;
+        int position = 0;
+
+        ByteArrayDecoder (byte[] content) {
+            this (content, -1);
+        }
+
+        // Only the first available bytes ever arrive, unless available is -1.
+        ByteArrayDecoder (byte[] content, int available) {
+            this.content = content;
+            this.end = (available < 0) ? content.length : available;
+        }
+
+        @Override
+        public int read (ByteBuffer buffer) {
+            int count = Math.min (buffer.remaining (), end - position);
+            buffer.put (content, position, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public boolean isCompleted () {
+            return position == content.length;
+        }
+    }
+}
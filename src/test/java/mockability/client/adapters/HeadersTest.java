@@ -0,0 +1,92 @@
+package mockability.client.adapters;
+
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class HeadersTest {
+
+    @Test
+    public void actsAsAListOfHeaderPairs () {
+        List<HeaderPair> pairs = Arrays.asList (new HeaderPair ("Content-Type", "text/plain"),
+            new HeaderPair ("X-Gurble", "flop"), new HeaderPair ("content-type", "text/html"));
+
+        Headers subject = Headers.of (pairs);
+
+        assertEquals (3, subject.size ());
+        assertEquals (pairs, subject);
+        assertEquals (new ArrayList<> (pairs), new ArrayList<> (subject));
+        assertEquals (pairs.hashCode (), subject.hashCode ());
+        assertEquals ("X-Gurble", subject.name (1));
+        assertEquals ("flop", subject.value (1));
+        assertSame (subject, Headers.of (subject));
+        assertSame (subject.get (1), subject.get (1));
+    }
+
+    @Test
+    public void treatsNullAsNoHeaders () {
+        assertSame (Headers.EMPTY, Headers.of (null));
+    }
+
+    @Test
+    public void cannotBeModified () {
+        Headers subject = Headers.builder ().add ("a", "b").build ();
+
+        try {
+            subject.add (new HeaderPair ("c", "d"));
+            fail ();
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void looksUpNamesIgnoringCase () {
+        Headers subject = Headers.builder ()
+            .add ("Content-Type", "text/plain")
+            .add ("X-Gurble", "flop")
+            .add ("content-type", "text/html")
+            .build ();
+
+        assertEquals ("text/plain", subject.getFirst ("CONTENT-TYPE"));
+        assertEquals (Arrays.asList ("text/plain", "text/html"), subject.getAll ("Content-type"));
+        assertEquals ("flop", subject.getFirst ("x-gurble"));
+        assertNull (subject.getFirst ("X-Missing"));
+        assertEquals (Collections.emptyList (), subject.getAll ("X-Missing"));
+    }
+
+    @Test
+    public void sharesWellKnownNames () {
+        String fresh = new String ("Content-Type".toCharArray ());
+        char[] buffer = "xxContent-Lengthxx".toCharArray ();
+
+        Headers subject = Headers.builder ().add (fresh, "text/plain").build ();
+
+        assertSame ("Content-Type", subject.name (0));
+        assertSame ("Content-Length", Headers.intern (buffer, 2, 14));
+        assertSame ("X-Requested-With", Headers.intern (new String ("X-Requested-With".toCharArray ())));
+        assertSame ("X-Requested-With", Headers.intern ("X-Requested-With".toCharArray (), 0, 16));
+        String unknown = new String ("X-Gurble".toCharArray ());
+        assertSame (unknown, Headers.intern (unknown));
+        assertNotSame ("content-type", Headers.intern (new String ("content-type".toCharArray ())));
+    }
+
+    @Test
+    public void emptyHeadersAreEmpty () {
+        Headers subject = Headers.of (Collections.<HeaderPair>emptyList ());
+
+        assertSame (Headers.EMPTY, subject);
+        assertNull (subject.getFirst ("Anything"));
+    }
+}
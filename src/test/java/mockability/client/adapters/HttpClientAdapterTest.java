@@ -4,21 +4,30 @@ import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.client.methods.*;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpResponse;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 /**
@@ -210,4 +219,85 @@ public class HttpClientAdapterTest {
 
         assertArrayEquals ("wibbledy wobbledy woo".getBytes (), body);
     }
+
+    @Test
+    public void convertsFromPartOfAByteBuffer () throws Exception {
+        ByteBuffer body = ByteBuffer.wrap ("xxwibbledy wobbledy wooxx".getBytes ());
+        body.position (2);
+        body.limit (body.capacity () - 2);
+
+        HttpPost result = (HttpPost)subject.convert ("POST", "http://x.com", new ArrayList<> (), body);
+
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), subject.getRequestBody (result));
+    }
+
+    @Test
+    public void writesResponseBodyToStream () throws Exception {
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+
+        subject.writeResponseBody (responseWithHeadersAndBody, ostr);
+        subject.writeResponseBody (responseWithoutHeadersOrBody, ostr);
+
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), ostr.toByteArray ());
+    }
+
+    @Test
+    public void readsRepeatableRequestBodyWithoutReplacingIt () throws Exception {
+        Path file = Files.createTempFile ("HttpClientAdapterTest", ".txt");
+        try {
+            Files.write (file, "wibbledy wobbledy woo".getBytes ());
+            HttpPost request = new HttpPost ("http://x.com");
+            FileEntity entity = new FileEntity (file.toFile (), ContentType.TEXT_PLAIN);
+            request.setEntity (entity);
+
+            byte[] body = subject.getRequestBody (request);
+
+            assertArrayEquals ("wibbledy wobbledy woo".getBytes (), body);
+            assertSame (entity, request.getEntity ());
+        }
+        finally {
+            Files.delete (file);
+        }
+    }
+
+    @Test
+    public void leavesStreamedRequestBodyReadableAfterReadingIt () throws Exception {
+        HttpPost request = new HttpPost ("http://x.com");
+        request.setEntity (new InputStreamEntity (new ByteArrayInputStream ("wibbledy wobbledy woo".getBytes ()),
+            ContentType.TEXT_PLAIN));
+
+        byte[] first = subject.getRequestBody (request);
+        byte[] second = subject.getRequestBody (request);
+
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), first);
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), second);
+        assertEquals (true, request.getEntity ().isRepeatable ());
+        assertEquals (ContentType.TEXT_PLAIN.toString (), request.getEntity ().getContentType ().getValue ());
+    }
+
+    @Test
+    public void leavesStreamedResponseBodyReadableAfterWritingIt () throws Exception {
+        HttpResponse response = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 200, "");
+        BasicHttpEntity entity = new BasicHttpEntity ();
+        entity.setContent (new ByteArrayInputStream ("wibbledy wobbledy woo".getBytes ()));
+        entity.setContentLength (21);
+        response.setEntity (entity);
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+
+        subject.writeResponseBody (response, ostr);
+
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), ostr.toByteArray ());
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), subject.getResponseBody (response));
+    }
+
+    @Test
+    public void readsStreamedBodyLongerThanItsStatedLength () throws Exception {
+        HttpResponse response = new BasicHttpResponse (new ProtocolVersion ("HTTP", 1, 1), 200, "");
+        BasicHttpEntity entity = new BasicHttpEntity ();
+        entity.setContent (new ByteArrayInputStream ("wibbledy wobbledy woo".getBytes ()));
+        entity.setContentLength (8);
+        response.setEntity (entity);
+
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), subject.getResponseBody (response));
+    }
 }
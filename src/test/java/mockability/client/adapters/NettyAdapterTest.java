@@ -0,0 +1,118 @@
+package mockability.client.adapters;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class NettyAdapterTest {
+
+    private NettyAdapter subject;
+
+    @Before
+    public void setup () {
+        subject = new NettyAdapter ();
+    }
+
+    @Test
+    public void convertsToRequestWithPooledBodyOwnedByCaller () {
+        FullHttpRequest result = subject.convert ("GLOMPETY", "/wiggle?a=b", Arrays.asList (
+            new LibraryAdapter.HeaderPair ("bloopety", "bloppety"),
+            new LibraryAdapter.HeaderPair ("bloopety", "blippety")
+        ), "wibbledy wobbledy woo".getBytes ());
+
+        try {
+            assertEquals ("GLOMPETY", result.method ().name ());
+            assertEquals ("/wiggle?a=b", result.uri ());
+            assertEquals (Arrays.asList ("bloppety", "blippety"), result.headers ().getAll ("bloopety"));
+            assertEquals ("wibbledy wobbledy woo", new String (subject.getRequestBody (result)));
+            assertSame (PooledByteBufAllocator.DEFAULT, result.content ().alloc ());
+            assertEquals (1, result.refCnt ());
+        }
+        finally {
+            result.release ();
+        }
+        assertEquals (0, result.refCnt ());
+    }
+
+    @Test
+    public void convertsFromPartOfAByteBuffer () {
+        ByteBuffer body = ByteBuffer.wrap ("xxwibbledy wobbledy wooxx".getBytes ());
+        body.position (2);
+        body.limit (body.capacity () - 2);
+
+        FullHttpRequest result = subject.convert ("POST", "/wiggle", Collections.<LibraryAdapter.HeaderPair>emptyList (), body);
+
+        try {
+            assertArrayEquals ("wibbledy wobbledy woo".getBytes (), subject.getRequestBody (result));
+            assertEquals (2, body.position ());
+        }
+        finally {
+            result.release ();
+        }
+    }
+
+    @Test
+    public void convertsToResponse () {
+        FullHttpResponse result = subject.convert (404, Collections.singletonList (
+            new LibraryAdapter.HeaderPair ("flippety", "floppety")), "not here".getBytes ());
+
+        try {
+            assertEquals (404, subject.getResponseStatus (result));
+            assertEquals ("floppety", subject.getResponseHeaders (result).get (0).value ());
+            assertEquals ("not here", new String (subject.getResponseBody (result)));
+        }
+        finally {
+            result.release ();
+        }
+    }
+
+    @Test
+    public void isolatesRequestPartsWithoutDisturbingTheBody () {
+        ByteBuf content = Unpooled.copiedBuffer ("wibbledy wobbledy woo".getBytes ());
+        FullHttpRequest request = new DefaultFullHttpRequest (HttpVersion.HTTP_1_1, HttpMethod.PUT, "/wiggle", content);
+        request.headers ().add ("bloopety", "bloppety");
+
+        List<LibraryAdapter.HeaderPair> headers = subject.getRequestHeaders (request);
+
+        assertEquals ("PUT", subject.getRequestMethod (request));
+        assertEquals ("/wiggle", subject.getRequestUri (request));
+        assertEquals ("bloopety", headers.get (0).name ());
+        assertEquals ("bloppety", headers.get (0).value ());
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), subject.getRequestBody (request));
+        assertEquals (0, content.readerIndex ());
+        assertEquals (1, request.refCnt ());
+    }
+
+    @Test
+    public void writesResponseBodyToStreamWithoutDisturbingIt () throws Exception {
+        ByteBuf content = Unpooled.directBuffer ().writeBytes ("wibbledy wobbledy woo".getBytes ());
+        FullHttpResponse response = new DefaultFullHttpResponse (HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+
+        subject.writeResponseBody (response, ostr);
+
+        assertArrayEquals ("wibbledy wobbledy woo".getBytes (), ostr.toByteArray ());
+        assertEquals (0, content.readerIndex ());
+        assertEquals (1, response.refCnt ());
+        response.release ();
+    }
+}
@@ -36,6 +36,15 @@ public class SimpleAdapterTest {
         ), "wibbledy wobbledy woo".getBytes ());
     }
 
+    @Test
+    public void toleratesNullHeaders () {
+        SimpleRequest request = new SimpleRequest ("GET", "/bliggety", null);
+        SimpleResponse response = new SimpleResponse (204, null);
+
+        assertEquals (Collections.emptyList (), subject.getRequestHeaders (request));
+        assertEquals (Collections.emptyList (), subject.getResponseHeaders (response));
+    }
+
     @Test
     public void convertsToGetRequestWithoutHeadersOrBody () {
         SimpleRequest result = subject.convert ("GET", "http://foppy/clang?glooby=yes&gloppy=no",
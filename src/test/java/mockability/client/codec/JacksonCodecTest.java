@@ -0,0 +1,250 @@
+package mockability.client.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JacksonCodecTest {
+
+    private static final byte[] BINARY_BODY = new byte[] {0, 1, 2, (byte)0xFE, (byte)0xFF, 'b', 'o', 'o'};
+
+    @Test
+    public void jsonCodecWritesResponsesWithBase64Bodies () throws Exception {
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+
+        try (MockabilityCodec.ResponseWriter writer = new JsonCodec ().newResponseWriter (ostr)) {
+            writer.writeResponse (503, Arrays.asList (new HeaderPair ("gurble", "flop")), "biggety-boo".getBytes ());
+            writer.writeResponse (200, Collections.<HeaderPair>emptyList (), new byte[] {});
+        }
+
+        assertEquals ("[{\"status\":503,\"headers\":[{\"name\":\"gurble\",\"value\":\"flop\"}],\"body\":\"YmlnZ2V0eS1ib28=\"}," +
+            "{\"status\":200,\"headers\":[],\"body\":\"\"}]", new String (ostr.toByteArray ()));
+    }
+
+    @Test
+    public void jsonCodecReadsRequests () throws Exception {
+        ObjectMapper mapper = new ObjectMapper ();
+        byte[] report = mapper.writeValueAsBytes (makeReport (mapper));
+
+        MockabilityCodec.RequestReader reader = new JsonCodec ().newRequestReader (new ByteArrayInputStream (report));
+
+        assertRequests (reader);
+    }
+
+    @Test
+    public void smileCodecRoundTripsRawBodies () throws Exception {
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+        byte[] bigBody = new byte[3000];
+        Arrays.fill (bigBody, (byte)0x7F);
+
+        try (MockabilityCodec.ResponseWriter writer = new SmileCodec ().newResponseWriter (ostr)) {
+            writer.writeResponse (503, Arrays.asList (new HeaderPair ("gurble", "flop")), bigBody);
+        }
+
+        assertTrue (ostr.size () < 3100);
+        ArrayNode list = (ArrayNode)new ObjectMapper (new SmileFactory ()).readTree (ostr.toByteArray ());
+        assertEquals (503, list.get (0).get ("status").asInt ());
+        assertEquals ("flop", list.get (0).get ("headers").get (0).get ("value").asText ());
+        assertArrayEquals (bigBody, list.get (0).get ("body").binaryValue ());
+    }
+
+    @Test
+    public void smileCodecReadsRequests () throws Exception {
+        ObjectMapper mapper = new ObjectMapper (new SmileFactory ());
+        byte[] report = mapper.writeValueAsBytes (makeReport (mapper));
+
+        MockabilityCodec.RequestReader reader = new SmileCodec ().newRequestReader (new ByteArrayInputStream (report));
+
+        assertRequests (reader);
+    }
+
+    @Test
+    public void requestsWrittenByEitherCodecCanBeReadBack () throws Exception {
+        for (MockabilityCodec codec : Arrays.asList (new JsonCodec (), new SmileCodec ())) {
+            ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+
+            try (MockabilityCodec.RequestWriter writer = codec.newRequestWriter (ostr)) {
+                writer.writeRequest ("POST", "/wiggle?a=b", Arrays.asList (new HeaderPair ("molly", "woo")), BINARY_BODY);
+                writer.writeRequest ("GET", "/wobble", Collections.<HeaderPair>emptyList (), new byte[] {});
+            }
+
+            assertRequests (codec.newRequestReader (new ByteArrayInputStream (ostr.toByteArray ())));
+        }
+    }
+
+    @Test
+    public void responsesWrittenByEitherCodecCanBeReadBack () throws Exception {
+        for (MockabilityCodec codec : Arrays.asList (new JsonCodec (), new SmileCodec ())) {
+            ByteArrayOutputStream ostr = new ByteArrayOutputStream ();
+
+            try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (ostr)) {
+                writer.writeResponse (503, Arrays.asList (new HeaderPair ("gurble", "flop")), BINARY_BODY);
+            }
+
+            MockabilityCodec.ResponseReader reader = codec.newResponseReader (new ByteArrayInputStream (ostr.toByteArray ()));
+            assertTrue (reader.nextResponse ());
+            reader.readResponse ();
+            assertEquals (503, reader.getStatus ());
+            assertEquals ("gurble", reader.getHeaders ().get (0).name ());
+            assertEquals ("flop", reader.getHeaders ().get (0).value ());
+            assertArrayEquals (BINARY_BODY, reader.getBody ());
+            assertEquals (false, reader.nextResponse ());
+            reader.close ();
+        }
+    }
+
+    @Test
+    public void streamedBodiesMatchWholeBodiesInEitherCodec () throws Exception {
+        byte[] bigBody = new byte[10001];
+        for (int i = 0; i < bigBody.length; i++) {bigBody[i] = (byte)(i * 31);}
+        for (MockabilityCodec codec : Arrays.asList (new JsonCodec (), new SmileCodec ())) {
+            ByteArrayOutputStream whole = new ByteArrayOutputStream ();
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream ();
+
+            try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (whole)) {
+                writer.writeResponse (503, Arrays.asList (new HeaderPair ("gurble", "flop")), bigBody);
+                writer.writeResponse (200, Collections.<HeaderPair>emptyList (), new byte[] {});
+            }
+            try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (streamed)) {
+                writer.writeResponse (503, Arrays.asList (new HeaderPair ("gurble", "flop")), ostr -> {
+                    ostr.write (bigBody, 0, 7);
+                    ostr.write (bigBody[7]);
+                    ostr.write (bigBody, 8, bigBody.length - 8);
+                });
+                writer.writeResponse (200, Collections.<HeaderPair>emptyList (), ostr -> {});
+            }
+
+            assertArrayEquals (whole.toByteArray (), streamed.toByteArray ());
+        }
+    }
+
+    @Test
+    public void bufferedBodiesMatchWholeBodiesInEitherCodecAndLeaveTheBufferAlone () throws Exception {
+        byte[] bigBody = new byte[20000];
+        for (int i = 0; i < bigBody.length; i++) {bigBody[i] = (byte)(i * 17);}
+        ByteBuffer buffer = ByteBuffer.allocateDirect (bigBody.length + 2);
+        buffer.put ((byte)9).put (bigBody).put ((byte)9).position (1).limit (bigBody.length + 1);
+        for (MockabilityCodec codec : Arrays.asList (new JsonCodec (), new SmileCodec ())) {
+            ByteArrayOutputStream whole = new ByteArrayOutputStream ();
+            ByteArrayOutputStream buffered = new ByteArrayOutputStream ();
+
+            try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (whole)) {
+                writer.writeResponse (200, Arrays.asList (new HeaderPair ("gurble", "flop")), bigBody);
+                writer.writeResponse (204, Collections.<HeaderPair>emptyList (), new byte[] {});
+            }
+            try (MockabilityCodec.ResponseWriter writer = codec.newResponseWriter (buffered)) {
+                writer.writeResponse (200, Arrays.asList (new HeaderPair ("gurble", "flop")), buffer);
+                writer.writeResponse (204, Collections.<HeaderPair>emptyList (), ByteBuffer.allocate (0));
+            }
+
+            assertArrayEquals (whole.toByteArray (), buffered.toByteArray ());
+            assertEquals (1, buffer.position ());
+            assertEquals (bigBody.length + 1, buffer.limit ());
+        }
+    }
+
+    @Test
+    public void skippedRequestsAreCountedWithoutBeingDecoded () throws Exception {
+        ObjectMapper mapper = new ObjectMapper ();
+        byte[] report = mapper.writeValueAsBytes (makeReport (mapper));
+
+        MockabilityCodec.RequestReader reader = new JsonCodec ().newRequestReader (new ByteArrayInputStream (report));
+
+        assertTrue (reader.nextRequest ());
+        reader.skipRequest ();
+        assertTrue (reader.nextRequest ());
+        reader.readRequest ();
+        assertEquals ("/wobble", reader.getUri ());
+        assertEquals (false, reader.nextRequest ());
+    }
+
+    @Test
+    public void bodiesCanBeLeftEncodedUntilLater () throws Exception {
+        for (ObjectMapper mapper : Arrays.asList (new ObjectMapper (), new ObjectMapper (new SmileFactory ()))) {
+            byte[] report = mapper.writeValueAsBytes (makeReport (mapper));
+            MockabilityCodec codec = (mapper.getFactory () instanceof SmileFactory) ? new SmileCodec () : new JsonCodec ();
+            MockabilityCodec.RequestReader reader = codec.newRequestReader (new ByteArrayInputStream (report));
+
+            assertTrue (reader.nextRequest ());
+            reader.readRequestLeavingBodyEncoded ();
+            MockabilityCodec.EncodedBody first = reader.getEncodedBody ();
+            assertEquals ("/wiggle?a=b", reader.getUri ());
+            assertEquals ("woo", reader.getHeaders ().get (0).value ());
+            assertTrue (reader.nextRequest ());
+            reader.readRequestLeavingBodyEncoded ();
+            MockabilityCodec.EncodedBody second = reader.getEncodedBody ();
+            reader.close ();
+
+            assertArrayEquals (BINARY_BODY, first.decode ());
+            assertArrayEquals (new byte[] {}, second.decode ());
+        }
+    }
+
+    @Test
+    public void readerRefusesSomethingThatIsNotAList () throws Exception {
+        try {
+            new JsonCodec ().newRequestReader (new ByteArrayInputStream ("{\"method\": \"GET\"}".getBytes ()));
+            fail ();
+        }
+        catch (IOException e) {
+            assertEquals ("Expected a list of requests, but found START_OBJECT", e.getMessage ());
+        }
+    }
+
+    @Test
+    public void contentTypesAreAdvertised () {
+        assertEquals ("application/json", new JsonCodec ().getContentType ());
+        assertEquals ("application/x-jackson-smile", new SmileCodec ().getContentType ());
+    }
+
+    private ArrayNode makeReport (ObjectMapper mapper) {
+        ArrayNode root = mapper.createArrayNode ();
+        ObjectNode first = root.addObject ();
+        first.put ("method", "POST");
+        first.put ("uri", "/wiggle?a=b");
+        ObjectNode header = first.putArray ("headers").addObject ();
+        header.put ("name", "molly");
+        header.put ("value", "woo");
+        first.put ("body", BINARY_BODY);
+        first.put ("ignored", "whatever");
+        ObjectNode second = root.addObject ();
+        second.put ("method", "GET");
+        second.put ("uri", "/wobble");
+        second.putArray ("headers");
+        return root;
+    }
+
+    private void assertRequests (MockabilityCodec.RequestReader reader) throws IOException {
+        assertTrue (reader.nextRequest ());
+        reader.readRequest ();
+        assertEquals ("POST", reader.getMethod ());
+        assertEquals ("/wiggle?a=b", reader.getUri ());
+        assertEquals (1, reader.getHeaders ().size ());
+        assertEquals ("molly", reader.getHeaders ().get (0).name ());
+        assertEquals ("woo", reader.getHeaders ().get (0).value ());
+        assertArrayEquals (BINARY_BODY, reader.getBody ());
+        assertTrue (reader.nextRequest ());
+        reader.readRequest ();
+        assertEquals ("GET", reader.getMethod ());
+        assertEquals ("/wobble", reader.getUri ());
+        assertEquals (0, reader.getHeaders ().size ());
+        assertEquals (0, reader.getBody ().length);
+        assertEquals (false, reader.nextRequest ());
+        reader.close ();
+    }
+}
@@ -0,0 +1,126 @@
+package mockability.client.metrics;
+
+import mockability.client.MockabilityOperation;
+import mockability.client.MockabilityOptions;
+import mockability.client.SimpleMockabilityClient;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.standin.MockabilityStandIn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HistogramMetricsTest {
+
+    private MockabilityStandIn standIn;
+    private HistogramMetrics subject;
+    private List<MockabilityOperation> operations;
+    private MockabilityOptions options;
+    private SimpleMockabilityClient client;
+
+    @Before
+    public void setup () {
+        standIn = new MockabilityStandIn ().start ();
+        subject = new HistogramMetrics ();
+        operations = new CopyOnWriteArrayList<> ();
+        options = MockabilityOptions.builder ().metrics (operation -> {
+            operations.add (operation);
+            subject.operationCompleted (operation);
+        }).build ();
+        client = new SimpleMockabilityClient (standIn.getBaseUrl (), options);
+    }
+
+    @After
+    public void teardown () throws Exception {
+        options.close ();
+        standIn.close ();
+    }
+
+    @Test
+    public void everyOperationIsRecordedWithItsParts () {
+        byte[] body = new byte[10000];
+        client.clear ("GET", "/thing");
+        client.prepareAll ("GET", "/thing", Arrays.asList (
+            new SimpleResponse (200, Collections.<HeaderPair>emptyList (), body),
+            new SimpleResponse (200, Collections.<HeaderPair>emptyList (), body)));
+        client.report ("GET", "/thing");
+
+        assertEquals (1, subject.get (MockabilityOperation.Kind.CLEAR).getCount ());
+        HistogramMetrics.OperationStats prepares = subject.get (MockabilityOperation.Kind.PREPARE);
+        assertEquals (1, prepares.getCount ());
+        assertEquals (2, prepares.getElements ());
+        assertTrue (prepares.getBytesSent () > 20000);
+        assertTrue (prepares.getSerialize ().getMax () > 0);
+        assertTrue (prepares.getNetwork ().getMax () > 0);
+        MockabilityOperation prepare = operations.get (1);
+        assertEquals (200, prepare.getStatus ());
+        assertEquals ("GET", prepare.getMethod ());
+        assertEquals ("/thing", prepare.getUri ());
+        assertTrue (prepare.getSerializeNanos () + prepare.getNetworkNanos () <= prepare.getTotalNanos ());
+        assertTrue (prepare.getConversionNanos () > 0);
+        assertTrue (prepare.getConversionNanos () <= prepare.getSerializeNanos ());
+        assertEquals (0, subject.get (MockabilityOperation.Kind.REPORT).getElements ());
+        assertTrue (subject.get (MockabilityOperation.Kind.REPORT).getBytesReceived () > 0);
+    }
+
+    @Test
+    public void reportElementsAreCountedWhenAStreamIsClosed () throws Exception {
+        client.prepare ("GET", "/thing", new SimpleResponse (200, Collections.<HeaderPair>emptyList ()));
+        standInRequest ("/thing");
+
+        try (Stream<?> stream = client.reportStream ("GET", "/thing")) {
+            assertEquals (0, subject.get (MockabilityOperation.Kind.REPORT).getCount ());
+            assertEquals (1, stream.count ());
+        }
+
+        HistogramMetrics.OperationStats reports = subject.get (MockabilityOperation.Kind.REPORT);
+        assertEquals (1, reports.getCount ());
+        assertEquals (1, reports.getElements ());
+        assertTrue (reports.getDeserialize ().getMax () > 0);
+    }
+
+    @Test
+    public void failuresAreRecordedWithTheirExceptions () {
+        try {
+            client.report ("GET", "/never/prepared");
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            assertEquals (e, operations.get (0).getFailure ());
+        }
+        assertEquals (499, operations.get (0).getStatus ());
+        assertEquals (1, subject.get (MockabilityOperation.Kind.REPORT).getFailures ());
+    }
+
+    @Test
+    public void asynchronousOperationsAreRecordedBeforeTheirFuturesComplete () throws Exception {
+        client.clearAsync ().get ();
+
+        MockabilityOperation clear = operations.get (0);
+        assertTrue (clear.isAsync ());
+        assertNull (clear.getMethod ());
+        assertNull (clear.getFailure ());
+        assertEquals (200, clear.getStatus ());
+        assertNotNull (subject.toString ());
+    }
+
+    private void standInRequest (String uri) throws Exception {
+        try (InputStream istr = new URL (standIn.getBaseUrl () + uri).openStream ()) {
+            while (istr.read () >= 0) {}
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package mockability.client.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueContiguously () {
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            assertEquals (LatencyHistogram.highestEquivalentValue (i) + 1, LatencyHistogram.lowestEquivalentValue (i + 1));
+            assertEquals (i, LatencyHistogram.indexOf (LatencyHistogram.lowestEquivalentValue (i)));
+            assertEquals (i, LatencyHistogram.indexOf (LatencyHistogram.highestEquivalentValue (i)));
+        }
+        assertEquals (LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf (Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesAreWithinThreePercent () {
+        LatencyHistogram subject = new LatencyHistogram ();
+        for (long i = 1; i <= 100000; i++) {
+            subject.record (i * 1000);
+        }
+
+        assertEquals (100000, subject.getCount ());
+        assertEquals (100000000L, subject.getMax ());
+        assertEquals (50000500.0, subject.getMean (), 0.5);
+        assertWithin (50000000L, subject.getValueAtPercentile (50.0));
+        assertWithin (99000000L, subject.getValueAtPercentile (99.0));
+        assertEquals (100000000L, subject.getValueAtPercentile (100.0));
+    }
+
+    @Test
+    public void emptyAndResetHistogramsReportZero () {
+        LatencyHistogram subject = new LatencyHistogram ();
+        assertEquals (0, subject.getValueAtPercentile (99.0));
+
+        subject.record (12345);
+        subject.record (-5);
+        assertEquals (0, subject.getValueAtPercentile (50.0));
+        subject.reset ();
+
+        assertEquals (0, subject.getCount ());
+        assertEquals (0, subject.getMax ());
+        assertEquals (0.0, subject.getMean (), 0.0);
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing () throws Exception {
+        LatencyHistogram subject = new LatencyHistogram ();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread (() -> {
+                for (int i = 0; i < 10000; i++) {
+                    subject.record (i);
+                }
+            });
+            threads[t].start ();
+        }
+        for (Thread thread : threads) {
+            thread.join ();
+        }
+
+        assertEquals (40000, subject.getCount ());
+        assertEquals (9999, subject.getMax ());
+    }
+
+    private void assertWithin (long expected, long actual) {
+        assertTrue ("Expected " + actual + " to be within 3% above " + expected,
+            (actual >= expected) && (actual <= expected * 1.03));
+    }
+}
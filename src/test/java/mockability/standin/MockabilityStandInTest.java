@@ -0,0 +1,215 @@
+package mockability.standin;
+
+import mockability.client.MockabilityOptions;
+import mockability.client.ReportCursor;
+import mockability.client.ReportPage;
+import mockability.client.SimpleMockabilityClient;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter.SimpleRequest;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.client.codec.SmileCodec;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MockabilityStandInTest {
+
+    private MockabilityStandIn subject;
+    private SimpleMockabilityClient client;
+    private HttpClient httpClient;
+
+    @Before
+    public void setup () {
+        subject = new MockabilityStandIn ().start ();
+        client = new SimpleMockabilityClient (subject.getBaseUrl ());
+        httpClient = HttpClientBuilder.create ().build ();
+    }
+
+    @After
+    public void teardown () {
+        subject.close ();
+    }
+
+    @Test
+    public void preparedResponsesAreServedInOrderAndRequestsAreReported () throws Exception {
+        client.prepare ("POST", "/wiggle?a=b", new SimpleResponse (201, Arrays.asList (new HeaderPair ("X-One", "1")),
+            "first".getBytes ()));
+        client.prepare ("POST", "/wiggle?a=b", new SimpleResponse (202, Collections.<HeaderPair>emptyList (),
+            "second".getBytes ()));
+
+        HttpResponse first = post ("/wiggle?a=b", "booga");
+        HttpResponse second = post ("/wiggle?a=b", "wooga");
+
+        assertEquals (201, first.getStatusLine ().getStatusCode ());
+        assertEquals ("1", first.getFirstHeader ("X-One").getValue ());
+        assertEquals ("first", EntityUtils.toString (first.getEntity ()));
+        assertEquals (202, second.getStatusLine ().getStatusCode ());
+        assertEquals ("second", EntityUtils.toString (second.getEntity ()));
+        List<SimpleRequest> requests = client.report ("POST", "/wiggle?a=b");
+        assertEquals (2, requests.size ());
+        assertEquals ("POST", requests.get (0).getMethod ());
+        assertEquals ("/wiggle?a=b", requests.get (0).getUri ());
+        assertArrayEquals ("booga".getBytes (), requests.get (0).getBody ());
+        assertArrayEquals ("wooga".getBytes (), requests.get (1).getBody ());
+        assertEquals (2, subject.getPrepares ());
+        assertEquals (2, subject.getMockedRequests ());
+        assertEquals (1, subject.getReports ());
+        assertEquals (2, subject.getReportedRequests ());
+    }
+
+    @Test
+    public void reportsOnlyRequestsAfterTheOffsetAndSaysSo () throws Exception {
+        client.prepareAll ("POST", "/wiggle", Arrays.asList (
+            new SimpleResponse (200, Collections.<HeaderPair>emptyList ()),
+            new SimpleResponse (200, Collections.<HeaderPair>emptyList ()),
+            new SimpleResponse (200, Collections.<HeaderPair>emptyList ())));
+        post ("/wiggle", "one");
+        post ("/wiggle", "two");
+        ReportPage<SimpleRequest> first = client.reportSince ("POST", "/wiggle", ReportCursor.START);
+        post ("/wiggle", "three");
+
+        ReportPage<SimpleRequest> second = client.reportSince ("POST", "/wiggle", first.getNextCursor ());
+
+        assertEquals (2, first.getRequests ().size ());
+        assertEquals (1, second.getRequests ().size ());
+        assertArrayEquals ("three".getBytes (), second.getRequests ().get (0).getBody ());
+        assertEquals (3, second.getNextCursor ().getOffset ());
+        HttpGet raw = new HttpGet (subject.getBaseUrl () + "/mockability/POST/wiggle");
+        raw.addHeader ("X-Mockability-Offset", "2");
+        HttpResponse response = httpClient.execute (raw);
+        assertEquals ("2", response.getFirstHeader ("X-Mockability-Offset").getValue ());
+        assertTrue (EntityUtils.toString (response.getEntity ()).contains ("\"uri\":\"/wiggle\""));
+        assertEquals (0, client.reportSince ("POST", "/wiggle", second.getNextCursor ()).getRequests ().size ());
+    }
+
+    @Test
+    public void unpreparedRequestGets499DescribingWhatWasPrepared () throws Exception {
+        client.prepare ("GET", "/wiggle", new SimpleResponse (200, Collections.<HeaderPair>emptyList (), new byte[] {}));
+
+        HttpResponse response = httpClient.execute (new HttpGet (subject.getBaseUrl () + "/wobble"));
+
+        assertEquals (499, response.getStatusLine ().getStatusCode ());
+        assertEquals ("\nRequest was received for:\n127.0.0.1: GET '/wobble'\n\n" +
+            "Responses are prepared only for:\n127.0.0.1: GET '/wiggle'\n", EntityUtils.toString (response.getEntity ()));
+        assertEquals (1, subject.getUnpreparedRequests ());
+    }
+
+    @Test
+    public void clearingEverythingForgetsAllPreparations () {
+        client.prepare ("GET", "/wiggle", new SimpleResponse (200, Collections.<HeaderPair>emptyList (), new byte[] {}));
+        client.prepare ("PUT", "/wobble", new SimpleResponse (200, Collections.<HeaderPair>emptyList (), new byte[] {}));
+
+        client.clear ();
+
+        try {
+            client.report ("GET", "/wiggle");
+            fail ();
+        }
+        catch (IllegalStateException e) {
+            assertEquals ("\nReport was demanded for:\n127.0.0.1: GET '/wiggle'\n\n" +
+                "Reports are prepared only for:\nNo reports were prepared.\n", e.getMessage ());
+        }
+        assertEquals (1, subject.getClears ());
+    }
+
+    @Test
+    public void smileIsSpokenWhenTheClientPrefersIt () throws Exception {
+        try (MockabilityOptions options = MockabilityOptions.builder ().codec (new SmileCodec ()).build ()) {
+            SimpleMockabilityClient smileClient = new SimpleMockabilityClient (subject.getBaseUrl (), options);
+            byte[] body = new byte[] {0, 1, 2, (byte)0xFF};
+            smileClient.prepare ("POST", "/binary", new SimpleResponse (200, Collections.<HeaderPair>emptyList (), body));
+
+            HttpResponse response = post ("/binary", "x");
+
+            assertArrayEquals (body, EntityUtils.toByteArray (response.getEntity ()));
+            assertEquals ("x", new String (smileClient.report ("POST", "/binary").get (0).getBody ()));
+        }
+    }
+
+    @Test
+    public void gzipIsSpokenWhenTheClientCompresses () throws Exception {
+        try (MockabilityOptions options = MockabilityOptions.builder ().gzipThreshold (1).build ()) {
+            SimpleMockabilityClient gzipClient = new SimpleMockabilityClient (subject.getBaseUrl (), options);
+            gzipClient.prepare ("POST", "/zipped", new SimpleResponse (200, Collections.<HeaderPair>emptyList (),
+                "unzipped".getBytes ()));
+
+            HttpResponse response = post ("/zipped", "booga");
+
+            assertEquals ("unzipped", EntityUtils.toString (response.getEntity ()));
+            assertEquals ("booga", new String (gzipClient.report ("POST", "/zipped").get (0).getBody ()));
+            HttpGet raw = new HttpGet (subject.getBaseUrl () + "/mockability/POST/zipped");
+            raw.addHeader ("Accept-Encoding", "gzip");
+            HttpResponse rawResponse = HttpClientBuilder.create ().disableContentCompression ().build ().execute (raw);
+            assertEquals ("gzip", rawResponse.getFirstHeader ("Content-Encoding").getValue ());
+            String report = EntityUtils.toString (new GzipDecompressingEntity (rawResponse.getEntity ()));
+            assertTrue (report.contains ("\"uri\":\"/zipped\""));
+        }
+    }
+
+    @Test
+    public void preparedResponseInUnknownFormatIsRefused () throws Exception {
+        HttpPost request = new HttpPost (subject.getBaseUrl () + "/mockability/GET/wiggle");
+        request.setEntity (new ByteArrayEntity ("[]".getBytes (), ContentType.TEXT_PLAIN));
+
+        HttpResponse response = httpClient.execute (request);
+
+        assertEquals (415, response.getStatusLine ().getStatusCode ());
+    }
+
+    @Test
+    public void concurrentRequestsForTheSameKeyEachGetADifferentResponse () throws Exception {
+        int count = 50;
+        List<SimpleResponse> responses = new ArrayList<> ();
+        for (int i = 0; i < count; i++) {
+            responses.add (new SimpleResponse (200, Collections.<HeaderPair>emptyList (), ("" + i).getBytes ()));
+        }
+        client.prepareAll ("POST", "/busy", responses);
+        ExecutorService executor = Executors.newFixedThreadPool (8);
+        List<Future<String>> futures = new ArrayList<> ();
+        try {
+            for (int i = 0; i < count; i++) {
+                futures.add (executor.submit (() -> EntityUtils.toString (post ("/busy", "").getEntity ())));
+            }
+            List<String> bodies = new ArrayList<> ();
+            for (Future<String> future : futures) {
+                bodies.add (future.get ());
+            }
+            for (int i = 0; i < count; i++) {
+                assertTrue ("Missing response " + i, bodies.contains ("" + i));
+            }
+        }
+        finally {
+            executor.shutdown ();
+        }
+        assertEquals (count, client.report ("POST", "/busy").size ());
+        assertEquals (count, subject.getMockedRequests ());
+    }
+
+    private HttpResponse post (String uri, String body) throws Exception {
+        HttpPost request = new HttpPost (subject.getBaseUrl () + uri);
+        request.setEntity (new ByteArrayEntity (body.getBytes ()));
+        return httpClient.execute (request);
+    }
+}
@@ -2,12 +2,14 @@ package storytests;
 
 import mockability.client.HttpClientMockabilityClient;
 import mockability.client.adapters.HttpClientAdapter;
+import mockability.standin.MockabilityStandIn;
 import org.apache.http.*;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.apache.http.client.methods.HttpGet;
@@ -25,11 +27,18 @@ import static org.junit.Assert.*;
  */
 public class TransactionSeriesTest {
 
+    private MockabilityStandIn standIn;
     private HttpClientMockabilityClient subject;
 
     @Before
     public void setup () {
-        subject = new HttpClientMockabilityClient ("http://localhost:9000");
+        standIn = new MockabilityStandIn ().start ();
+        subject = new HttpClientMockabilityClient (standIn.getBaseUrl ());
+    }
+
+    @After
+    public void teardown () {
+        standIn.close ();
     }
 
     @Test
@@ -70,7 +79,7 @@ public class TransactionSeriesTest {
 
         HttpClient client = HttpClientBuilder.create ()
             .build ();
-        HttpHost host = new HttpHost("localhost", 9000);
+        HttpHost host = new HttpHost("localhost", standIn.getPort ());
         HttpResponse firstResponseActual = client.execute (host, firstRequest);
         compare (firstResponse, firstResponseActual);
         HttpResponse secondResponseActual = client.execute(host, secondRequest);
@@ -0,0 +1,82 @@
+package mockability.client;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import mockability.client.adapters.LibraryAdapter.HeaderPair;
+import mockability.client.adapters.SimpleAdapter.SimpleResponse;
+import mockability.standin.MockabilityStandIn;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// Runs only on Java 11 and later, against the multi-release jar: see testJava11 in build.gradle.
+public class OperationEventTest {
+
+    @Test
+    public void recordsEachOperationAsAFlightRecorderEvent () throws Exception {
+        List<MockabilityOperation> operations = new CopyOnWriteArrayList<> ();
+        MockabilityOptions options = MockabilityOptions.builder ().metrics (operations::add).build ();
+        Path file = Files.createTempFile ("mockability", ".jfr");
+        try {
+            try (MockabilityStandIn standIn = new MockabilityStandIn ().start ();
+                 CloseableHttpClient systemUnderTest = HttpClientBuilder.create ().build ();
+                 Recording recording = new Recording ()) {
+                recording.enable ("mockability.Operation").withThreshold (Duration.ZERO);
+                recording.start ();
+                SimpleMockabilityClient client = new SimpleMockabilityClient (standIn.getBaseUrl (), options);
+                client.prepareAll ("GET", "/wiggle", Arrays.asList (
+                    new SimpleResponse (200, Collections.<HeaderPair>emptyList (), "one".getBytes ()),
+                    new SimpleResponse (404, Collections.<HeaderPair>emptyList (), "two".getBytes ())));
+                EntityUtils.consume (systemUnderTest.execute (new HttpGet (standIn.getBaseUrl () + "/wiggle")).getEntity ());
+                client.report ("GET", "/wiggle");
+                recording.stop ();
+                recording.dump (file);
+            }
+
+            List<RecordedEvent> events = new ArrayList<> ();
+            for (RecordedEvent event : RecordingFile.readAllEvents (file)) {
+                if (event.getEventType ().getName ().equals ("mockability.Operation")) {
+                    events.add (event);
+                }
+            }
+            events.sort ((a, b) -> a.getStartTime ().compareTo (b.getStartTime ()));
+
+            assertEquals (2, events.size ());
+            assertEquals (2, operations.size ());
+            assertEvent (events.get (0), operations.get (0), "PREPARE", 2);
+            assertEvent (events.get (1), operations.get (1), "REPORT", 1);
+        }
+        finally {
+            Files.delete (file);
+        }
+    }
+
+    private static void assertEvent (RecordedEvent event, MockabilityOperation operation, String kind, int elements) {
+        assertEquals (kind, event.getString ("kind"));
+        assertEquals ("GET", event.getString ("method"));
+        assertEquals (operation.getUri (), event.getString ("uri"));
+        assertEquals (false, event.getBoolean ("async"));
+        assertEquals (200, event.getInt ("status"));
+        assertEquals (elements, event.getInt ("elements"));
+        assertEquals (operation.getBytesSent (), event.getLong ("bytesSent"));
+        assertEquals (operation.getBytesReceived (), event.getLong ("bytesReceived"));
+        assertTrue (event.getLong ("bytesSent") + event.getLong ("bytesReceived") > 0);
+        assertNull (event.getString ("failure"));
+    }
+}